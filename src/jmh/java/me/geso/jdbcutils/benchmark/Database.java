@@ -0,0 +1,38 @@
+package me.geso.jdbcutils.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import me.geso.jdbcutils.JDBCUtils;
+import me.geso.jdbcutils.RichSQLException;
+
+/**
+ * In-memory H2 database with a member table, shared by the benchmarks.
+ */
+final class Database {
+	static final int ROWS = 1000;
+
+	private Database() {
+	}
+
+	static Connection open(final String name) throws SQLException,
+			RichSQLException {
+		final Connection connection = DriverManager.getConnection("jdbc:h2:mem:"
+			+ name);
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE member (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, age INT NOT NULL, score DOUBLE)");
+		final List<List<Object>> rows = new ArrayList<>(ROWS);
+		for (int i = 1; i <= ROWS; ++i) {
+			rows.add(Arrays.asList((long)i, "member" + i, 20 + i % 50,
+				i % 7 == 0 ? null : i * 1.5));
+		}
+		JDBCUtils.executeBatch(connection,
+			"INSERT INTO member (id, name, age, score) VALUES (?, ?, ?, ?)",
+			rows);
+		return connection;
+	}
+}
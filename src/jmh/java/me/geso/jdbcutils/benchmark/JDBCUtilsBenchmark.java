@@ -0,0 +1,96 @@
+package me.geso.jdbcutils.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import lombok.Data;
+import me.geso.jdbcutils.JDBCUtils;
+import me.geso.jdbcutils.Query;
+import me.geso.jdbcutils.QueryBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the query methods, against an in-memory H2 database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JDBCUtilsBenchmark {
+	@Param({"10", "1000"})
+	public int rows;
+
+	private Connection connection;
+	private Query query;
+
+	@Setup
+	public void setup() throws Exception {
+		connection = Database.open("query" + System.identityHashCode(this));
+		query = new QueryBuilder(connection)
+			.appendQuery("SELECT id, name, age, score FROM member WHERE id <= ")
+			.appendQueryAndParameter("?", (long)rows)
+			.build();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> executeQueryMapList() throws Exception {
+		return JDBCUtils.executeQueryMapList(connection, query.getSQL(),
+			query.getParameters());
+	}
+
+	@Benchmark
+	public List<Member> executeQueryForBean() throws Exception {
+		return JDBCUtils.executeQueryForBean(connection, query.getSQL(),
+			query.getParameters(), Member.class);
+	}
+
+	@Benchmark
+	public long executeQueryStream() throws Exception {
+		try (Stream<String> stream = JDBCUtils.executeQueryStream(connection,
+			query, rs -> rs.getString(2))) {
+			return stream.mapToInt(String::length).sum();
+		}
+	}
+
+	@Benchmark
+	public long executeQuery() throws Exception {
+		return JDBCUtils.executeQuery(connection, query, rs -> {
+			long sum = 0;
+			while (rs.next()) {
+				sum += rs.getLong(1);
+			}
+			return sum;
+		});
+	}
+
+	@Data
+	public static class Member {
+		private long id;
+		private String name;
+		private int age;
+		private Double score;
+	}
+}
@@ -0,0 +1,107 @@
+package me.geso.jdbcutils.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.geso.jdbcutils.JDBCUtils;
+import me.geso.jdbcutils.Query;
+import me.geso.jdbcutils.QueryBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of binding parameters, and building queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParametersBenchmark {
+	private static final String SQL = "SELECT ?, ?, ?, ?, ?, ?";
+
+	private Connection connection;
+	private PreparedStatement statement;
+	private List<Object> boxed;
+	private Query built;
+	private List<Long> ids;
+
+	@Setup
+	public void setup() throws Exception {
+		connection = Database.open("params" + System.identityHashCode(this));
+		statement = connection.prepareStatement(SQL);
+		final Timestamp now = new Timestamp(System.currentTimeMillis());
+		boxed = Arrays.asList(1L, 2, "name", 1.5, new BigDecimal("10.25"), now);
+		built = new QueryBuilder("\"")
+			.appendQuery(SQL)
+			.addParameter(1L)
+			.addParameter(2)
+			.addParameter("name")
+			.addParameter(1.5)
+			.addParameter(new BigDecimal("10.25"))
+			.addParameter(now)
+			.build();
+		ids = new ArrayList<>();
+		for (long i = 0; i < 100; ++i) {
+			ids.add(i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		statement.close();
+		connection.close();
+	}
+
+	@Benchmark
+	public PreparedStatement fillBoxedParams() throws SQLException {
+		JDBCUtils.fillPreparedStatementParams(statement, boxed);
+		return statement;
+	}
+
+	@Benchmark
+	public PreparedStatement fillBuiltParams() throws SQLException {
+		JDBCUtils.fillPreparedStatementParams(statement, built.getParameters());
+		return statement;
+	}
+
+	@Benchmark
+	public Query buildQuery() {
+		return new QueryBuilder("\"")
+			.appendQuery("SELECT * FROM ")
+			.appendIdentifier("member")
+			.appendQuery(" WHERE age >= ")
+			.appendQueryAndParameter("?", 20)
+			.appendQuery(" AND name = ")
+			.appendQueryAndParameter("?", "member1")
+			.appendQuery(" ORDER BY id LIMIT ")
+			.appendQuery(10)
+			.build();
+	}
+
+	@Benchmark
+	public Query buildInQuery() {
+		return new QueryBuilder("\"")
+			.appendQuery("SELECT * FROM member WHERE id")
+			.in(ids)
+			.build();
+	}
+}
@@ -0,0 +1,225 @@
+package me.geso.jdbcutils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asynchronous version of JDBCUtils.
+ *
+ * <pre>
+ * <code>CompletableFuture&lt;Long&gt; count = AsyncJDBCUtils.executeQueryAsync(
+ *     dataSource::getConnection, countQuery, rs -&gt; { rs.next(); return rs.getLong(1); });
+ * CompletableFuture&lt;List&lt;String&gt;&gt; names = AsyncJDBCUtils.executeQueryAsync(
+ *     dataSource::getConnection, namesQuery, rs -&gt; ...);
+ * CompletableFuture.allOf(count, names).join();</code>
+ * </pre>
+ *
+ * Each task takes a connection from the supplier, runs the query on the
+ * executor, and closes the connection. Failures complete the future with
+ * {@link UncheckedRichSQLException}. Cancelling the returned future cancels
+ * the running statement by {@link Statement#cancel()}. Cancelling a future
+ * derived from it, e.g. by {@code thenApply}, doesn't.
+ */
+@Slf4j
+public class AsyncJDBCUtils {
+	// Used when virtual threads are not available.
+	private static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime
+		.getRuntime().availableProcessors() * 2);
+
+	/**
+	 * Get the default executor. It uses virtual threads on Java 21 or later,
+	 * or a fixed pool of daemon threads.
+	 *
+	 * @return Executor
+	 */
+	public static Executor getDefaultExecutor() {
+		return DefaultExecutorHolder.EXECUTOR;
+	}
+
+	/**
+	 * Execute query on the default executor.
+	 *
+	 * @param connectionSupplier
+	 * @param query
+	 * @param callback
+	 * @return Future of the value generated by the callback
+	 */
+	public static <R> CompletableFuture<R> executeQueryAsync(
+			final ConnectionSupplier connectionSupplier,
+			final Query query,
+			final ResultSetCallback<R> callback) {
+		return AsyncJDBCUtils.executeQueryAsync(connectionSupplier, query,
+			callback, AsyncJDBCUtils.getDefaultExecutor());
+	}
+
+	/**
+	 * Execute query on the executor.
+	 *
+	 * @param connectionSupplier
+	 * @param query
+	 * @param callback
+	 * @param executor
+	 * @return Future of the value generated by the callback
+	 */
+	public static <R> CompletableFuture<R> executeQueryAsync(
+			final ConnectionSupplier connectionSupplier,
+			final Query query,
+			final ResultSetCallback<R> callback,
+			final Executor executor) {
+		return AsyncJDBCUtils.submit(connectionSupplier, query, executor,
+			connection -> JDBCUtils.executeQuery(connection, query, callback));
+	}
+
+	/**
+	 * Execute update on the default executor.
+	 *
+	 * @param connectionSupplier
+	 * @param query
+	 * @return Future of the number of updated rows
+	 */
+	public static CompletableFuture<Integer> executeUpdateAsync(
+			final ConnectionSupplier connectionSupplier,
+			final Query query) {
+		return AsyncJDBCUtils.executeUpdateAsync(connectionSupplier, query,
+			AsyncJDBCUtils.getDefaultExecutor());
+	}
+
+	/**
+	 * Execute update on the executor.
+	 *
+	 * @param connectionSupplier
+	 * @param query
+	 * @param executor
+	 * @return Future of the number of updated rows
+	 */
+	public static CompletableFuture<Integer> executeUpdateAsync(
+			final ConnectionSupplier connectionSupplier,
+			final Query query,
+			final Executor executor) {
+		return AsyncJDBCUtils.submit(connectionSupplier, query, executor,
+			connection -> JDBCUtils.executeUpdate(connection, query));
+	}
+
+	private static <R> CompletableFuture<R> submit(
+			final ConnectionSupplier connectionSupplier,
+			final Query query,
+			final Executor executor,
+			final Operation<R> operation) {
+		final Task<R> task = new Task<>();
+		try {
+			executor.execute(() -> task.run(connectionSupplier, query,
+				operation));
+		} catch (final RejectedExecutionException e) {
+			// Reported by the future, like the other failures.
+			task.completeExceptionally(e);
+		}
+		return task;
+	}
+
+	@FunctionalInterface
+	private interface Operation<R> {
+		R apply(Connection connection) throws RichSQLException;
+	}
+
+	private static class Task<R> extends CompletableFuture<R> {
+		private final AtomicReference<Statement> statement = new AtomicReference<>();
+
+		void run(final ConnectionSupplier connectionSupplier,
+				final Query query, final Operation<R> operation) {
+			if (this.isDone()) {
+				// Cancelled before started.
+				return;
+			}
+			try (final Connection connection = connectionSupplier.get()) {
+				this.complete(operation.apply(this.wrap(connection)));
+			} catch (final RichSQLException e) {
+				this.completeExceptionally(new UncheckedRichSQLException(e));
+			} catch (final SQLException e) {
+				this.completeExceptionally(new UncheckedRichSQLException(e,
+					query));
+			} catch (final RuntimeException | Error e) {
+				this.completeExceptionally(e);
+			} finally {
+				statement.set(null);
+			}
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			final boolean cancelled = super.cancel(mayInterruptIfRunning);
+			final Statement running = statement.get();
+			if (cancelled && running != null) {
+				try {
+					running.cancel();
+				} catch (final SQLException e) {
+					log.warn("Failed to cancel statement: {}", e.getMessage());
+				}
+			}
+			return cancelled;
+		}
+
+		// Remember the statements prepared by JDBCUtils, to cancel them.
+		private Connection wrap(final Connection connection) {
+			final InvocationHandler handler = (proxy, method, args) -> {
+				final Object result = AsyncJDBCUtils.invoke(method,
+					connection, args);
+				if (result instanceof Statement) {
+					statement.set((Statement)result);
+					if (this.isCancelled()) {
+						((Statement)result).close();
+						throw new SQLException("Query was cancelled");
+					}
+				}
+				return result;
+			};
+			return (Connection)Proxy.newProxyInstance(
+				AsyncJDBCUtils.class.getClassLoader(),
+				new Class<?>[] {Connection.class}, handler);
+		}
+	}
+
+	private static Object invoke(final Method method, final Object target,
+			final Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static class DefaultExecutorHolder {
+		static final Executor EXECUTOR = DefaultExecutorHolder.create();
+
+		private static Executor create() {
+			try {
+				// Java 21 or later
+				final Method method = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService)method.invoke(null);
+			} catch (final ReflectiveOperationException e) {
+				final AtomicInteger count = new AtomicInteger();
+				return Executors.newFixedThreadPool(DEFAULT_POOL_SIZE,
+					runnable -> {
+						final Thread thread = new Thread(runnable,
+							"jdbcutils-async-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			}
+		}
+	}
+}
@@ -0,0 +1,367 @@
+package me.geso.jdbcutils;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps rows to beans.
+ *
+ * Bean introspection is done once per class, and column labels are resolved
+ * to column indexes once per result set shape. Setters are called through
+ * method handles, and primitive properties are read by the typed getters of
+ * ResultSet.
+ *
+ * @param <T>
+ */
+class BeanMapper<T> {
+	// ClassValue doesn't pin the class loaders of the beans.
+	private static final ClassValue<BeanMapper<?>> CACHE = new ClassValue<BeanMapper<?>>() {
+		@Override
+		protected BeanMapper<?> computeValue(final Class<?> type) {
+			try {
+				return new BeanMapper<>(type);
+			} catch (final IntrospectionException | InstantiationException
+					| IllegalAccessException e) {
+				// Not cached, like the failures of the constructor.
+				throw new CreationException(e);
+			}
+		}
+	};
+	// Guard against queries building SQL with variable column lists.
+	private static final int MAX_SHAPES = 64;
+
+	private final MethodHandle constructor;
+	private final Property[] properties;
+	private final ConcurrentHashMap<List<String>, Binding> bindings = new ConcurrentHashMap<>();
+
+	private BeanMapper(final Class<T> valueClass)
+			throws IntrospectionException, InstantiationException,
+			IllegalAccessException {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			final Constructor<T> ctor = valueClass.getDeclaredConstructor();
+			this.constructor = lookup.unreflectConstructor(ctor).asType(
+				MethodType.methodType(Object.class));
+		} catch (final NoSuchMethodException e) {
+			throw new InstantiationException(valueClass.getName());
+		}
+
+		final BeanInfo beanInfo = Introspector.getBeanInfo(valueClass,
+			Object.class);
+		final List<Property> properties = new ArrayList<>();
+		for (final PropertyDescriptor prop : beanInfo.getPropertyDescriptors()) {
+			final Method writeMethod = prop.getWriteMethod();
+			if (writeMethod != null) {
+				properties.add(Property.create(prop.getName(),
+					writeMethod.getParameterTypes()[0],
+					lookup.unreflect(writeMethod)));
+			}
+		}
+		this.properties = properties.toArray(new Property[properties.size()]);
+	}
+
+	/**
+	 * Get the mapper for the class.
+	 *
+	 * @param valueClass
+	 * @return Cached mapper
+	 * @throws IntrospectionException
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> BeanMapper<T> forClass(final Class<T> valueClass)
+			throws IntrospectionException, InstantiationException,
+			IllegalAccessException {
+		try {
+			return (BeanMapper<T>)CACHE.get(valueClass);
+		} catch (final CreationException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IntrospectionException) {
+				throw (IntrospectionException)cause;
+			} else if (cause instanceof InstantiationException) {
+				throw (InstantiationException)cause;
+			} else {
+				throw (IllegalAccessException)cause;
+			}
+		}
+	}
+
+	/**
+	 * Map all remaining rows in the result set.
+	 *
+	 * @param rs
+	 * @return Beans
+	 * @throws SQLException
+	 * @throws InstantiationException
+	 * @throws InvocationTargetException
+	 */
+	List<T> mapAll(final ResultSet rs) throws SQLException,
+			InstantiationException, InvocationTargetException {
+		final List<T> valueList = new ArrayList<>();
+		Binding binding = null;
+		while (rs.next()) {
+			if (binding == null) {
+				// Bound on the first row, so an empty result doesn't need
+				// the columns.
+				binding = this.bind(rs.getMetaData());
+			}
+			valueList.add(binding.map(rs));
+		}
+		return valueList;
+	}
+
+	private Binding bind(final ResultSetMetaData metaData)
+			throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		final String[] labels = new String[columnCount];
+		for (int i = 0; i < columnCount; ++i) {
+			labels[i] = metaData.getColumnLabel(i + 1);
+		}
+		final List<String> shape = Arrays.asList(labels);
+		Binding binding = bindings.get(shape);
+		if (binding == null) {
+			binding = new Binding(labels);
+			if (bindings.size() < MAX_SHAPES) {
+				bindings.putIfAbsent(shape, binding);
+			}
+		}
+		return binding;
+	}
+
+	private class Binding {
+		private final int[] columns;
+
+		Binding(final String[] labels) throws SQLException {
+			// Column labels are case insensitive, like ResultSet#findColumn.
+			final Map<String, Integer> indexes = new HashMap<>();
+			for (int i = labels.length - 1; i >= 0; --i) {
+				indexes.put(labels[i].toLowerCase(Locale.ROOT), i + 1);
+			}
+			this.columns = new int[properties.length];
+			for (int i = 0; i < properties.length; ++i) {
+				final String name = properties[i].name;
+				final Integer column = indexes.get(name
+					.toLowerCase(Locale.ROOT));
+				if (column == null) {
+					throw new SQLException("Column '" + name + "' not found.",
+						"S0022");
+				}
+				this.columns[i] = column;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		T map(final ResultSet rs) throws SQLException, InstantiationException,
+				InvocationTargetException {
+			final Object row;
+			try {
+				row = constructor.invokeExact();
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+			for (int i = 0; i < properties.length; ++i) {
+				properties[i].set(row, rs, columns[i]);
+			}
+			return (T)row;
+		}
+	}
+
+	private static abstract class Property {
+		final String name;
+		final MethodHandle setter;
+
+		Property(final String name, final MethodHandle setter) {
+			this.name = name;
+			this.setter = setter;
+		}
+
+		static Property create(final String name, final Class<?> type,
+				final MethodHandle setter) {
+			if (type == long.class) {
+				return new LongProperty(name, adapt(setter, type));
+			} else if (type == int.class) {
+				return new IntProperty(name, adapt(setter, type));
+			} else if (type == double.class) {
+				return new DoubleProperty(name, adapt(setter, type));
+			} else if (type == boolean.class) {
+				return new BooleanProperty(name, adapt(setter, type));
+			} else if (type == String.class) {
+				return new StringProperty(name, adapt(setter, Object.class));
+			} else {
+				return new ObjectProperty(name, adapt(setter, Object.class),
+					box(type));
+			}
+		}
+
+		private static MethodHandle adapt(final MethodHandle setter,
+				final Class<?> type) {
+			return setter.asType(MethodType.methodType(void.class,
+				Object.class, type));
+		}
+
+		private static Class<?> box(final Class<?> type) {
+			return MethodType.methodType(type).wrap().returnType();
+		}
+
+		abstract void set(Object bean, ResultSet rs, int column)
+				throws SQLException, InvocationTargetException;
+	}
+
+	private static class LongProperty extends Property {
+		LongProperty(final String name, final MethodHandle setter) {
+			super(name, setter);
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final long value = rs.getLong(column);
+			if (value == 0 && rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class IntProperty extends Property {
+		IntProperty(final String name, final MethodHandle setter) {
+			super(name, setter);
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final int value = rs.getInt(column);
+			if (value == 0 && rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class DoubleProperty extends Property {
+		DoubleProperty(final String name, final MethodHandle setter) {
+			super(name, setter);
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final double value = rs.getDouble(column);
+			if (value == 0 && rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class BooleanProperty extends Property {
+		BooleanProperty(final String name, final MethodHandle setter) {
+			super(name, setter);
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final boolean value = rs.getBoolean(column);
+			if (!value && rs.wasNull()) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class StringProperty extends Property {
+		StringProperty(final String name, final MethodHandle setter) {
+			super(name, setter);
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final String value = rs.getString(column);
+			if (value == null) {
+				return;
+			}
+			try {
+				setter.invokeExact(bean, (Object)value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class ObjectProperty extends Property {
+		private final Class<?> type;
+
+		ObjectProperty(final String name, final MethodHandle setter,
+				final Class<?> type) {
+			super(name, setter);
+			this.type = type;
+		}
+
+		@Override
+		void set(final Object bean, final ResultSet rs, final int column)
+				throws SQLException, InvocationTargetException {
+			final Object value = rs.getObject(column);
+			if (value == null) {
+				return;
+			}
+			if (!type.isInstance(value)) {
+				throw new IllegalArgumentException("Cannot set "
+					+ value.getClass().getName() + " to the property '"
+					+ name + "' (" + type.getName() + ")");
+			}
+			try {
+				setter.invokeExact(bean, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static class CreationException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		CreationException(final Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package me.geso.jdbcutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Builder for multi-row INSERT statements.
+ *
+ * <pre>
+ * <code>List&lt;Query&gt; queries = new BulkInsertBuilder("`", "member", Arrays.asList("id", "name"))
+ *     .maxRows(500)
+ *     .onDuplicateKeyUpdate("name")
+ *     .build(rows);</code>
+ * </pre>
+ *
+ * Rows are split into several statements by the row count and the estimated
+ * statement size, so each statement fits in the server's
+ * max_allowed_packet.
+ */
+public class BulkInsertBuilder {
+	/**
+	 * Default maximum number of rows per statement.
+	 */
+	public static final int DEFAULT_MAX_ROWS = 1000;
+	/**
+	 * Default maximum estimated statement size in bytes.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+	private final String identifierQuoteString;
+	private final String table;
+	private final List<String> columns;
+	private int maxRows = DEFAULT_MAX_ROWS;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private List<String> updateColumns = Collections.emptyList();
+
+	public BulkInsertBuilder(final String identifierQuoteString,
+			final String table, final List<String> columns) {
+		if (columns.isEmpty()) {
+			throw new IllegalArgumentException("columns must not be empty");
+		}
+		this.identifierQuoteString = identifierQuoteString;
+		this.table = table;
+		this.columns = new ArrayList<>(columns);
+	}
+
+	/**
+	 * Set the maximum number of rows per statement.
+	 *
+	 * @param maxRows
+	 * @return this
+	 */
+	public BulkInsertBuilder maxRows(final int maxRows) {
+		if (maxRows <= 0) {
+			throw new IllegalArgumentException("maxRows must be positive: "
+				+ maxRows);
+		}
+		this.maxRows = maxRows;
+		return this;
+	}
+
+	/**
+	 * Set the maximum estimated size of a statement in bytes.
+	 * A row that exceeds the budget by itself is sent in its own statement.
+	 *
+	 * @param maxBytes
+	 * @return this
+	 */
+	public BulkInsertBuilder maxBytes(final long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive: "
+				+ maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	/**
+	 * Append {@code ON DUPLICATE KEY UPDATE col=VALUES(col), ...} for the
+	 * columns.
+	 *
+	 * @param updateColumns
+	 * @return this
+	 */
+	public BulkInsertBuilder onDuplicateKeyUpdate(final String... updateColumns) {
+		return this.onDuplicateKeyUpdate(Arrays.asList(updateColumns));
+	}
+
+	/**
+	 * Append {@code ON DUPLICATE KEY UPDATE col=VALUES(col), ...} for the
+	 * columns.
+	 *
+	 * @param updateColumns
+	 * @return this
+	 */
+	public BulkInsertBuilder onDuplicateKeyUpdate(
+			final List<String> updateColumns) {
+		this.updateColumns = new ArrayList<>(updateColumns);
+		return this;
+	}
+
+	/**
+	 * Build INSERT statements for the rows.
+	 *
+	 * @param rows
+	 * @return Queries
+	 */
+	public List<Query> build(final Iterable<? extends List<?>> rows) {
+		final List<Query> queries = new ArrayList<>();
+		final Iterator<Query> iterator = new ChunkIterator(rows.iterator());
+		while (iterator.hasNext()) {
+			queries.add(iterator.next());
+		}
+		return queries;
+	}
+
+	/**
+	 * Build INSERT statements for the rows lazily.
+	 * Closing the returned stream closes the stream of rows.
+	 *
+	 * @param rows
+	 * @return Stream of queries
+	 */
+	public Stream<Query> build(final Stream<? extends List<?>> rows) {
+		final Spliterator<Query> spliterator = Spliterators
+			.spliteratorUnknownSize(new ChunkIterator(rows.iterator()),
+				Spliterator.NONNULL | Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(rows::close);
+	}
+
+	private String buildHead() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("INSERT INTO ")
+			.append(JDBCUtils.quoteIdentifier(table, identifierQuoteString))
+			.append(" (");
+		for (int i = 0; i < columns.size(); ++i) {
+			if (i != 0) {
+				builder.append(',');
+			}
+			builder.append(JDBCUtils.quoteIdentifier(columns.get(i),
+				identifierQuoteString));
+		}
+		return builder.append(") VALUES ").toString();
+	}
+
+	private String buildTail() {
+		if (updateColumns.isEmpty()) {
+			return "";
+		}
+		final StringBuilder builder = new StringBuilder(
+			" ON DUPLICATE KEY UPDATE ");
+		for (int i = 0; i < updateColumns.size(); ++i) {
+			if (i != 0) {
+				builder.append(',');
+			}
+			final String column = JDBCUtils.quoteIdentifier(
+				updateColumns.get(i), identifierQuoteString);
+			builder.append(column).append("=VALUES(").append(column)
+				.append(')');
+		}
+		return builder.toString();
+	}
+
+	private String buildRowPlaceholder() {
+		final StringBuilder builder = new StringBuilder("(");
+		for (int i = 0; i < columns.size(); ++i) {
+			if (i != 0) {
+				builder.append(',');
+			}
+			builder.append('?');
+		}
+		return builder.append(')').toString();
+	}
+
+	private class ChunkIterator implements Iterator<Query> {
+		private final Iterator<? extends List<?>> rows;
+		private final String head = buildHead();
+		private final String tail = buildTail();
+		private final String rowPlaceholder = buildRowPlaceholder();
+		private List<?> pendingRow;
+		// Full chunks have the same SQL. Reuse it.
+		private int lastRowCount;
+		private String lastSql;
+
+		ChunkIterator(final Iterator<? extends List<?>> rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pendingRow != null || rows.hasNext();
+		}
+
+		@Override
+		public Query next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final long baseBytes = head.length() + tail.length();
+			final List<Object> params = new ArrayList<>();
+			long bytes = baseBytes;
+			int rowCount = 0;
+			while (rowCount < maxRows && (pendingRow != null || rows.hasNext())) {
+				final List<?> row = pendingRow != null ? pendingRow : rows
+					.next();
+				pendingRow = null;
+				if (row.size() != columns.size()) {
+					throw new IllegalArgumentException("Row has "
+						+ row.size() + " values, but " + columns.size()
+						+ " columns are expected: " + row);
+				}
+
+				long rowBytes = rowPlaceholder.length() + 1;
+				for (final Object value : row) {
+					rowBytes += Sizes.estimate(value);
+				}
+				if (rowCount > 0 && bytes + rowBytes > maxBytes) {
+					pendingRow = row;
+					break;
+				}
+				params.addAll(row);
+				bytes += rowBytes;
+				++rowCount;
+			}
+			// The parameters are not shared, so they are not copied.
+			return Query.wrap(buildSql(rowCount), Collections
+				.unmodifiableList(params));
+		}
+
+		private String buildSql(final int rowCount) {
+			if (rowCount == lastRowCount) {
+				return lastSql;
+			}
+			final StringBuilder builder = new StringBuilder(head.length()
+				+ (rowPlaceholder.length() + 1) * rowCount + tail.length());
+			builder.append(head);
+			for (int i = 0; i < rowCount; ++i) {
+				if (i != 0) {
+					builder.append(',');
+				}
+				builder.append(rowPlaceholder);
+			}
+			builder.append(tail);
+			lastRowCount = rowCount;
+			lastSql = builder.toString();
+			return lastSql;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Executes a query with a huge IN list in chunks, and merges the results.
+ *
+ * <pre>
+ * <code>List&lt;String&gt; names = ChunkedInQuery.&lt;Long&gt; of(
+ *         new Query("SELECT name FROM member WHERE id", Collections.emptyList()),
+ *         new Query(" AND deleted=0", Collections.emptyList()))
+ *     .chunkSize(500)
+ *     .executeQuery(connection, ids, rs -&gt; rs.getString(1));</code>
+ * </pre>
+ *
+ * @param <K> Type of keys
+ */
+public class ChunkedInQuery<K> {
+	/**
+	 * Default number of keys per query.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	private final Function<List<K>, Query> queryFactory;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private boolean distinct;
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param queryFactory
+	 *            Builds the query for a chunk of keys. e.g.
+	 *            {@code keys -> new QueryBuilder("`").appendQuery("SELECT * FROM member WHERE id").in(keys).build()}
+	 */
+	public ChunkedInQuery(final Function<List<K>, Query> queryFactory) {
+		this.queryFactory = queryFactory;
+	}
+
+	/**
+	 * Create new instance from a template. The query for a chunk is
+	 * {@code head + " IN (?,?,...)" + tail}.
+	 *
+	 * @param head
+	 * @param tail
+	 * @return ChunkedInQuery
+	 */
+	public static <K> ChunkedInQuery<K> of(final Query head, final Query tail) {
+		return new ChunkedInQuery<>(keys -> new QueryBuilder("")
+			.append(head)
+			.in(keys)
+			.append(tail)
+			.build());
+	}
+
+	/**
+	 * Set the number of keys per query.
+	 *
+	 * @param chunkSize
+	 * @return this
+	 */
+	public ChunkedInQuery<K> chunkSize(final int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive: "
+				+ chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * Remove duplicated keys before chunking.
+	 *
+	 * @param distinct
+	 * @return this
+	 */
+	public ChunkedInQuery<K> distinct(final boolean distinct) {
+		this.distinct = distinct;
+		return this;
+	}
+
+	/**
+	 * Execute queries for all chunks sequentially.
+	 *
+	 * @param connection
+	 * @param keys
+	 * @param callback callback function. It will call every row.
+	 * @return Rows of all chunks, in the chunk order.
+	 * @throws RichSQLException
+	 */
+	public <R> List<R> executeQuery(final Connection connection,
+			final Collection<K> keys,
+			final ResultSetCallback<R> callback)
+			throws RichSQLException {
+		final List<R> result = new ArrayList<>();
+		for (final List<K> chunk : this.split(keys)) {
+			result.addAll(this.executeChunk(connection, chunk, callback));
+		}
+		return result;
+	}
+
+	/**
+	 * Execute queries for all chunks in parallel. Each connection runs its
+	 * share of chunks sequentially on the executor.
+	 *
+	 * @param connections
+	 * @param executor
+	 * @param keys
+	 * @param callback callback function. It will call every row.
+	 * @return Rows of all chunks, in the chunk order.
+	 * @throws RichSQLException
+	 */
+	public <R> List<R> executeQuery(final List<Connection> connections,
+			final Executor executor,
+			final Collection<K> keys,
+			final ResultSetCallback<R> callback)
+			throws RichSQLException {
+		if (connections.isEmpty()) {
+			throw new IllegalArgumentException("connections must not be empty");
+		}
+		final List<List<K>> chunks = this.split(keys);
+		final List<List<R>> results = new ArrayList<>(chunks.size());
+		for (int i = 0; i < chunks.size(); ++i) {
+			results.add(null);
+		}
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int c = 0; c < connections.size() && c < chunks.size(); ++c) {
+			final Connection connection = connections.get(c);
+			final int first = c;
+			futures.add(CompletableFuture.runAsync(() -> {
+				for (int i = first; i < chunks.size(); i += connections.size()) {
+					try {
+						final List<R> rows = this.executeChunk(connection,
+							chunks.get(i), callback);
+						synchronized (results) {
+							results.set(i, rows);
+						}
+					} catch (final RichSQLException e) {
+						throw new UncheckedRichSQLException(e);
+					}
+				}
+			}, executor));
+		}
+
+		try {
+			CompletableFuture.allOf(
+				futures.toArray(new CompletableFuture<?>[futures.size()]))
+				.join();
+		} catch (final CompletionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof UncheckedRichSQLException) {
+				throw (RichSQLException)cause.getCause();
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw e;
+		}
+
+		final List<R> result = new ArrayList<>();
+		synchronized (results) {
+			for (final List<R> rows : results) {
+				result.addAll(rows);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Execute queries for chunks lazily, while the stream is consumed.
+	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
+	 *
+	 * @param connection
+	 * @param keys
+	 * @param callback callback function. It will call every row.
+	 * @return Stream of rows, in the chunk order.
+	 */
+	public <R> Stream<R> executeQueryStream(final Connection connection,
+			final Collection<K> keys,
+			final ResultSetCallback<R> callback) {
+		return this.split(keys).stream().flatMap(chunk -> {
+			try {
+				return JDBCUtils.executeQueryStream(connection,
+					this.buildQuery(chunk), callback);
+			} catch (final RichSQLException e) {
+				throw new UncheckedRichSQLException(e);
+			}
+		});
+	}
+
+	private <R> List<R> executeChunk(final Connection connection,
+			final List<K> chunk,
+			final ResultSetCallback<R> callback) throws RichSQLException {
+		return JDBCUtils.executeQuery(connection, this.buildQuery(chunk),
+			rs -> {
+				final List<R> rows = new ArrayList<>();
+				while (rs.next()) {
+					rows.add(callback.call(rs));
+				}
+				return rows;
+			});
+	}
+
+	Query buildQuery(final List<K> chunk) {
+		return queryFactory.apply(chunk);
+	}
+
+	List<List<K>> split(final Collection<K> keys) {
+		final List<K> list = new ArrayList<>(distinct ? new LinkedHashSet<>(
+			keys) : keys);
+		final List<List<K>> chunks = new ArrayList<>();
+		for (int i = 0; i < list.size(); i += chunkSize) {
+			chunks.add(list.subList(i, Math.min(list.size(), i + chunkSize)));
+		}
+		return chunks;
+	}
+}
@@ -0,0 +1,547 @@
+package me.geso.jdbcutils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented query result.
+ *
+ * Numeric columns are stored in primitive arrays with a null bitmap, and
+ * string columns are dictionary encoded while the number of distinct values
+ * is small, compared with {@link #MAX_DICTIONARY_SIZE} and the number of
+ * rows. Row and column indexes are 0-origin.
+ *
+ * <pre>
+ * <code>ColumnarResult result = JDBCUtils.executeQueryColumnar(connection, query);
+ * long[] ids = ((ColumnarResult.LongColumn)result.getColumn("id")).getValues();</code>
+ * </pre>
+ */
+public class ColumnarResult {
+	/**
+	 * String columns having more distinct values than this are stored
+	 * without dictionary encoding.
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+	/**
+	 * After this number of rows, string columns having distinct values in
+	 * more than half of the rows are stored without dictionary encoding.
+	 */
+	public static final int DICTIONARY_SAMPLE_ROWS = 1024;
+
+	private final String[] labels;
+	private final Column[] columns;
+	private final int rowCount;
+
+	ColumnarResult(final String[] labels, final Column[] columns,
+			final int rowCount) {
+		this.labels = labels;
+		this.columns = columns;
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Read all remaining rows in the result set.
+	 *
+	 * @param rs
+	 * @return Columnar result
+	 * @throws SQLException
+	 */
+	static ColumnarResult read(final ResultSet rs) throws SQLException {
+		final ResultSetMetaData metaData = rs.getMetaData();
+		final int columnCount = metaData.getColumnCount();
+		final String[] labels = new String[columnCount];
+		final ColumnReader[] readers = new ColumnReader[columnCount];
+		for (int i = 0; i < columnCount; ++i) {
+			labels[i] = metaData.getColumnLabel(i + 1);
+			readers[i] = ColumnReader.create(metaData, i + 1);
+		}
+
+		int rowCount = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columnCount; ++i) {
+				readers[i].read(rs, i + 1, rowCount);
+			}
+			++rowCount;
+		}
+
+		final Column[] columns = new Column[columnCount];
+		for (int i = 0; i < columnCount; ++i) {
+			columns[i] = readers[i].build(rowCount);
+		}
+		return new ColumnarResult(labels, columns, rowCount);
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	public String getColumnLabel(final int column) {
+		return labels[column];
+	}
+
+	/**
+	 * Find the column index by the label. Labels are compared case
+	 * insensitively if there's no exact match.
+	 *
+	 * @param label
+	 * @return Column index
+	 * @throws IllegalArgumentException
+	 *             There is no such column.
+	 */
+	public int findColumn(final String label) {
+		for (int i = 0; i < labels.length; ++i) {
+			if (labels[i].equals(label)) {
+				return i;
+			}
+		}
+		for (int i = 0; i < labels.length; ++i) {
+			if (labels[i].equalsIgnoreCase(label)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column: " + label);
+	}
+
+	public Column getColumn(final int column) {
+		return columns[column];
+	}
+
+	public Column getColumn(final String label) {
+		return columns[this.findColumn(label)];
+	}
+
+	public boolean isNull(final int row, final int column) {
+		return columns[column].isNull(row);
+	}
+
+	/**
+	 * Get the value as long. Returns 0 for NULL.
+	 */
+	public long getLong(final int row, final int column) {
+		final Column c = columns[column];
+		if (c instanceof LongColumn) {
+			return ((LongColumn)c).get(row);
+		} else if (c instanceof IntColumn) {
+			return ((IntColumn)c).get(row);
+		} else {
+			final Object value = c.getObject(row);
+			return value == null ? 0 : ((Number)value).longValue();
+		}
+	}
+
+	/**
+	 * Get the value as int. Returns 0 for NULL.
+	 */
+	public int getInt(final int row, final int column) {
+		final Column c = columns[column];
+		if (c instanceof IntColumn) {
+			return ((IntColumn)c).get(row);
+		} else {
+			final Object value = c.getObject(row);
+			return value == null ? 0 : ((Number)value).intValue();
+		}
+	}
+
+	/**
+	 * Get the value as double. Returns 0 for NULL.
+	 */
+	public double getDouble(final int row, final int column) {
+		final Column c = columns[column];
+		if (c instanceof DoubleColumn) {
+			return ((DoubleColumn)c).get(row);
+		} else if (c instanceof LongColumn) {
+			return ((LongColumn)c).get(row);
+		} else if (c instanceof IntColumn) {
+			return ((IntColumn)c).get(row);
+		} else {
+			final Object value = c.getObject(row);
+			return value == null ? 0 : ((Number)value).doubleValue();
+		}
+	}
+
+	public String getString(final int row, final int column) {
+		final Column c = columns[column];
+		if (c instanceof StringColumn) {
+			return ((StringColumn)c).get(row);
+		} else {
+			final Object value = c.getObject(row);
+			return value == null ? null : value.toString();
+		}
+	}
+
+	public Object getObject(final int row, final int column) {
+		return columns[column].getObject(row);
+	}
+
+	/**
+	 * Values of a column.
+	 */
+	public static abstract class Column {
+		private final BitSet nulls;
+
+		Column(final BitSet nulls) {
+			this.nulls = nulls;
+		}
+
+		public boolean isNull(final int row) {
+			return nulls.get(row);
+		}
+
+		/**
+		 * Get the value as boxed object. NULL is returned as null.
+		 */
+		public abstract Object getObject(int row);
+	}
+
+	public static class LongColumn extends Column {
+		private final long[] values;
+
+		LongColumn(final long[] values, final BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		/**
+		 * Get values. The array is not copied. NULL is stored as 0.
+		 */
+		public long[] getValues() {
+			return values;
+		}
+
+		public long get(final int row) {
+			return values[row];
+		}
+
+		@Override
+		public Object getObject(final int row) {
+			return this.isNull(row) ? null : values[row];
+		}
+	}
+
+	public static class IntColumn extends Column {
+		private final int[] values;
+
+		IntColumn(final int[] values, final BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		/**
+		 * Get values. The array is not copied. NULL is stored as 0.
+		 */
+		public int[] getValues() {
+			return values;
+		}
+
+		public int get(final int row) {
+			return values[row];
+		}
+
+		@Override
+		public Object getObject(final int row) {
+			return this.isNull(row) ? null : values[row];
+		}
+	}
+
+	public static class DoubleColumn extends Column {
+		private final double[] values;
+
+		DoubleColumn(final double[] values, final BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		/**
+		 * Get values. The array is not copied. NULL is stored as 0.
+		 */
+		public double[] getValues() {
+			return values;
+		}
+
+		public double get(final int row) {
+			return values[row];
+		}
+
+		@Override
+		public Object getObject(final int row) {
+			return this.isNull(row) ? null : values[row];
+		}
+	}
+
+	public static class StringColumn extends Column {
+		private final int[] codes;
+		private final String[] dictionary;
+		private final String[] values;
+
+		StringColumn(final int[] codes, final String[] dictionary,
+				final String[] values, final BitSet nulls) {
+			super(nulls);
+			this.codes = codes;
+			this.dictionary = dictionary;
+			this.values = values;
+		}
+
+		public boolean isDictionaryEncoded() {
+			return codes != null;
+		}
+
+		/**
+		 * Get dictionary codes, or null if the column isn't dictionary
+		 * encoded. The array is not copied. NULL is stored as -1.
+		 */
+		public int[] getCodes() {
+			return codes;
+		}
+
+		/**
+		 * Get the dictionary, or null if the column isn't dictionary encoded.
+		 * The array is not copied.
+		 */
+		public String[] getDictionary() {
+			return dictionary;
+		}
+
+		public String get(final int row) {
+			if (codes != null) {
+				final int code = codes[row];
+				return code < 0 ? null : dictionary[code];
+			} else {
+				return values[row];
+			}
+		}
+
+		@Override
+		public Object getObject(final int row) {
+			return this.get(row);
+		}
+	}
+
+	public static class ObjectColumn extends Column {
+		private final Object[] values;
+
+		ObjectColumn(final Object[] values, final BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		@Override
+		public Object getObject(final int row) {
+			return values[row];
+		}
+	}
+
+	private static abstract class ColumnReader {
+		private static final int INITIAL_CAPACITY = 64;
+
+		final BitSet nulls = new BitSet();
+
+		static ColumnReader create(final ResultSetMetaData metaData,
+				final int column) throws SQLException {
+			switch (metaData.getColumnType(column)) {
+			case Types.BIGINT:
+				return metaData.isSigned(column) ? new LongReader()
+					: new ObjectReader();
+			case Types.INTEGER:
+				return metaData.isSigned(column) ? new IntReader()
+					: new LongReader();
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return new IntReader();
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.REAL:
+				return new DoubleReader();
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return new StringReader();
+			default:
+				return new ObjectReader();
+			}
+		}
+
+		static int grow(final int capacity) {
+			return Math.max(INITIAL_CAPACITY, capacity * 2);
+		}
+
+		abstract void read(ResultSet rs, int column, int row)
+				throws SQLException;
+
+		abstract Column build(int rowCount);
+	}
+
+	private static class LongReader extends ColumnReader {
+		private long[] values = new long[0];
+
+		@Override
+		void read(final ResultSet rs, final int column, final int row)
+				throws SQLException {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			final long value = rs.getLong(column);
+			if (value == 0 && rs.wasNull()) {
+				nulls.set(row);
+			}
+			values[row] = value;
+		}
+
+		@Override
+		Column build(final int rowCount) {
+			return new LongColumn(Arrays.copyOf(values, rowCount), nulls);
+		}
+	}
+
+	private static class IntReader extends ColumnReader {
+		private int[] values = new int[0];
+
+		@Override
+		void read(final ResultSet rs, final int column, final int row)
+				throws SQLException {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			final int value = rs.getInt(column);
+			if (value == 0 && rs.wasNull()) {
+				nulls.set(row);
+			}
+			values[row] = value;
+		}
+
+		@Override
+		Column build(final int rowCount) {
+			return new IntColumn(Arrays.copyOf(values, rowCount), nulls);
+		}
+	}
+
+	private static class DoubleReader extends ColumnReader {
+		private double[] values = new double[0];
+
+		@Override
+		void read(final ResultSet rs, final int column, final int row)
+				throws SQLException {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			final double value = rs.getDouble(column);
+			if (value == 0 && rs.wasNull()) {
+				nulls.set(row);
+			}
+			values[row] = value;
+		}
+
+		@Override
+		Column build(final int rowCount) {
+			return new DoubleColumn(Arrays.copyOf(values, rowCount), nulls);
+		}
+	}
+
+	private static class StringReader extends ColumnReader {
+		private int[] codes = new int[0];
+		private List<String> dictionary = new ArrayList<>();
+		private Map<String, Integer> dictionaryIndex = new HashMap<>();
+		// Used after the dictionary becomes too large.
+		private String[] values;
+
+		@Override
+		void read(final ResultSet rs, final int column, final int row)
+				throws SQLException {
+			final String value = rs.getString(column);
+			if (value == null) {
+				nulls.set(row);
+			}
+
+			if (values != null) {
+				if (row >= values.length) {
+					values = Arrays.copyOf(values, grow(values.length));
+				}
+				values[row] = value;
+				return;
+			}
+
+			if (row >= codes.length) {
+				codes = Arrays.copyOf(codes, grow(codes.length));
+			}
+			if (value == null) {
+				codes[row] = -1;
+				return;
+			}
+			Integer code = dictionaryIndex.get(value);
+			if (code == null) {
+				if (dictionary.size() >= MAX_DICTIONARY_SIZE
+					|| row >= DICTIONARY_SAMPLE_ROWS
+					&& dictionary.size() * 2 > row) {
+					// Too many values, or mostly distinct ones, e.g. unique
+					// keys.
+					this.decode(row);
+					values[row] = value;
+					return;
+				}
+				code = dictionary.size();
+				dictionary.add(value);
+				dictionaryIndex.put(value, code);
+			}
+			codes[row] = code;
+		}
+
+		private void decode(final int rowCount) {
+			values = new String[codes.length];
+			for (int i = 0; i < rowCount; ++i) {
+				values[i] = codes[i] < 0 ? null : dictionary.get(codes[i]);
+			}
+			codes = null;
+			dictionary = null;
+			dictionaryIndex = null;
+		}
+
+		@Override
+		Column build(final int rowCount) {
+			if (values != null) {
+				return new StringColumn(null, null, Arrays.copyOf(values,
+					rowCount), nulls);
+			} else {
+				return new StringColumn(Arrays.copyOf(codes, rowCount),
+					dictionary.toArray(new String[dictionary.size()]), null,
+					nulls);
+			}
+		}
+	}
+
+	private static class ObjectReader extends ColumnReader {
+		private Object[] values = new Object[0];
+
+		@Override
+		void read(final ResultSet rs, final int column, final int row)
+				throws SQLException {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			final Object value = rs.getObject(column);
+			if (value == null) {
+				nulls.set(row);
+			}
+			values[row] = value;
+		}
+
+		@Override
+		Column build(final int rowCount) {
+			return new ObjectColumn(Arrays.copyOf(values, rowCount), nulls);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Supplier of JDBC connections, e.g. {@code dataSource::getConnection}.<br>
+ * The caller closes the connection after using.
+ */
+@FunctionalInterface
+public interface ConnectionSupplier {
+	Connection get() throws SQLException;
+}
@@ -0,0 +1,52 @@
+package me.geso.jdbcutils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Chooses the fetch size from the width of the first rows.
+ */
+class FetchSizeTuner {
+	static final int INITIAL_FETCH_SIZE = 100;
+	static final int SAMPLE_ROWS = 32;
+	static final int MAX_FETCH_SIZE = 100000;
+	// Per-row overhead of the driver's row object.
+	private static final long ROW_OVERHEAD = 64;
+
+	private final long memoryBudget;
+	private int columnCount = -1;
+	private int rows;
+	private long bytes;
+
+	FetchSizeTuner(final long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Observe the current row. After {@link #SAMPLE_ROWS} rows, the fetch
+	 * size of the result set is updated.
+	 *
+	 * @param rs
+	 * @throws SQLException
+	 */
+	void observe(final ResultSet rs) throws SQLException {
+		if (rows >= SAMPLE_ROWS) {
+			return;
+		}
+		if (columnCount < 0) {
+			columnCount = rs.getMetaData().getColumnCount();
+		}
+		bytes += ROW_OVERHEAD;
+		for (int i = 1; i <= columnCount; ++i) {
+			bytes += Sizes.estimate(rs.getObject(i));
+		}
+		if (++rows == SAMPLE_ROWS) {
+			rs.setFetchSize(fetchSize(memoryBudget, bytes / rows));
+		}
+	}
+
+	static int fetchSize(final long memoryBudget, final long rowWidth) {
+		final long fetchSize = memoryBudget / Math.max(1, rowWidth);
+		return (int)Math.max(1, Math.min(MAX_FETCH_SIZE, fetchSize));
+	}
+}
@@ -0,0 +1,38 @@
+package me.geso.jdbcutils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@link RowMapper} for the bean or record at compile time, by
+ * {@link RowMapperProcessor}.
+ *
+ * <pre>
+ * <code>&#64;GenerateRowMapper
+ * &#64;Data
+ * public class Member {
+ *     private long id;
+ *     private String name;
+ * }
+ *
+ * List&lt;Member&gt; members = JDBCUtils.executeQuery(connection, query, MemberRowMapper.INSTANCE);</code>
+ * </pre>
+ *
+ * The mapper is named {@code <Class>RowMapper} in the same package. For
+ * nested classes, enclosing class names are joined by {@code _}, e.g.
+ * {@code Outer_MemberRowMapper}. {@link JDBCUtils#executeQueryForBean}
+ * uses the generated mapper if it exists.
+ *
+ * Beans are mapped by their setters, like
+ * {@link JDBCUtils#executeQueryForBean}, and need a non-private
+ * constructor without arguments. Records are mapped by the canonical
+ * constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateRowMapper {
+}
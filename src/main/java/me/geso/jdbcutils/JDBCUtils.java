@@ -1,23 +1,24 @@
 package me.geso.jdbcutils;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -27,6 +28,23 @@ import java.util.stream.StreamSupport;
  */
 public class JDBCUtils {
 
+	/**
+	 * Default number of rows sent per executeBatch call.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Default number of rows per batch of executeQueryPrefetchStream.
+	 */
+	public static final int DEFAULT_PREFETCH_BATCH_SIZE = 256;
+
+	// Number of batches read ahead by executeQueryPrefetchStream.
+	private static final int PREFETCH_QUEUE_CAPACITY = 4;
+
+	// Whether the driver returns generated keys for all rows of a batch, by
+	// driver name.
+	private static final ConcurrentMap<String, Boolean> BATCH_KEYS = new ConcurrentHashMap<>();
+
 	/**
 	 * Execute query, and return stream.
 	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
@@ -62,32 +80,220 @@ public class JDBCUtils {
 			final List<Object> params,
 			final ResultSetCallback<R> callback)
 			throws RichSQLException {
+		return JDBCUtils.executeQueryStream(connection, sql, params,
+			StreamOptions.DEFAULT, callback);
+	}
+
+	/**
+	 * Execute query, and return stream.
+	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
+	 *
+	 * @param connection JDBC connection
+	 * @param query SQL query
+	 * @param options statement options, e.g. fetch size
+	 * @param callback callback function. It will call every row.
+	 * @return Stream
+	 * @throws RichSQLException
+	 */
+	public static <R> Stream<R> executeQueryStream(final Connection connection,
+			final Query query,
+			final StreamOptions options,
+			final ResultSetCallback<R> callback)
+			throws RichSQLException {
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
+		PreparedStatement ps = null;
 		try {
-			final PreparedStatement ps = connection.prepareStatement(sql);
+			if (options.isDefault()) {
+				ps = connection.prepareStatement(sql);
+			} else {
+				ps = connection.prepareStatement(sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(options.getFetchSize());
+			}
 			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
 			final ResultSet rs = ps.executeQuery();
-			final ResultSetIterator<R> iterator = new ResultSetIterator<>(rs, sql, params, callback);
-			Spliterator<R> spliterator = Spliterators.spliteratorUnknownSize(
-				iterator, Spliterator.NONNULL | Spliterator.ORDERED | Spliterator.SIZED);
-			final Stream<R> stream = StreamSupport.stream(spliterator, false);
-			stream.onClose(() -> {
+			timer.executed();
+			final FetchSizeTuner fetchSizeTuner = options.getMemoryBudget() > 0
+				? new FetchSizeTuner(options.getMemoryBudget()) : null;
+			final ResultSetIterator<R> iterator = new ResultSetIterator<>(rs,
+				sql, params, callback, fetchSizeTuner, timer);
+			// The number of rows is unknown.
+			final Spliterator<R> spliterator = Spliterators.spliteratorUnknownSize(
+				iterator, Spliterator.NONNULL | Spliterator.ORDERED);
+			final PreparedStatement statement = ps;
+			return StreamSupport.stream(spliterator, false).onClose(() -> {
 				try {
-					ps.close();
+					rs.close();
 				} catch (SQLException e) {
 					throw new UncheckedRichSQLException(e);
 				}
 				try {
-					rs.close();
+					statement.close();
 				} catch (SQLException e) {
 					throw new UncheckedRichSQLException(e);
+				} finally {
+					timer.finish();
 				}
 			});
-			return stream;
 		} catch (final SQLException ex) {
-			throw new RichSQLException(ex, sql, params);
+			if (ps != null) {
+				try {
+					ps.close();
+				} catch (final SQLException closeException) {
+					ex.addSuppressed(closeException);
+				}
+			}
+			timer.failed(ex);
+			timer.finish();
+			throw new RichSQLException(ex, query);
 		}
 	}
 
+	/**
+	 * Execute query, and return stream.
+	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
+	 *
+	 * Unless the options are {@link StreamOptions#DEFAULT}, the statement is
+	 * created as forward-only and read-only, with the fetch size from the
+	 * options.
+	 *
+	 * @param connection JDBC connection
+	 * @param sql SQL query
+	 * @param params parameters
+	 * @param options statement options, e.g. fetch size
+	 * @param callback callback function. It will call every row.
+	 * @return Stream
+	 * @throws RichSQLException
+	 */
+	public static <R> Stream<R> executeQueryStream(final Connection connection,
+			final String sql,
+			final List<Object> params,
+			final StreamOptions options,
+			final ResultSetCallback<R> callback)
+			throws RichSQLException {
+		return JDBCUtils.executeQueryStream(connection, Query.wrap(sql, params),
+			options, callback);
+	}
+
+	/**
+	 * Execute query, and return stream of rows read ahead by a reader thread.
+	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
+	 *
+	 * @param connection JDBC connection
+	 * @param query SQL query
+	 * @return Stream of rows
+	 * @throws RichSQLException
+	 */
+	public static Stream<Map<String, Object>> executeQueryPrefetchStream(
+			final Connection connection,
+			final Query query)
+			throws RichSQLException {
+		return JDBCUtils.executeQueryPrefetchStream(connection, query,
+			StreamOptions.DEFAULT, DEFAULT_PREFETCH_BATCH_SIZE);
+	}
+
+	/**
+	 * Execute query, and return stream of rows read ahead by a reader thread.
+	 * <B>You must call .close() after using.</B> I recommend to use try-with-resources.
+	 *
+	 * The reader thread copies rows into batches of {@code batchSize} rows,
+	 * and keeps fetching while the stream consumes earlier batches. The
+	 * stream splits on batch boundaries, so mapping rows on a parallel
+	 * stream uses several cores.
+	 *
+	 * <pre>
+	 * <code>try (Stream&lt;Map&lt;String, Object&gt;&gt; stream = JDBCUtils.executeQueryPrefetchStream(
+	 *         connection, query, StreamOptions.mysqlStreaming(), 1000)) {
+	 *     stream.parallel().map(row -&gt; ...).forEachOrdered(...);
+	 * }</code>
+	 * </pre>
+	 *
+	 * @param connection JDBC connection
+	 * @param query SQL query
+	 * @param options statement options, e.g. fetch size
+	 * @param batchSize number of rows per batch
+	 * @return Stream of rows
+	 * @throws RichSQLException
+	 */
+	public static Stream<Map<String, Object>> executeQueryPrefetchStream(
+			final Connection connection,
+			final Query query,
+			final StreamOptions options,
+			final int batchSize)
+			throws RichSQLException {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException(
+				"batchSize must be positive: " + batchSize);
+		}
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			if (options.isDefault()) {
+				ps = connection.prepareStatement(sql);
+			} else {
+				ps = connection.prepareStatement(sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(options.getFetchSize());
+			}
+			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
+			rs = ps.executeQuery();
+			timer.executed();
+			final PrefetchSpliterator spliterator = new PrefetchSpliterator(
+				ps, rs, sql, params, batchSize, PREFETCH_QUEUE_CAPACITY, timer);
+			return StreamSupport.stream(spliterator, false).onClose(
+				spliterator::close);
+		} catch (final SQLException ex) {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (final SQLException closeException) {
+					ex.addSuppressed(closeException);
+				}
+			}
+			if (ps != null) {
+				try {
+					ps.close();
+				} catch (final SQLException closeException) {
+					ex.addSuppressed(closeException);
+				}
+			}
+			timer.failed(ex);
+			timer.finish();
+			throw new RichSQLException(ex, query);
+		}
+	}
+
+	/**
+	 * Scan rows by keyset pagination, and return stream.
+	 * Pages are fetched by {@code WHERE key > ? ORDER BY key LIMIT pageSize},
+	 * on a new connection for each page. No connection is held between pages.
+	 * See {@link KeysetScanner} for more options.
+	 *
+	 * @param connectionSupplier supplies a connection for each page
+	 * @param query SELECT query without WHERE, ORDER BY and LIMIT clauses
+	 * @param keyColumn unique key column, e.g. primary key
+	 * @param pageSize number of rows per page
+	 * @param callback callback function. It will call every row.
+	 * @return Stream of rows, in the key order.
+	 */
+	public static <R> Stream<R> executeKeysetStream(
+			final ConnectionSupplier connectionSupplier,
+			final Query query,
+			final String keyColumn,
+			final int pageSize,
+			final ResultSetCallback<R> callback) {
+		return new KeysetScanner(connectionSupplier, query, keyColumn)
+			.pageSize(pageSize)
+			.stream(callback);
+	}
+
 	/**
 	 * Execute query with callback.
 	 *
@@ -101,9 +307,24 @@ public class JDBCUtils {
 			final Query query,
 			final ResultSetCallback<R> callback)
 			throws RichSQLException {
-		return JDBCUtils.executeQuery(connection,
-			query.getSQL(), query.getParameters(),
-			callback);
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
+		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
+			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
+			try (final ResultSet rs = ps.executeQuery()) {
+				timer.executed();
+				final R result = callback.call(rs);
+				timer.called();
+				return result;
+			}
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, query);
+		} finally {
+			timer.finish();
+		}
 	}
 
 	/**
@@ -121,14 +342,8 @@ public class JDBCUtils {
 			final List<Object> params,
 			final ResultSetCallback<R> callback)
 			throws RichSQLException {
-		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
-			JDBCUtils.fillPreparedStatementParams(ps, params);
-			try (final ResultSet rs = ps.executeQuery()) {
-				return callback.call(rs);
-			}
-		} catch (final SQLException ex) {
-			throw new RichSQLException(ex, sql, params);
-		}
+		return JDBCUtils.executeQuery(connection, Query.wrap(sql, params),
+			callback);
 	}
 
 	/**
@@ -144,12 +359,18 @@ public class JDBCUtils {
 			final String sql,
 			final List<Object> params)
 			throws RichSQLException {
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, sql,
+			params);
 		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
 			JDBCUtils.fillPreparedStatementParams(ps, params);
-			try (final ResultSet rs = ps.executeQuery()) {
-			}
+			timer.prepared();
+			ps.executeQuery().close();
+			timer.executed();
 		} catch (final SQLException ex) {
+			timer.failed(ex);
 			throw new RichSQLException(ex, sql, params);
+		} finally {
+			timer.finish();
 		}
 	}
 
@@ -168,30 +389,113 @@ public class JDBCUtils {
 			final String sql,
 			final List<Object> params)
 			throws RichSQLException {
+		return JDBCUtils.executeQueryMapList(connection, Query.wrap(sql,
+			params));
+	}
+
+	/**
+	 * Execute query without callback.
+	 * This method returns results as {@code List<Map<String, Object>>}.
+	 *
+	 * @param connection
+	 * @param query
+	 * @return Selected rows in list of maps.
+	 * @throws RichSQLException
+	 */
+	public static List<Map<String, Object>> executeQueryMapList(
+			final Connection connection,
+			final Query query)
+			throws RichSQLException {
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
 		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
 			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
 			try (final ResultSet rs = ps.executeQuery()) {
-				ResultSetMetaData metaData = rs.getMetaData();
-				int columnCount = metaData.getColumnCount();
+				timer.executed();
+				// Column labels are shared by all rows.
+				RowMap.Schema schema = RowMap.Schema.of(rs.getMetaData());
+				int columnCount = schema.getColumnCount();
 				List<Map<String, Object>> mapList = new ArrayList<>();
 				while (rs.next()) {
-					Map<String, Object> map = new HashMap<>();
-					for (int i = 1; i <= columnCount; i++) {
-						String name = metaData.getColumnLabel(i);
-						map.put(name, rs.getObject(i));
+					Object[] values = new Object[columnCount];
+					for (int i = 0; i < columnCount; i++) {
+						values[i] = rs.getObject(i + 1);
 					}
-					mapList.add(map);
+					mapList.add(new RowMap(schema, values));
 				}
+				timer.fetched();
+				timer.addRows(mapList.size());
 				return mapList;
 			}
 		} catch (final SQLException ex) {
-			throw new RichSQLException(ex, sql, params);
+			timer.failed(ex);
+			throw new RichSQLException(ex, query);
+		} finally {
+			timer.finish();
+		}
+	}
+
+	/**
+	 * Execute query, and read the result in column oriented form.
+	 *
+	 * @param connection
+	 * @param query
+	 * @return Selected rows in columnar form.
+	 * @throws RichSQLException
+	 */
+	public static ColumnarResult executeQueryColumnar(
+			final Connection connection,
+			final Query query)
+			throws RichSQLException {
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
+		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
+			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
+			try (final ResultSet rs = ps.executeQuery()) {
+				timer.executed();
+				final ColumnarResult result = ColumnarResult.read(rs);
+				timer.fetched();
+				timer.addRows(result.getRowCount());
+				return result;
+			}
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, query);
+		} finally {
+			timer.finish();
 		}
 	}
 
+	/**
+	 * Execute query, and read the result in column oriented form.
+	 * Numeric columns are read with typed getters into primitive arrays, so
+	 * cells are not boxed.
+	 *
+	 * @param connection
+	 * @param sql
+	 * @param params
+	 * @return Selected rows in columnar form.
+	 * @throws RichSQLException
+	 */
+	public static ColumnarResult executeQueryColumnar(
+			final Connection connection,
+			final String sql,
+			final List<Object> params)
+			throws RichSQLException {
+		return JDBCUtils.executeQueryColumnar(connection, Query.wrap(sql,
+			params));
+	}
+
 	/**
 	 * [EXPERIMENTAL] Execute a query and map the result to the bean.
 	 *
+	 * If the class is annotated by {@link GenerateRowMapper}, the generated
+	 * {@link RowMapper} is used instead of reflection.
+	 *
 	 * @param connection
 	 * @param sql
 	 * @param params
@@ -211,33 +515,29 @@ public class JDBCUtils {
 			throws RichSQLException, IntrospectionException,
 			InstantiationException, IllegalAccessException,
 			IllegalArgumentException, InvocationTargetException {
-		// Get bean information first.
-		BeanInfo beanInfo = Introspector.getBeanInfo(valueClass, Object.class);
-		PropertyDescriptor[] propertyDescriptors = beanInfo
-			.getPropertyDescriptors();
+		// Bean information is cached per class.
+		final RowMapper<T> generated = RowMapper.find(valueClass);
+		final BeanMapper<T> mapper = generated == null ? BeanMapper
+			.forClass(valueClass) : null;
 
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, sql,
+			params);
 		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
 			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
 			try (final ResultSet rs = ps.executeQuery()) {
-				List<T> valueList = new ArrayList<>();
-				while (rs.next()) {
-					T row = valueClass.newInstance();
-					for (PropertyDescriptor prop : propertyDescriptors) {
-						Method writeMethod = prop.getWriteMethod();
-						if (writeMethod != null) {
-							String name = prop.getName();
-							Object value = rs.getObject(name);
-							if (value != null) {
-								writeMethod.invoke(row, value);
-							}
-						}
-					}
-					valueList.add(row);
-				}
-				return valueList;
+				timer.executed();
+				final List<T> beans = generated != null ? generated.call(rs)
+					: mapper.mapAll(rs);
+				timer.fetched();
+				timer.addRows(beans.size());
+				return beans;
 			}
 		} catch (final SQLException ex) {
+			timer.failed(ex);
 			throw new RichSQLException(ex, sql, params);
+		} finally {
+			timer.finish();
 		}
 	}
 
@@ -252,8 +552,22 @@ public class JDBCUtils {
 	public static int executeUpdate(final Connection connection,
 			final Query query)
 			throws RichSQLException {
-		return JDBCUtils.executeUpdate(connection, query.getSQL(),
-			query.getParameters());
+		final String sql = query.getSQL();
+		final List<Object> params = query.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.UPDATE, query);
+		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
+			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
+			final int count = ps.executeUpdate();
+			timer.executed();
+			timer.addRows(count);
+			return count;
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, query);
+		} finally {
+			timer.finish();
+		}
 	}
 
 	/**
@@ -269,12 +583,7 @@ public class JDBCUtils {
 			final String sql,
 			final List<Object> params)
 			throws RichSQLException {
-		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
-			JDBCUtils.fillPreparedStatementParams(ps, params);
-			return ps.executeUpdate();
-		} catch (final SQLException ex) {
-			throw new RichSQLException(ex, sql, params);
-		}
+		return JDBCUtils.executeUpdate(connection, Query.wrap(sql, params));
 	}
 
 	/**
@@ -292,8 +601,513 @@ public class JDBCUtils {
 			.executeUpdate(connection, sql, Collections.emptyList());
 	}
 
+	/**
+	 * Execute the same DML statement for each row, using JDBC batch updates.
+	 * Rows are sent in chunks of {@link #DEFAULT_BATCH_SIZE}.
+	 *
+	 * @param connection JDBC connection
+	 * @param sql SQL query
+	 * @param rows parameters for each row
+	 * @return Update counts for each row.
+	 * @throws RichSQLException
+	 */
+	public static int[] executeBatch(final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows)
+			throws RichSQLException {
+		return JDBCUtils.executeBatch(connection, sql, rows,
+			DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Execute the same DML statement for each row, using JDBC batch updates.
+	 * One PreparedStatement is used for all rows, and
+	 * {@code PreparedStatement#executeBatch()} is called for every
+	 * {@code batchSize} rows.
+	 *
+	 * <pre>
+	 * <code>JDBCUtils.executeBatch(connection, "INSERT INTO member (name) VALUES (?)", rows, 500);</code>
+	 * </pre>
+	 *
+	 * @param connection JDBC connection
+	 * @param sql SQL query
+	 * @param rows parameters for each row
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @return Update counts for each row.
+	 * @throws RichSQLException
+	 *             The exception contains the SQL and the parameters of the
+	 *             failed chunk.
+	 */
+	public static int[] executeBatch(final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows,
+			final int batchSize)
+			throws RichSQLException {
+		return toIntArray(JDBCUtils.executeBatchInternal(connection,
+			new BatchRowIterator(sql, rows.iterator()), batchSize, false));
+	}
+
+	/**
+	 * Execute queries using JDBC batch updates.
+	 * Consecutive queries that have the same SQL share one PreparedStatement.
+	 *
+	 * @param connection JDBC connection
+	 * @param queries queries
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @return Update counts for each query.
+	 * @throws RichSQLException
+	 */
+	public static int[] executeBatch(final Connection connection,
+			final Iterable<Query> queries,
+			final int batchSize)
+			throws RichSQLException {
+		return toIntArray(JDBCUtils.executeBatchInternal(connection,
+			queries.iterator(), batchSize, false));
+	}
+
+	/**
+	 * Same as {@link #executeBatch(Connection, String, Iterable, int)}, but
+	 * returns update counts as long values.
+	 * Falls back to {@code executeBatch} if the driver doesn't support
+	 * {@code executeLargeBatch}.
+	 *
+	 * @param connection JDBC connection
+	 * @param sql SQL query
+	 * @param rows parameters for each row
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @return Update counts for each row.
+	 * @throws RichSQLException
+	 */
+	public static long[] executeLargeBatch(final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows,
+			final int batchSize)
+			throws RichSQLException {
+		return JDBCUtils.executeBatchInternal(connection,
+			new BatchRowIterator(sql, rows.iterator()), batchSize, true);
+	}
+
+	/**
+	 * Same as {@link #executeBatch(Connection, Iterable, int)}, but returns
+	 * update counts as long values.
+	 *
+	 * @param connection JDBC connection
+	 * @param queries queries
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @return Update counts for each query.
+	 * @throws RichSQLException
+	 */
+	public static long[] executeLargeBatch(final Connection connection,
+			final Iterable<Query> queries,
+			final int batchSize)
+			throws RichSQLException {
+		return JDBCUtils.executeBatchInternal(connection,
+			queries.iterator(), batchSize, true);
+	}
+
+	private static long[] executeBatchInternal(final Connection connection,
+			final Iterator<Query> queries,
+			final int batchSize,
+			final boolean large)
+			throws RichSQLException {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException(
+				"batchSize must be positive: " + batchSize);
+		}
+
+		final LongArrayBuilder counts = new LongArrayBuilder();
+		final List<Object> chunk = new ArrayList<>();
+		Query pending = queries.hasNext() ? queries.next() : null;
+		while (pending != null) {
+			final String sql = pending.getSQL();
+			final QueryTimer timer = QueryTimer.start(QueryEvent.Type.BATCH,
+				sql, Collections.emptyList());
+			try (final PreparedStatement ps = connection.prepareStatement(sql)) {
+				do {
+					JDBCUtils.fillPreparedStatementParams(ps,
+						pending.getParameters());
+					ps.addBatch();
+					chunk.add(pending.getParameters());
+					timer.prepared();
+					if (chunk.size() >= batchSize) {
+						executeChunk(ps, large, counts, timer);
+						chunk.clear();
+					}
+					pending = queries.hasNext() ? queries.next() : null;
+				} while (pending != null && sql.equals(pending.getSQL()));
+				if (!chunk.isEmpty()) {
+					executeChunk(ps, large, counts, timer);
+					chunk.clear();
+				}
+			} catch (final SQLException ex) {
+				timer.failed(ex);
+				throw new RichSQLException(ex, sql, new ArrayList<>(chunk));
+			} finally {
+				timer.finish();
+			}
+		}
+		return counts.toArray();
+	}
+
+	private static void executeChunk(final PreparedStatement ps,
+			final boolean large, final LongArrayBuilder counts,
+			final QueryTimer timer) throws SQLException {
+		final long[] chunkCounts = executeChunk(ps, large);
+		timer.executed();
+		long rows = 0;
+		for (final long count : chunkCounts) {
+			// SUCCESS_NO_INFO is negative.
+			rows += Math.max(count, 0);
+		}
+		timer.addRows(rows);
+		counts.add(chunkCounts);
+	}
+
+	private static long[] executeChunk(final PreparedStatement ps,
+			final boolean large) throws SQLException {
+		if (large) {
+			try {
+				return ps.executeLargeBatch();
+			} catch (final UnsupportedOperationException e) {
+				// JDBC 4.1 or older driver. Use executeBatch instead.
+			}
+		}
+		final int[] counts = ps.executeBatch();
+		final long[] result = new long[counts.length];
+		for (int i = 0; i < counts.length; ++i) {
+			result[i] = counts[i];
+		}
+		return result;
+	}
+
+	private static int[] toIntArray(final long[] counts) {
+		final int[] result = new int[counts.length];
+		for (int i = 0; i < counts.length; ++i) {
+			result[i] = (int)counts[i];
+		}
+		return result;
+	}
+
+	private static class LongArrayBuilder {
+		private long[] values = new long[16];
+		private int size;
+
+		void add(final long[] chunk) {
+			if (size + chunk.length > values.length) {
+				values = Arrays.copyOf(values,
+					Math.max(values.length * 2, size + chunk.length));
+			}
+			System.arraycopy(chunk, 0, values, size, chunk.length);
+			size += chunk.length;
+		}
+
+		void add(final long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			values[size++] = value;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * Insert rows using JDBC batch updates, and return the generated keys.
+	 * Rows are sent in chunks of {@link #DEFAULT_BATCH_SIZE}.
+	 *
+	 * @param connection JDBC connection
+	 * @param sql INSERT statement
+	 * @param rows parameters for each row
+	 * @return Generated keys, in the order of the rows.
+	 * @throws RichSQLException
+	 */
+	public static long[] executeInsertBatchReturningKeys(
+			final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows)
+			throws RichSQLException {
+		return JDBCUtils.executeInsertBatchReturningKeys(connection, sql,
+			rows, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Insert rows using JDBC batch updates, and return the generated keys.
+	 * The statement is prepared with {@code RETURN_GENERATED_KEYS}, and the
+	 * only column of {@code getGeneratedKeys()} is read as long. Use
+	 * {@link #executeInsertBatchReturningKeys(Connection, String, Iterable, int, String)}
+	 * if the driver returns more columns, e.g. PostgreSQL.
+	 *
+	 * <pre>
+	 * <code>long[] ids = JDBCUtils.executeInsertBatchReturningKeys(connection,
+	 *     "INSERT INTO member (name) VALUES (?)", rows, 500);</code>
+	 * </pre>
+	 *
+	 * @param connection JDBC connection
+	 * @param sql INSERT statement
+	 * @param rows parameters for each row
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @return Generated keys, in the order of the rows.
+	 * @throws RichSQLException
+	 *             The exception contains the SQL and the parameters of the
+	 *             failed chunk. It's also thrown if the number of keys
+	 *             doesn't match the number of rows, e.g. INSERT IGNORE
+	 *             skipped some rows.
+	 */
+	public static long[] executeInsertBatchReturningKeys(
+			final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows,
+			final int batchSize)
+			throws RichSQLException {
+		return JDBCUtils.executeInsertBatchReturningKeys(connection, sql,
+			rows, batchSize, null);
+	}
+
+	/**
+	 * Insert rows using JDBC batch updates, and return the generated keys
+	 * of the key column.
+	 *
+	 * Not all drivers return keys for all rows of a batch. The first batch
+	 * of a driver is checked, and if it returns fewer keys than the rows
+	 * it inserted, it's rolled back and the rows are inserted one by one on
+	 * the same statement. The result is remembered for the driver. The
+	 * rollback uses a savepoint, or a transaction if the connection is in
+	 * auto-commit mode. Without savepoints, rows are inserted one by one
+	 * until a driver is checked.
+	 *
+	 * @param connection JDBC connection
+	 * @param sql INSERT statement
+	 * @param rows parameters for each row
+	 * @param batchSize number of rows sent per executeBatch call
+	 * @param keyColumn name of the generated key column, or null to read
+	 *            the only column of {@code getGeneratedKeys()}
+	 * @return Generated keys, in the order of the rows.
+	 * @throws RichSQLException
+	 *             The exception contains the SQL and the parameters of the
+	 *             failed chunk. It's also thrown if the number of keys
+	 *             doesn't match the number of rows, e.g. INSERT IGNORE
+	 *             skipped some rows.
+	 */
+	public static long[] executeInsertBatchReturningKeys(
+			final Connection connection,
+			final String sql,
+			final Iterable<List<Object>> rows,
+			final int batchSize,
+			final String keyColumn)
+			throws RichSQLException {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException(
+				"batchSize must be positive: " + batchSize);
+		}
+
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.BATCH, sql,
+			Collections.emptyList());
+		final LongArrayBuilder keys = new LongArrayBuilder();
+		final List<List<Object>> chunk = new ArrayList<>();
+		try (final PreparedStatement ps = keyColumn == null ? connection
+			.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+			: connection.prepareStatement(sql, new String[] {keyColumn})) {
+			final String driver = connection.getMetaData().getDriverName();
+			Boolean batchKeys = BATCH_KEYS.get(driver);
+			for (final List<Object> row : rows) {
+				chunk.add(row);
+				if (batchKeys == Boolean.FALSE) {
+					JDBCUtils.insertRows(ps, chunk, keys, timer);
+					chunk.clear();
+				} else if (chunk.size() >= batchSize) {
+					batchKeys = JDBCUtils.insertChunk(connection, ps, chunk,
+						batchKeys, driver, keys, timer);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				JDBCUtils.insertChunk(connection, ps, chunk, batchKeys, driver,
+					keys, timer);
+				chunk.clear();
+			}
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, sql, new ArrayList<>(chunk));
+		} finally {
+			timer.finish();
+		}
+		return keys.toArray();
+	}
+
+	/**
+	 * Insert the chunk by a batch, or one by one if the driver doesn't
+	 * return keys for batches.
+	 *
+	 * @return Whether the driver returns keys for batches, or null if it's
+	 *         still unknown.
+	 */
+	private static Boolean insertChunk(final Connection connection,
+			final PreparedStatement ps, final List<List<Object>> chunk,
+			final Boolean batchKeys, final String driver,
+			final LongArrayBuilder keys, final QueryTimer timer)
+			throws SQLException {
+		if (batchKeys == Boolean.FALSE) {
+			JDBCUtils.insertRows(ps, chunk, keys, timer);
+			return batchKeys;
+		}
+		if (batchKeys == null && chunk.size() > 1) {
+			return JDBCUtils.checkBatchKeys(connection, ps, chunk, driver,
+				keys, timer);
+		}
+		// A batch of one row returns its key on any driver.
+		for (final List<Object> row : chunk) {
+			JDBCUtils.fillPreparedStatementParams(ps, row);
+			ps.addBatch();
+		}
+		timer.prepared();
+		ps.executeBatch();
+		timer.executed();
+		keys.add(JDBCUtils.checkKeys(JDBCUtils.readGeneratedKeys(ps),
+			chunk.size()));
+		timer.fetched();
+		timer.addRows(chunk.size());
+		return batchKeys;
+	}
+
+	// Insert the first chunk of a driver by a batch, and roll it back if
+	// the driver returns keys of some rows only, e.g. the last row.
+	private static Boolean checkBatchKeys(final Connection connection,
+			final PreparedStatement ps, final List<List<Object>> chunk,
+			final String driver, final LongArrayBuilder keys,
+			final QueryTimer timer) throws SQLException {
+		final boolean autoCommit = connection.getAutoCommit();
+		Savepoint savepoint = null;
+		if (autoCommit) {
+			connection.setAutoCommit(false);
+		} else if (connection.getMetaData().supportsSavepoints()) {
+			savepoint = connection.setSavepoint();
+		} else {
+			// The batch can't be undone.
+			JDBCUtils.insertRows(ps, chunk, keys, timer);
+			return null;
+		}
+		boolean done = false;
+		try {
+			long[] chunkKeys;
+			int inserted = 0;
+			try {
+				for (final List<Object> row : chunk) {
+					JDBCUtils.fillPreparedStatementParams(ps, row);
+					ps.addBatch();
+				}
+				timer.prepared();
+				for (final int count : ps.executeBatch()) {
+					// SUCCESS_NO_INFO is counted as inserted.
+					if (count != 0) {
+						++inserted;
+					}
+				}
+				timer.executed();
+				chunkKeys = JDBCUtils.readGeneratedKeys(ps);
+			} catch (final SQLFeatureNotSupportedException e) {
+				ps.clearBatch();
+				chunkKeys = null;
+				inserted = chunk.size();
+			}
+			if (chunkKeys == null || chunkKeys.length < 2 && inserted > 1) {
+				if (savepoint != null) {
+					connection.rollback(savepoint);
+				} else {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				done = true;
+				BATCH_KEYS.put(driver, false);
+				JDBCUtils.insertRows(ps, chunk, keys, timer);
+				return false;
+			}
+			BATCH_KEYS.put(driver, true);
+			keys.add(JDBCUtils.checkKeys(chunkKeys, chunk.size()));
+			if (autoCommit) {
+				connection.commit();
+				connection.setAutoCommit(true);
+			}
+			done = true;
+			timer.fetched();
+			timer.addRows(chunk.size());
+			return true;
+		} finally {
+			if (!done && autoCommit) {
+				try {
+					connection.rollback();
+				} finally {
+					connection.setAutoCommit(true);
+				}
+			}
+		}
+	}
+
+	private static void insertRows(final PreparedStatement ps,
+			final List<List<Object>> rows, final LongArrayBuilder keys,
+			final QueryTimer timer) throws SQLException {
+		for (final List<Object> row : rows) {
+			JDBCUtils.fillPreparedStatementParams(ps, row);
+			timer.prepared();
+			ps.executeUpdate();
+			timer.executed();
+			keys.add(JDBCUtils.checkKeys(JDBCUtils.readGeneratedKeys(ps), 1));
+			timer.fetched();
+			timer.addRows(1);
+		}
+	}
+
+	private static long[] readGeneratedKeys(final PreparedStatement ps)
+			throws SQLException {
+		final LongArrayBuilder keys = new LongArrayBuilder();
+		try (final ResultSet rs = ps.getGeneratedKeys()) {
+			final int columnCount = rs.getMetaData().getColumnCount();
+			if (columnCount != 1) {
+				throw new SQLException("Expected 1 generated key column, but got "
+					+ columnCount + ". Specify the key column.");
+			}
+			while (rs.next()) {
+				keys.add(rs.getLong(1));
+			}
+		}
+		return keys.toArray();
+	}
+
+	private static long[] checkKeys(final long[] keys, final int expected)
+			throws SQLException {
+		if (keys.length != expected) {
+			throw new SQLException("Expected " + expected
+				+ " generated keys, but got " + keys.length);
+		}
+		return keys;
+	}
+
+	private static class BatchRowIterator implements Iterator<Query> {
+		private final String sql;
+		private final Iterator<List<Object>> rows;
+
+		BatchRowIterator(final String sql, final Iterator<List<Object>> rows) {
+			this.sql = sql;
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return rows.hasNext();
+		}
+
+		@Override
+		public Query next() {
+			// The row is bound right away, so it's not copied.
+			return Query.wrap(sql, rows.next());
+		}
+	}
+
 	/**
 	 * Fill parameters for prepared statement.
+	 * Parameters of {@code Query} built by {@code QueryBuilder} are bound by
+	 * the typed setters, without boxing.
 	 *
 	 * <pre>
 	 * <code>JDBCUtils.fillPreparedStatementParams(preparedStatement, ImmutableList.of(1,2,3));</code>
@@ -306,8 +1120,12 @@ public class JDBCUtils {
 	public static void fillPreparedStatementParams(
 			final PreparedStatement preparedStatement,
 			final List<Object> params) throws SQLException {
+		if (params instanceof ParameterList) {
+			((ParameterList)params).bind(preparedStatement);
+			return;
+		}
 		for (int i = 0; i < params.size(); ++i) {
-			preparedStatement.setObject(i + 1, params.get(i));
+			ParameterList.bind(preparedStatement, i + 1, params.get(i));
 		}
 	}
 
@@ -0,0 +1,242 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a table by keyset pagination.
+ *
+ * <pre>
+ * <code>try (Stream&lt;String&gt; names = new KeysetScanner(dataSource::getConnection,
+ *         new Query("SELECT id, name FROM member", Collections.emptyList()), "id")
+ *     .where(new Query("deleted=?", Collections.singletonList(0)))
+ *     .pageSize(1000)
+ *     .stream(rs -&gt; rs.getString("name"))) {
+ *     names.forEach(...);
+ * }</code>
+ * </pre>
+ *
+ * Each page is fetched by
+ * {@code SELECT ... WHERE (condition) AND key > ? ORDER BY key LIMIT n},
+ * with the last key of the previous page. A page is read into memory on a
+ * fresh connection from the supplier, and the statement and the connection
+ * are closed before its rows are passed to the stream. Nothing is held
+ * between pages, so a long scan doesn't keep a transaction open on the
+ * server.
+ *
+ * The key must be unique and not NULL, e.g. the primary key.
+ */
+public class KeysetScanner {
+	/**
+	 * Default number of rows per page.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+
+	private final ConnectionSupplier connectionSupplier;
+	private final Query select;
+	private final String keyColumn;
+	private String keyLabel;
+	private Query where;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private Object after;
+	private Object upTo;
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param connectionSupplier
+	 *            Supplies a connection for each page.
+	 * @param select
+	 *            SELECT query without WHERE, ORDER BY and LIMIT clauses.
+	 * @param keyColumn
+	 *            Key column expression in SQL, e.g. {@code `m`.`id`}.
+	 */
+	public KeysetScanner(final ConnectionSupplier connectionSupplier,
+			final Query select, final String keyColumn) {
+		this.connectionSupplier = connectionSupplier;
+		this.select = select;
+		this.keyColumn = keyColumn;
+		this.keyLabel = KeysetScanner.toLabel(keyColumn);
+	}
+
+	/**
+	 * Set the condition of the WHERE clause.
+	 *
+	 * @param where
+	 * @return this
+	 */
+	public KeysetScanner where(final Query where) {
+		this.where = where;
+		return this;
+	}
+
+	/**
+	 * Set the number of rows per page.
+	 *
+	 * @param pageSize
+	 * @return this
+	 */
+	public KeysetScanner pageSize(final int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be positive: "
+				+ pageSize);
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * Set the column label of the key in the result set. The default is the
+	 * key column without the table name and quotes.
+	 *
+	 * @param keyLabel
+	 * @return this
+	 */
+	public KeysetScanner keyLabel(final String keyLabel) {
+		this.keyLabel = keyLabel;
+		return this;
+	}
+
+	/**
+	 * Start the scan after this key. e.g. to resume an interrupted scan.
+	 *
+	 * @param key
+	 * @return this
+	 */
+	public KeysetScanner after(final Object key) {
+		this.after = key;
+		return this;
+	}
+
+	/**
+	 * Stop the scan at this key, inclusive.
+	 *
+	 * @param key
+	 * @return this
+	 */
+	public KeysetScanner upTo(final Object key) {
+		this.upTo = key;
+		return this;
+	}
+
+	/**
+	 * Scan rows lazily, while the stream is consumed.
+	 * You should call .close() after using, to stop fetching pages.
+	 *
+	 * @param callback callback function. It will call every row.
+	 * @return Stream of rows, in the key order.
+	 */
+	public <R> Stream<R> stream(final ResultSetCallback<R> callback) {
+		final PageSpliterator<R> spliterator = new PageSpliterator<>(callback);
+		return StreamSupport.stream(spliterator, false).onClose(
+			spliterator::close);
+	}
+
+	Query buildPageQuery(final Object lastKey) {
+		final QueryBuilder builder = new QueryBuilder("").append(select);
+		String conjunction = " WHERE ";
+		if (where != null) {
+			builder.appendQuery(" WHERE (").append(where).appendQuery(")");
+			conjunction = " AND ";
+		}
+		if (lastKey != null) {
+			builder.appendQuery(conjunction)
+				.appendQuery(keyColumn)
+				.appendQueryAndParameter(" > ?", lastKey);
+			conjunction = " AND ";
+		}
+		if (upTo != null) {
+			builder.appendQuery(conjunction)
+				.appendQuery(keyColumn)
+				.appendQueryAndParameter(" <= ?", upTo);
+		}
+		return builder.appendQuery(" ORDER BY ")
+			.appendQuery(keyColumn)
+			.appendQuery(" LIMIT ")
+			.appendQuery(pageSize)
+			.build();
+	}
+
+	static String toLabel(final String keyColumn) {
+		String label = keyColumn.substring(keyColumn.lastIndexOf('.') + 1)
+			.trim();
+		if (label.length() >= 2 && "`\"[".indexOf(label.charAt(0)) >= 0) {
+			label = label.substring(1, label.length() - 1);
+		}
+		return label;
+	}
+
+	private <R> Page<R> fetch(final Object lastKey,
+			final ResultSetCallback<R> callback) {
+		final Query query = this.buildPageQuery(lastKey);
+		try (final Connection connection = connectionSupplier.get()) {
+			return JDBCUtils.executeQuery(connection, query, rs -> {
+				final Page<R> page = new Page<>(pageSize);
+				while (rs.next()) {
+					page.lastKey = rs.getObject(keyLabel);
+					if (page.lastKey == null) {
+						throw new SQLException("Key column '" + keyLabel
+							+ "' must not be NULL.");
+					}
+					page.rows.add(callback.call(rs));
+				}
+				return page;
+			});
+		} catch (final RichSQLException e) {
+			throw new UncheckedRichSQLException(e);
+		} catch (final SQLException e) {
+			throw new UncheckedRichSQLException(e, query);
+		}
+	}
+
+	private static class Page<R> {
+		final List<R> rows;
+		Object lastKey;
+
+		Page(final int pageSize) {
+			this.rows = new ArrayList<>(pageSize);
+		}
+	}
+
+	private class PageSpliterator<R> extends Spliterators.AbstractSpliterator<R> {
+		private final ResultSetCallback<R> callback;
+		private Iterator<R> rows;
+		private Object lastKey = after;
+		private boolean finished;
+		private boolean closed;
+
+		PageSpliterator(final ResultSetCallback<R> callback) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.callback = callback;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super R> action) {
+			while (rows == null || !rows.hasNext()) {
+				if (finished || closed) {
+					return false;
+				}
+				final Page<R> page = fetch(lastKey, callback);
+				// A short page is the last one.
+				finished = page.rows.size() < pageSize;
+				lastKey = page.lastKey;
+				rows = page.rows.iterator();
+			}
+			action.accept(rows.next());
+			return true;
+		}
+
+		void close() {
+			closed = true;
+			rows = null;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package me.geso.jdbcutils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Query listener, that keeps latency histograms per SQL shape, e.g.
+ * {@code SELECT * FROM member WHERE id IN (...)}. See
+ * {@link Query#getFingerprint()}.
+ *
+ * <pre>
+ * <code>LatencyHistogramListener histograms = new LatencyHistogramListener()
+ *     .setSlowQueryThreshold(1, TimeUnit.SECONDS);
+ * QueryListeners.add(histograms);
+ * ...
+ * for (LatencyHistogramListener.Snapshot snapshot : histograms.getSnapshots()) {
+ *     System.out.println(snapshot.getSql() + " p99=" + snapshot.getPercentileNanos(99));
+ * }</code>
+ * </pre>
+ *
+ * Recording is lock free. Latencies are counted in log-linear buckets, with
+ * 8 buckets for each power of two microseconds, so percentiles are accurate
+ * to 12.5%. Counters are striped by thread to reduce contention.
+ */
+@Slf4j
+public class LatencyHistogramListener implements QueryListener {
+	/**
+	 * Default maximum number of SQL shapes. Queries of other shapes are
+	 * counted in {@link #OTHER}.
+	 */
+	public static final int DEFAULT_MAX_SHAPES = 1000;
+
+	/**
+	 * SQL of the histogram for queries over the limit of shapes.
+	 */
+	public static final String OTHER = "(other)";
+
+	// Linear buckets for 0-7us, then 8 buckets per power of two, up to 2^40us.
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+		* SUB_BUCKETS;
+	private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime
+		.getRuntime().availableProcessors()));
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+	private final int maxShapes;
+	private volatile long slowQueryThresholdNanos;
+
+	public LatencyHistogramListener() {
+		this(DEFAULT_MAX_SHAPES);
+	}
+
+	public LatencyHistogramListener(final int maxShapes) {
+		this.maxShapes = maxShapes;
+	}
+
+	/**
+	 * Log queries slower than the threshold by slf4j, at the WARN level.
+	 * Zero disables the log, and it's the default.
+	 *
+	 * @param threshold
+	 * @param unit
+	 * @return this
+	 */
+	public LatencyHistogramListener setSlowQueryThreshold(final long threshold,
+			final TimeUnit unit) {
+		this.slowQueryThresholdNanos = unit.toNanos(threshold);
+		return this;
+	}
+
+	@Override
+	public void onQuery(final QueryEvent event) {
+		this.histogram(this.shapeOf(event)).record(event);
+
+		final long threshold = slowQueryThresholdNanos;
+		if (threshold > 0 && event.getTotalNanos() >= threshold) {
+			log.warn(
+				"Slow query: {}ms (prepare={}ms, execute={}ms, fetch={}ms, callback={}ms, rows={}): {}",
+				millis(event.getTotalNanos()), millis(event.getPrepareNanos()),
+				millis(event.getExecuteNanos()), millis(event.getFetchNanos()),
+				millis(event.getCallbackNanos()), event.getRows(),
+				event.getSql());
+		}
+	}
+
+	/**
+	 * Get the snapshots of all histograms, in descending order of the total
+	 * time.
+	 *
+	 * @return Snapshots
+	 */
+	public List<Snapshot> getSnapshots() {
+		final List<Snapshot> snapshots = new ArrayList<>(histograms.size());
+		histograms.forEach((sql, histogram) -> snapshots.add(histogram
+			.snapshot(sql)));
+		snapshots.sort(Comparator.comparingLong(Snapshot::getTotalNanos)
+			.reversed());
+		return snapshots;
+	}
+
+	/**
+	 * Get the snapshot of the histogram for the shape of the SQL.
+	 *
+	 * @param sql
+	 * @return Snapshot, or null if no query of the shape was recorded.
+	 */
+	public Snapshot getSnapshot(final String sql) {
+		return this.snapshotOf(sql.equals(OTHER) ? sql : SqlFingerprint
+			.normalize(sql));
+	}
+
+	/**
+	 * Get the snapshot of the histogram for the shape of the query.
+	 *
+	 * @param query
+	 * @return Snapshot, or null if no query of the shape was recorded.
+	 */
+	public Snapshot getSnapshot(final Query query) {
+		return this.snapshotOf(query.getFingerprint());
+	}
+
+	private Snapshot snapshotOf(final String shape) {
+		final Histogram histogram = histograms.get(shape);
+		return histogram == null ? null : histogram.snapshot(shape);
+	}
+
+	/**
+	 * Remove all histograms.
+	 */
+	public void reset() {
+		histograms.clear();
+	}
+
+	String shapeOf(final QueryEvent event) {
+		return event.getFingerprint();
+	}
+
+	private Histogram histogram(final String shape) {
+		final Histogram histogram = histograms.get(shape);
+		if (histogram != null) {
+			return histogram;
+		}
+		if (histograms.size() >= maxShapes) {
+			return histograms.computeIfAbsent(OTHER, key -> new Histogram());
+		}
+		return histograms.computeIfAbsent(shape, key -> new Histogram());
+	}
+
+	static int bucketOf(final long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int)Math.max(micros, 0);
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		final int sub = (int)(micros >>> (exponent - SUB_BUCKET_BITS))
+			& (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Get the largest value of the bucket, in microseconds.
+	 */
+	static long upperBoundOf(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	private static double millis(final long nanos) {
+		return nanos / 1000 / 1000.0;
+	}
+
+	private static class Histogram {
+		private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder prepareNanos = new LongAdder();
+		private final LongAdder executeNanos = new LongAdder();
+		private final LongAdder fetchNanos = new LongAdder();
+		private final LongAdder callbackNanos = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max,
+			0);
+
+		Histogram() {
+			for (int i = 0; i < STRIPES; ++i) {
+				stripes[i] = new AtomicLongArray(BUCKETS);
+			}
+		}
+
+		void record(final QueryEvent event) {
+			final long nanos = event.getTotalNanos();
+			final int stripe = (int)Thread.currentThread().getId()
+				& (STRIPES - 1);
+			stripes[stripe].incrementAndGet(bucketOf(nanos / 1000));
+			if (event.getError() != null) {
+				errors.increment();
+			}
+			if (event.getRows() > 0) {
+				rows.add(event.getRows());
+			}
+			prepareNanos.add(event.getPrepareNanos());
+			executeNanos.add(event.getExecuteNanos());
+			fetchNanos.add(event.getFetchNanos());
+			callbackNanos.add(event.getCallbackNanos());
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+		}
+
+		Snapshot snapshot(final String sql) {
+			final long[] buckets = new long[BUCKETS];
+			long count = 0;
+			for (final AtomicLongArray stripe : stripes) {
+				for (int i = 0; i < BUCKETS; ++i) {
+					final long n = stripe.get(i);
+					buckets[i] += n;
+					count += n;
+				}
+			}
+			return new Snapshot(sql, count, errors.sum(), rows.sum(),
+				prepareNanos.sum(), executeNanos.sum(), fetchNanos.sum(),
+				callbackNanos.sum(), totalNanos.sum(), maxNanos.get(), buckets);
+		}
+	}
+
+	/**
+	 * Counters of a SQL shape at a point of time. Counters are read one by
+	 * one while queries are recorded, so they may be slightly inconsistent.
+	 */
+	@Value
+	public static class Snapshot {
+		String sql;
+		long count;
+		long errors;
+		long rows;
+		long prepareNanos;
+		long executeNanos;
+		long fetchNanos;
+		long callbackNanos;
+		long totalNanos;
+		long maxNanos;
+		long[] buckets;
+
+		public long getMeanNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		/**
+		 * Get the percentile of the latency.
+		 *
+		 * @param percentile e.g. 99.9
+		 * @return Upper bound of the bucket of the percentile, in nanoseconds.
+		 */
+		public long getPercentileNanos(final double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			final long rank = Math.max(1,
+				(long)Math.ceil(count * percentile / 100.0));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; ++i) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					return Math.min(upperBoundOf(i) * 1000 + 999, maxNanos);
+				}
+			}
+			return maxNanos;
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs several SELECT queries in one round trip.
+ *
+ * <pre>
+ * <code>MultiQuery multi = new MultiQuery();
+ * MultiQuery.Result&lt;Member&gt; member = multi.add(memberQuery, rs -&gt; ...);
+ * MultiQuery.Result&lt;List&lt;Entry&gt;&gt; entries = multi.add(entriesQuery, rs -&gt; ...);
+ * multi.execute(connection);
+ * render(member.get(), entries.get());</code>
+ * </pre>
+ *
+ * The queries are joined by {@code ;} and sent as one statement, and the
+ * result sets are read by {@code getMoreResults()}. The driver must allow
+ * multiple statements, e.g. {@code allowMultiQueries=true} for MySQL
+ * Connector/J. If the driver doesn't support multiple result sets, rejects
+ * the joined statement as a syntax error, or doesn't return all result
+ * sets, the rest of the queries are executed one by one, and the database
+ * URL is remembered to skip the joined statement next time. Each callback is
+ * called once.
+ *
+ * Only queries that return a result set are allowed.
+ */
+public class MultiQuery {
+	// URLs of databases that rejected multiple statements. Pools wrap
+	// connections in a new proxy on each checkout, so the URL is used.
+	private static final Set<String> unsupported = ConcurrentHashMap
+		.newKeySet();
+
+	private final List<Result<?>> results = new ArrayList<>();
+
+	/**
+	 * Add a query.
+	 *
+	 * @param query SELECT query
+	 * @param callback
+	 * @return Handle of the value generated by the callback
+	 */
+	public <R> Result<R> add(final Query query,
+			final ResultSetCallback<R> callback) {
+		final Result<R> result = new Result<>(query, callback);
+		results.add(result);
+		return result;
+	}
+
+	/**
+	 * Execute all queries, and call the callbacks in order.
+	 *
+	 * @param connection
+	 * @return Values generated by the callbacks, in order.
+	 * @throws RichSQLException
+	 */
+	public List<Object> execute(final Connection connection)
+			throws RichSQLException {
+		int executed = 0;
+		if (results.size() >= 2) {
+			final String url = MultiQuery.urlOf(connection);
+			if (!unsupported.contains(url)) {
+				try {
+					MultiQuery.checkMultipleResultSets(connection);
+					this.executeJoined(connection, this.join());
+					return this.values();
+				} catch (final JoinRejectedException e) {
+					// The driver doesn't support multiple statements. The
+					// rest of the queries are executed one by one.
+					unsupported.add(url);
+					executed = e.executed;
+				}
+			}
+		}
+		this.executeSequentially(connection, executed);
+		return this.values();
+	}
+
+	private static String urlOf(final Connection connection)
+			throws RichSQLException {
+		try {
+			final DatabaseMetaData metaData = connection.getMetaData();
+			final String url = metaData.getURL();
+			return url != null ? url : metaData.getDriverName();
+		} catch (final SQLException ex) {
+			throw new RichSQLException(ex);
+		}
+	}
+
+	private static void checkMultipleResultSets(final Connection connection)
+			throws RichSQLException, JoinRejectedException {
+		try {
+			if (!connection.getMetaData().supportsMultipleResultSets()) {
+				throw new JoinRejectedException(0);
+			}
+		} catch (final SQLException ex) {
+			throw new RichSQLException(ex);
+		}
+	}
+
+	// Syntax errors of the drivers rejecting multiple statements, e.g.
+	// ER_PARSE_ERROR of MySQL and ORA-00911. Other errors in the class 42,
+	// e.g. missing tables or access denied, are errors of the queries.
+	static boolean isRejected(final SQLException ex) {
+		final String state = ex.getSQLState();
+		if (state == null || !state.startsWith("42")) {
+			return false;
+		}
+		return state.equals("42601") || ex.getErrorCode() == 1064
+			|| ex.getErrorCode() == 911;
+	}
+
+	Query join() {
+		final QueryBuilder builder = new QueryBuilder("");
+		for (int i = 0; i < results.size(); ++i) {
+			if (i > 0) {
+				builder.appendQuery(";");
+			}
+			String sql = results.get(i).query.getSQL().trim();
+			if (sql.endsWith(";")) {
+				sql = sql.substring(0, sql.length() - 1);
+			}
+			builder.appendQuery(sql)
+				.addParameters(results.get(i).query.getParameters());
+		}
+		return builder.build();
+	}
+
+	private void executeJoined(final Connection connection, final Query joined)
+			throws RichSQLException, JoinRejectedException {
+		final String sql = joined.getSQL();
+		final List<Object> params = joined.getParameters();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, joined);
+		try (final PreparedStatement ps = connection.prepareStatement(sql)) {
+			JDBCUtils.fillPreparedStatementParams(ps, params);
+			timer.prepared();
+			boolean hasResultSet;
+			try {
+				hasResultSet = ps.execute();
+			} catch (final SQLException ex) {
+				if (MultiQuery.isRejected(ex)) {
+					timer.failed(ex);
+					throw new JoinRejectedException(0);
+				}
+				throw ex;
+			}
+			timer.executed();
+			for (int i = 0; i < results.size(); ++i) {
+				if (i > 0) {
+					hasResultSet = ps.getMoreResults();
+				}
+				final Result<?> result = results.get(i);
+				if (!hasResultSet) {
+					// Some drivers run all statements but return the first
+					// result only. Results read so far are valid.
+					timer.failed(new SQLException("Query returned no result set"));
+					throw new JoinRejectedException(i);
+				}
+				try (final ResultSet rs = ps.getResultSet()) {
+					result.call(rs);
+				} catch (final SQLException ex) {
+					throw new RichSQLException(ex, result.query);
+				}
+			}
+			timer.called();
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, joined);
+		} finally {
+			timer.finish();
+		}
+	}
+
+	private void executeSequentially(final Connection connection,
+			final int from) throws RichSQLException {
+		for (final Result<?> result : results.subList(from, results.size())) {
+			JDBCUtils.executeQuery(connection, result.query, rs -> {
+				result.call(rs);
+				return null;
+			});
+		}
+	}
+
+	private List<Object> values() {
+		final List<Object> values = new ArrayList<>(results.size());
+		for (final Result<?> result : results) {
+			values.add(result.get());
+		}
+		return values;
+	}
+
+	/**
+	 * Handle of the value generated by a callback.
+	 *
+	 * @param <R>
+	 */
+	public static class Result<R> {
+		private final Query query;
+		private final ResultSetCallback<R> callback;
+		private R value;
+		private boolean done;
+
+		Result(final Query query, final ResultSetCallback<R> callback) {
+			this.query = query;
+			this.callback = callback;
+		}
+
+		void call(final ResultSet rs) throws SQLException {
+			this.value = callback.call(rs);
+			this.done = true;
+		}
+
+		/**
+		 * Get the value generated by the callback.
+		 *
+		 * @return Value
+		 * @throws IllegalStateException
+		 *             if the query was not executed yet.
+		 */
+		public R get() {
+			if (!done) {
+				throw new IllegalStateException("Query was not executed: "
+					+ query.getSQL());
+			}
+			return value;
+		}
+	}
+
+	private static class JoinRejectedException extends Exception {
+		// Number of queries whose callbacks were called.
+		final int executed;
+
+		JoinRejectedException(final int executed) {
+			// Used for control flow only. No stack trace.
+			super(null, null, false, false);
+			this.executed = executed;
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,356 @@
+package me.geso.jdbcutils;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of SQL parameters, that remembers the type of each parameter.
+ *
+ * Primitive values are stored unboxed, and binding dispatches to the typed
+ * setters of PreparedStatement instead of {@code setObject}. It's
+ * serialized as an ArrayList, e.g. in {@link RichSQLException}.
+ */
+class ParameterList extends AbstractList<Object> implements RandomAccess,
+		Serializable {
+	private static final byte OBJECT = 0;
+	private static final byte LONG = 1;
+	private static final byte INT = 2;
+	private static final byte SHORT = 3;
+	private static final byte BYTE = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte BOOLEAN = 7;
+	private static final byte STRING = 8;
+	private static final byte BYTES = 9;
+	private static final byte TIMESTAMP = 10;
+	private static final byte DATE = 11;
+	private static final byte TIME = 12;
+	private static final byte BIG_DECIMAL = 13;
+
+	private byte[] types;
+	private long[] primitives;
+	private Object[] objects;
+	private int size;
+	private boolean frozen;
+
+	ParameterList() {
+		this(8);
+	}
+
+	ParameterList(final int capacity) {
+		this.types = new byte[capacity];
+		this.primitives = new long[capacity];
+		this.objects = new Object[capacity];
+	}
+
+	/**
+	 * Get an unmodifiable copy, or this if this is already unmodifiable.
+	 */
+	ParameterList freeze() {
+		if (frozen) {
+			return this;
+		}
+		final ParameterList copy = new ParameterList(0);
+		copy.types = Arrays.copyOf(types, size);
+		copy.primitives = Arrays.copyOf(primitives, size);
+		copy.objects = Arrays.copyOf(objects, size);
+		copy.size = size;
+		copy.frozen = true;
+		return copy;
+	}
+
+	/**
+	 * Get an unmodifiable copy of the list.
+	 */
+	static ParameterList copyOf(final List<?> values) {
+		final ParameterList copy = new ParameterList(values.size());
+		for (final Object value : values) {
+			copy.add(value);
+		}
+		copy.frozen = true;
+		return copy;
+	}
+
+	void addLong(final long value) {
+		this.append(LONG, value, null);
+	}
+
+	void addInt(final int value) {
+		this.append(INT, value, null);
+	}
+
+	void addDouble(final double value) {
+		this.append(DOUBLE, Double.doubleToRawLongBits(value), null);
+	}
+
+	void addBoolean(final boolean value) {
+		this.append(BOOLEAN, value ? 1 : 0, null);
+	}
+
+	void addString(final String value) {
+		this.append(value == null ? OBJECT : STRING, 0, value);
+	}
+
+	@Override
+	public boolean add(final Object value) {
+		this.ensureModifiable();
+		this.ensureCapacity(size + 1);
+		this.store(size++, value);
+		++modCount;
+		return true;
+	}
+
+	@Override
+	public Object set(final int index, final Object value) {
+		this.ensureModifiable();
+		final Object old = this.get(index);
+		this.store(index, value);
+		return old;
+	}
+
+	@Override
+	public void add(final int index, final Object value) {
+		this.ensureModifiable();
+		this.checkPositionIndex(index);
+		this.ensureCapacity(size + 1);
+		System.arraycopy(types, index, types, index + 1, size - index);
+		System.arraycopy(primitives, index, primitives, index + 1, size
+			- index);
+		System.arraycopy(objects, index, objects, index + 1, size - index);
+		++size;
+		this.store(index, value);
+		++modCount;
+	}
+
+	@Override
+	public Object remove(final int index) {
+		this.ensureModifiable();
+		final Object old = this.get(index);
+		final int moved = size - index - 1;
+		System.arraycopy(types, index + 1, types, index, moved);
+		System.arraycopy(primitives, index + 1, primitives, index, moved);
+		System.arraycopy(objects, index + 1, objects, index, moved);
+		objects[--size] = null;
+		++modCount;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		this.ensureModifiable();
+		Arrays.fill(objects, 0, size, null);
+		size = 0;
+		++modCount;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Object get(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+				+ size);
+		}
+		switch (types[index]) {
+		case LONG:
+			return primitives[index];
+		case INT:
+			return (int)primitives[index];
+		case SHORT:
+			return (short)primitives[index];
+		case BYTE:
+			return (byte)primitives[index];
+		case DOUBLE:
+			return Double.longBitsToDouble(primitives[index]);
+		case FLOAT:
+			return (float)Double.longBitsToDouble(primitives[index]);
+		case BOOLEAN:
+			return primitives[index] != 0;
+		default:
+			return objects[index];
+		}
+	}
+
+	/**
+	 * Bind all parameters to the statement.
+	 *
+	 * @param ps
+	 * @throws SQLException
+	 */
+	void bind(final PreparedStatement ps) throws SQLException {
+		for (int i = 0; i < size; ++i) {
+			final int parameterIndex = i + 1;
+			switch (types[i]) {
+			case LONG:
+				ps.setLong(parameterIndex, primitives[i]);
+				break;
+			case INT:
+				ps.setInt(parameterIndex, (int)primitives[i]);
+				break;
+			case SHORT:
+				ps.setShort(parameterIndex, (short)primitives[i]);
+				break;
+			case BYTE:
+				ps.setByte(parameterIndex, (byte)primitives[i]);
+				break;
+			case DOUBLE:
+				ps.setDouble(parameterIndex,
+					Double.longBitsToDouble(primitives[i]));
+				break;
+			case FLOAT:
+				ps.setFloat(parameterIndex,
+					(float)Double.longBitsToDouble(primitives[i]));
+				break;
+			case BOOLEAN:
+				ps.setBoolean(parameterIndex, primitives[i] != 0);
+				break;
+			case STRING:
+				ps.setString(parameterIndex, (String)objects[i]);
+				break;
+			case BYTES:
+				ps.setBytes(parameterIndex, (byte[])objects[i]);
+				break;
+			case TIMESTAMP:
+				ps.setTimestamp(parameterIndex, (Timestamp)objects[i]);
+				break;
+			case DATE:
+				ps.setDate(parameterIndex, (Date)objects[i]);
+				break;
+			case TIME:
+				ps.setTime(parameterIndex, (Time)objects[i]);
+				break;
+			case BIG_DECIMAL:
+				ps.setBigDecimal(parameterIndex, (BigDecimal)objects[i]);
+				break;
+			default:
+				ps.setObject(parameterIndex, objects[i]);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Bind a parameter of unknown type, using the typed setter if possible.
+	 *
+	 * @param ps
+	 * @param parameterIndex
+	 * @param value
+	 * @throws SQLException
+	 */
+	static void bind(final PreparedStatement ps, final int parameterIndex,
+			final Object value) throws SQLException {
+		if (value instanceof String) {
+			ps.setString(parameterIndex, (String)value);
+		} else if (value instanceof Long) {
+			ps.setLong(parameterIndex, (Long)value);
+		} else if (value instanceof Integer) {
+			ps.setInt(parameterIndex, (Integer)value);
+		} else {
+			ps.setObject(parameterIndex, value);
+		}
+	}
+
+	private void store(final int index, final Object value) {
+		long primitive = 0;
+		Object object = null;
+		final byte type;
+		if (value instanceof Long) {
+			type = LONG;
+			primitive = (Long)value;
+		} else if (value instanceof Integer) {
+			type = INT;
+			primitive = (Integer)value;
+		} else if (value instanceof String) {
+			type = STRING;
+			object = value;
+		} else if (value instanceof Short) {
+			type = SHORT;
+			primitive = (Short)value;
+		} else if (value instanceof Byte) {
+			type = BYTE;
+			primitive = (Byte)value;
+		} else if (value instanceof Double) {
+			type = DOUBLE;
+			primitive = Double.doubleToRawLongBits((Double)value);
+		} else if (value instanceof Float) {
+			type = FLOAT;
+			primitive = Double.doubleToRawLongBits((Float)value);
+		} else if (value instanceof Boolean) {
+			type = BOOLEAN;
+			primitive = (Boolean)value ? 1 : 0;
+		} else if (value instanceof byte[]) {
+			type = BYTES;
+			object = value;
+		} else if (value instanceof Timestamp) {
+			type = TIMESTAMP;
+			object = value;
+		} else if (value instanceof Date) {
+			type = DATE;
+			object = value;
+		} else if (value instanceof Time) {
+			type = TIME;
+			object = value;
+		} else if (value instanceof BigDecimal) {
+			type = BIG_DECIMAL;
+			object = value;
+		} else {
+			type = OBJECT;
+			object = value;
+		}
+		types[index] = type;
+		primitives[index] = primitive;
+		objects[index] = object;
+	}
+
+	private void append(final byte type, final long primitive,
+			final Object object) {
+		this.ensureModifiable();
+		this.ensureCapacity(size + 1);
+		types[size] = type;
+		primitives[size] = primitive;
+		objects[size] = object;
+		++size;
+		++modCount;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity > types.length) {
+			final int newCapacity = Math.max(capacity, types.length * 2);
+			types = Arrays.copyOf(types, newCapacity);
+			primitives = Arrays.copyOf(primitives, newCapacity);
+			objects = Arrays.copyOf(objects, newCapacity);
+		}
+	}
+
+	private void ensureModifiable() {
+		if (frozen) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private void checkPositionIndex(final int index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+				+ size);
+		}
+	}
+
+	private Object writeReplace() {
+		return new ArrayList<>(this);
+	}
+
+	private static final long serialVersionUID = 1L;
+}
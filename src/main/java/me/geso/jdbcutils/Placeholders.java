@@ -0,0 +1,59 @@
+package me.geso.jdbcutils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of placeholder lists, e.g. {@code "?,?,?"}.
+ */
+class Placeholders {
+	private static final int CACHE_SIZE = 1024;
+	private static final AtomicReferenceArray<String> CACHE = new AtomicReferenceArray<>(
+		CACHE_SIZE + 1);
+
+	private Placeholders() {
+	}
+
+	/**
+	 * Get comma separated placeholders.
+	 *
+	 * @param count number of placeholders
+	 * @return e.g. {@code "?,?,?"} for 3
+	 */
+	static String of(final int count) {
+		if (count > CACHE_SIZE) {
+			return build(count);
+		}
+		String placeholders = CACHE.get(count);
+		if (placeholders == null) {
+			placeholders = build(count);
+			CACHE.set(count, placeholders);
+		}
+		return placeholders;
+	}
+
+	/**
+	 * Round up the count to the power of two.
+	 *
+	 * @param count
+	 * @return Bucket size
+	 */
+	static int bucket(final int count) {
+		if (count <= 1) {
+			return count;
+		}
+		final int bucket = Integer.highestOneBit(count - 1) << 1;
+		return bucket > 0 ? bucket : count;
+	}
+
+	private static String build(final int count) {
+		if (count == 0) {
+			return "";
+		}
+		final StringBuilder builder = new StringBuilder(count * 2 - 1);
+		builder.append('?');
+		for (int i = 1; i < count; ++i) {
+			builder.append(",?");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,212 @@
+package me.geso.jdbcutils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator that reads rows on a separate thread.
+ *
+ * The reader thread copies rows into batches and hands them to the consumer
+ * through a bounded queue. {@link #trySplit()} splits on batch boundaries,
+ * so a parallel stream can map rows on several threads while the reader
+ * keeps fetching.
+ */
+class PrefetchSpliterator implements Spliterator<Map<String, Object>>,
+		AutoCloseable {
+	private static final Batch END = new Batch(null, 0, null);
+
+	private final String sql;
+	private final List<Object> params;
+	private final RowMap.Schema schema;
+	private final BlockingQueue<Batch> queue;
+	// Batch buffers that were consumed, and can be reused by the reader.
+	private final BlockingQueue<Object[][]> free;
+	private final CountDownLatch readerFinished = new CountDownLatch(1);
+	// Written by the reader thread, and finished after the reader exits.
+	private final QueryTimer timer;
+	private volatile boolean closed;
+
+	private Batch current;
+	private int position;
+	private boolean finished;
+
+	PrefetchSpliterator(final PreparedStatement ps, final ResultSet rs,
+			final String sql, final List<Object> params, final int batchSize,
+			final int queueCapacity, final QueryTimer timer) throws SQLException {
+		this.sql = sql;
+		this.timer = timer;
+		this.params = params;
+		this.schema = RowMap.Schema.of(rs.getMetaData());
+		this.queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+		this.free = new ArrayBlockingQueue<>(queueCapacity + 1);
+
+		final Thread reader = new Thread(() -> this.read(ps, rs, batchSize),
+			"jdbcutils-prefetch");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void read(final PreparedStatement ps, final ResultSet rs,
+			final int batchSize) {
+		try {
+			final int columnCount = schema.getColumnCount();
+			while (!closed) {
+				Object[][] rows = free.poll();
+				if (rows == null) {
+					rows = new Object[batchSize][];
+				}
+				int size = 0;
+				while (size < batchSize && rs.next()) {
+					final Object[] row = new Object[columnCount];
+					for (int i = 0; i < columnCount; ++i) {
+						row[i] = rs.getObject(i + 1);
+					}
+					rows[size++] = row;
+				}
+				timer.fetched();
+				timer.addRows(size);
+				if (size > 0) {
+					this.put(new Batch(rows, size, null));
+					timer.idle();
+				}
+				if (size < batchSize) {
+					break;
+				}
+			}
+			this.put(END);
+		} catch (final SQLException e) {
+			timer.failed(e);
+			this.put(new Batch(null, 0, e));
+		} finally {
+			// The consumer is gone, or already got all rows. There's
+			// nobody to report errors on close.
+			try {
+				rs.close();
+			} catch (final SQLException e) {
+				// ignore
+			}
+			try {
+				ps.close();
+			} catch (final SQLException e) {
+				// ignore
+			}
+			readerFinished.countDown();
+		}
+	}
+
+	private void put(final Batch batch) {
+		try {
+			while (!closed) {
+				if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			}
+		} catch (final InterruptedException e) {
+			closed = true;
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super Map<String, Object>> action) {
+		if (current == null || position >= current.size) {
+			if (!this.nextBatch()) {
+				return false;
+			}
+		}
+		action.accept(new RowMap(schema, current.rows[position++]));
+		return true;
+	}
+
+	@Override
+	public Spliterator<Map<String, Object>> trySplit() {
+		if (current == null || position >= current.size) {
+			if (!this.nextBatch()) {
+				return null;
+			}
+		}
+		final List<Map<String, Object>> prefix = new ArrayList<>(current.size
+			- position);
+		while (position < current.size) {
+			prefix.add(new RowMap(schema, current.rows[position++]));
+		}
+		return prefix.spliterator();
+	}
+
+	private boolean nextBatch() {
+		if (current != null) {
+			free.offer(current.rows);
+			current = null;
+		}
+		if (finished) {
+			return false;
+		}
+
+		final Batch batch;
+		try {
+			batch = queue.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+				"Interrupted while waiting for rows", e);
+		}
+		if (batch.error != null) {
+			finished = true;
+			throw new UncheckedRichSQLException(batch.error, sql, params);
+		}
+		if (batch == END) {
+			finished = true;
+			return false;
+		}
+		current = batch;
+		position = 0;
+		return true;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return Spliterator.ORDERED | Spliterator.NONNULL;
+	}
+
+	/**
+	 * Stop the reader, and wait until it closes the result set.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		queue.clear();
+		try {
+			readerFinished.await();
+			timer.finish();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class Batch {
+		final Object[][] rows;
+		final int size;
+		final SQLException error;
+
+		Batch(final Object[][] rows, final int size, final SQLException error) {
+			this.rows = rows;
+			this.size = size;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,345 @@
+package me.geso.jdbcutils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * LRU cache of prepared statements for a connection.
+ *
+ * <pre>
+ * <code>try (PreparedStatementCache cache = new PreparedStatementCache(connection, 100)) {
+ *     Connection cached = cache.getConnection();
+ *     JDBCUtils.executeQuery(cached, query, callback); // prepares the statement
+ *     JDBCUtils.executeQuery(cached, query, callback); // reuses the statement
+ * }</code>
+ * </pre>
+ *
+ * {@link #getConnection()} returns a wrapper of the connection. Calling
+ * {@code prepareStatement} on the wrapper returns a cached statement, and
+ * closing the statement returns it to the cache after closing its result
+ * sets, clearing the parameters, and restoring the max rows, the query
+ * timeout and the fetch size. Statements are keyed by the SQL and the result set options.
+ * If the same statement is already in use, a new uncached statement is
+ * prepared.
+ *
+ * Like the underlying connection, the wrapped connection should be used by
+ * one thread at a time.
+ */
+public class PreparedStatementCache implements AutoCloseable {
+	/**
+	 * Default maximum number of cached statements.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 100;
+
+	private final Connection connection;
+	private final Connection wrapper;
+	private final int maxSize;
+	private final LinkedHashMap<List<Object>, Entry> statements = new LinkedHashMap<>(
+		16, 0.75f, true);
+	private long hitCount;
+	private long missCount;
+
+	public PreparedStatementCache(final Connection connection) {
+		this(connection, DEFAULT_MAX_SIZE);
+	}
+
+	public PreparedStatementCache(final Connection connection,
+			final int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: "
+				+ maxSize);
+		}
+		this.connection = connection;
+		this.maxSize = maxSize;
+		this.wrapper = (Connection)Proxy.newProxyInstance(
+			PreparedStatementCache.class.getClassLoader(),
+			new Class<?>[] {Connection.class}, new ConnectionHandler());
+	}
+
+	/**
+	 * Get the connection that uses this cache.
+	 * Closing the connection closes cached statements too.
+	 *
+	 * @return Wrapped connection
+	 */
+	public Connection getConnection() {
+		return wrapper;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Get the number of cached statements.
+	 */
+	public synchronized int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Close all cached statements. The connection is not closed.
+	 *
+	 * @throws SQLException
+	 */
+	@Override
+	public void close() throws SQLException {
+		final List<Entry> entries;
+		synchronized (this) {
+			entries = new ArrayList<>(statements.values());
+			statements.clear();
+		}
+		SQLException exception = null;
+		for (final Entry entry : entries) {
+			try {
+				entry.evict();
+			} catch (final SQLException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private PreparedStatement prepare(final Method method, final Object[] args)
+			throws Throwable {
+		final List<Object> key = Arrays.asList(args);
+		final List<Entry> evicted = new ArrayList<>();
+		final Entry entry;
+		synchronized (this) {
+			final Entry cached = statements.get(key);
+			if (cached != null && !cached.inUse) {
+				++hitCount;
+				cached.inUse = true;
+				return cached.checkout();
+			}
+			++missCount;
+			if (cached != null) {
+				// The statement is in use. e.g. nested queries.
+				entry = null;
+			} else {
+				entry = new Entry(key);
+				entry.inUse = true;
+				statements.put(key, entry);
+				final Iterator<Entry> iterator = statements.values().iterator();
+				while (statements.size() > maxSize && iterator.hasNext()) {
+					evicted.add(iterator.next());
+					iterator.remove();
+				}
+			}
+		}
+		for (final Entry e : evicted) {
+			e.evict();
+		}
+
+		final PreparedStatement statement;
+		try {
+			statement = (PreparedStatement)invoke(method, connection, args);
+		} catch (final Throwable e) {
+			if (entry != null) {
+				this.remove(entry);
+			}
+			throw e;
+		}
+		if (entry == null) {
+			return statement;
+		}
+		try {
+			entry.prepared(statement);
+		} catch (final SQLException e) {
+			this.remove(entry);
+			statement.close();
+			throw e;
+		}
+		return entry.checkout();
+	}
+
+	private synchronized void remove(final Entry entry) {
+		if (statements.get(entry.key) == entry) {
+			statements.remove(entry.key);
+		}
+	}
+
+	private static boolean isCacheable(final Method method, final Object[] args) {
+		if (!method.getName().equals("prepareStatement")) {
+			return false;
+		}
+		for (int i = 1; i < args.length; ++i) {
+			// Don't cache the variants taking column names or indexes.
+			if (!(args[i] instanceof Integer)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Object invoke(final Method method, final Object target,
+			final Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private class ConnectionHandler implements InvocationHandler {
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PreparedStatementCache(" + connection + ")";
+			case "close":
+				PreparedStatementCache.this.close();
+				break;
+			default:
+				if (args != null && isCacheable(method, args)) {
+					return prepare(method, args);
+				}
+			}
+			return PreparedStatementCache.invoke(method, connection, args);
+		}
+	}
+
+	private class Entry {
+		private final List<Object> key;
+		private PreparedStatement statement;
+		// Settings at prepare time, restored on release.
+		private int maxRows;
+		private int queryTimeout;
+		private int fetchSize;
+		// Guarded by PreparedStatementCache.this
+		private boolean inUse;
+		private boolean evicted;
+
+		Entry(final List<Object> key) {
+			this.key = key;
+		}
+
+		void prepared(final PreparedStatement statement) throws SQLException {
+			this.statement = statement;
+			this.maxRows = statement.getMaxRows();
+			this.queryTimeout = statement.getQueryTimeout();
+			this.fetchSize = statement.getFetchSize();
+		}
+
+		PreparedStatement checkout() {
+			return (PreparedStatement)Proxy.newProxyInstance(
+				PreparedStatementCache.class.getClassLoader(),
+				new Class<?>[] {PreparedStatement.class},
+				new StatementHandler(this));
+		}
+
+		void release(final List<ResultSet> resultSets) throws SQLException {
+			boolean close;
+			try {
+				for (final ResultSet rs : resultSets) {
+					rs.close();
+				}
+				statement.clearParameters();
+				statement.clearBatch();
+				// The next user must not inherit the settings of this user.
+				if (statement.getMaxRows() != maxRows) {
+					statement.setMaxRows(maxRows);
+				}
+				if (statement.getQueryTimeout() != queryTimeout) {
+					statement.setQueryTimeout(queryTimeout);
+				}
+				if (statement.getFetchSize() != fetchSize) {
+					statement.setFetchSize(fetchSize);
+				}
+			} catch (final SQLException e) {
+				PreparedStatementCache.this.remove(this);
+				statement.close();
+				throw e;
+			}
+			synchronized (PreparedStatementCache.this) {
+				inUse = false;
+				close = evicted;
+			}
+			if (close) {
+				statement.close();
+			}
+		}
+
+		void evict() throws SQLException {
+			boolean close;
+			synchronized (PreparedStatementCache.this) {
+				evicted = true;
+				close = !inUse;
+			}
+			if (close && statement != null) {
+				statement.close();
+			}
+		}
+	}
+
+	private class StatementHandler implements InvocationHandler {
+		private final Entry entry;
+		// Result sets returned by the statement, closed on release.
+		private final List<ResultSet> resultSets = new ArrayList<>();
+		private boolean closed;
+
+		StatementHandler(final Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Cached(" + entry.statement + ")";
+			case "close":
+				if (!closed) {
+					closed = true;
+					entry.release(resultSets);
+				}
+				return null;
+			case "isClosed":
+				return closed;
+			case "getConnection":
+				return wrapper;
+			default:
+				if (closed) {
+					throw new SQLException("Statement is closed: "
+						+ entry.key.get(0));
+				}
+				final Object result = PreparedStatementCache.invoke(method,
+					entry.statement, args);
+				if (result instanceof ResultSet) {
+					resultSets.add((ResultSet)result);
+				}
+				return result;
+			}
+		}
+	}
+}
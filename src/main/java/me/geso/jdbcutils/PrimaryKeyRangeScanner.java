@@ -0,0 +1,288 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a table in parallel, by splitting the range of an integer primary
+ * key.
+ *
+ * <pre>
+ * <code>try (Stream&lt;Long&gt; ids = new PrimaryKeyRangeScanner(dataSource::getConnection,
+ *         "member", "id")
+ *     .where(new Query("deleted=?", Collections.singletonList(0)))
+ *     .ranges(8)
+ *     .stream(rs -&gt; rs.getLong("id"))) {
+ *     ids.forEach(...);
+ * }</code>
+ * </pre>
+ *
+ * The scanner reads {@code MIN(key)} and {@code MAX(key)}, and splits the
+ * range into sub-ranges. Each sub-range is scanned by a
+ * {@link KeysetScanner}, so it uses a connection from the supplier for each
+ * page and holds nothing between pages. The stream is parallel, and its
+ * spliterator splits along the sub-ranges, so the fork-join pool scans
+ * several sub-ranges at the same time. A sub-range that is not started yet
+ * is split in half when the pool asks for more work.
+ */
+public class PrimaryKeyRangeScanner {
+	private final ConnectionSupplier connectionSupplier;
+	private final String table;
+	private final String keyColumn;
+	private String columns = "*";
+	private Query where;
+	private int ranges = Runtime.getRuntime().availableProcessors();
+	private int pageSize = KeysetScanner.DEFAULT_PAGE_SIZE;
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param connectionSupplier
+	 *            Supplies connections for the pages.
+	 * @param table
+	 *            Table name in SQL, quoted if needed.
+	 * @param keyColumn
+	 *            Integer primary key column in SQL, quoted if needed.
+	 */
+	public PrimaryKeyRangeScanner(final ConnectionSupplier connectionSupplier,
+			final String table, final String keyColumn) {
+		this.connectionSupplier = connectionSupplier;
+		this.table = table;
+		this.keyColumn = keyColumn;
+	}
+
+	/**
+	 * Set the select list. The default is {@code *}.
+	 *
+	 * @param columns
+	 * @return this
+	 */
+	public PrimaryKeyRangeScanner columns(final String columns) {
+		this.columns = columns;
+		return this;
+	}
+
+	/**
+	 * Set the condition of the WHERE clause.
+	 *
+	 * @param where
+	 * @return this
+	 */
+	public PrimaryKeyRangeScanner where(final Query where) {
+		this.where = where;
+		return this;
+	}
+
+	/**
+	 * Set the number of sub-ranges. The default is the number of processors.
+	 *
+	 * @param ranges
+	 * @return this
+	 */
+	public PrimaryKeyRangeScanner ranges(final int ranges) {
+		if (ranges <= 0) {
+			throw new IllegalArgumentException("ranges must be positive: "
+				+ ranges);
+		}
+		this.ranges = ranges;
+		return this;
+	}
+
+	/**
+	 * Set the number of rows per page.
+	 *
+	 * @param pageSize
+	 * @return this
+	 */
+	public PrimaryKeyRangeScanner pageSize(final int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be positive: "
+				+ pageSize);
+		}
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * Read the key range, and return a parallel stream of rows.
+	 * You should call .close() after using, to stop fetching pages.
+	 * Rows are in the key order, unless the stream is unordered.
+	 *
+	 * @param callback callback function. It will call every row.
+	 * @return Parallel stream of rows
+	 * @throws RichSQLException
+	 */
+	public <R> Stream<R> stream(final ResultSetCallback<R> callback)
+			throws RichSQLException {
+		final Query minMax = this.buildMinMaxQuery();
+		final long[] bounds;
+		try (final Connection connection = connectionSupplier.get()) {
+			bounds = JDBCUtils.executeQuery(connection, minMax, rs -> {
+				if (!rs.next() || rs.getObject(1) == null) {
+					return null;
+				}
+				return new long[] {rs.getLong(1), rs.getLong(2)};
+			});
+		} catch (final SQLException e) {
+			throw new RichSQLException(e, minMax);
+		}
+		final List<Range> split = bounds == null ? Collections.emptyList()
+			: PrimaryKeyRangeScanner.split(bounds[0], bounds[1], ranges);
+		final RangeSpliterator<R> spliterator = new RangeSpliterator<>(
+			new ArrayDeque<>(split), callback, new AtomicBoolean());
+		return StreamSupport.stream(spliterator, true).onClose(
+			spliterator::close);
+	}
+
+	Query buildMinMaxQuery() {
+		final QueryBuilder builder = new QueryBuilder("")
+			.appendQuery("SELECT MIN(")
+			.appendQuery(keyColumn)
+			.appendQuery("), MAX(")
+			.appendQuery(keyColumn)
+			.appendQuery(") FROM ")
+			.appendQuery(table);
+		if (where != null) {
+			builder.appendQuery(" WHERE ").append(where);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Split [min, max] into sub-ranges of the same width.
+	 */
+	static List<Range> split(final long min, final long max, final int count) {
+		// Widths are unsigned, since max - min may not fit in a long.
+		final long width = Long.divideUnsigned(max - min, count);
+		final List<Range> result = new ArrayList<>(count);
+		long from = min;
+		while (true) {
+			final long to = Long.compareUnsigned(max - from, width) <= 0 ? max
+				: from + width;
+			result.add(new Range(from, to));
+			if (to == max) {
+				return result;
+			}
+			from = to + 1;
+		}
+	}
+
+	private KeysetScanner scanner(final Range range) {
+		return new KeysetScanner(connectionSupplier, new Query("SELECT "
+			+ columns + " FROM " + table, Collections.emptyList()), keyColumn)
+			.where(where)
+			.pageSize(pageSize)
+			.after(range.from == Long.MIN_VALUE ? null : range.from - 1)
+			.upTo(range.to);
+	}
+
+	static class Range {
+		final long from;
+		final long to;
+
+		Range(final long from, final long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + from + ", " + to + "]";
+		}
+	}
+
+	private class RangeSpliterator<R> implements Spliterator<R> {
+		// Sub-ranges not started yet.
+		private final Deque<Range> pending;
+		private final ResultSetCallback<R> callback;
+		// Shared by all spliterators split from the same stream.
+		private final AtomicBoolean closed;
+		private Spliterator<R> current;
+
+		RangeSpliterator(final Deque<Range> pending,
+				final ResultSetCallback<R> callback, final AtomicBoolean closed) {
+			this.pending = pending;
+			this.callback = callback;
+			this.closed = closed;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super R> action) {
+			while (!closed.get()) {
+				if (current != null) {
+					if (current.tryAdvance(action)) {
+						return true;
+					}
+					current = null;
+				}
+				if (pending.isEmpty()) {
+					return false;
+				}
+				current = scanner(pending.removeFirst()).stream(callback)
+					.spliterator();
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator<R> trySplit() {
+			// The prefix must be returned. A started range stays here, so
+			// we can't split while it's in progress.
+			if (current != null || closed.get()) {
+				return null;
+			}
+			final Deque<Range> prefix = new ArrayDeque<>();
+			if (pending.size() >= 2) {
+				for (int i = pending.size() / 2; i > 0; --i) {
+					prefix.addLast(pending.removeFirst());
+				}
+			} else if (pending.size() == 1) {
+				final Range range = pending.peekFirst();
+				// Unsigned, like split()
+				final long half = (range.to - range.from) >>> 1;
+				if (half < pageSize) {
+					return null;
+				}
+				pending.removeFirst();
+				prefix.addLast(new Range(range.from, range.from + half));
+				pending.addFirst(new Range(range.from + half + 1, range.to));
+			} else {
+				return null;
+			}
+			return new RangeSpliterator<>(prefix, callback, closed);
+		}
+
+		@Override
+		public long estimateSize() {
+			// Number of keys in the ranges. Rows may be fewer.
+			long size = 0;
+			for (final Range range : pending) {
+				final long keys = range.to - range.from + 1;
+				size += keys;
+				if (keys <= 0 || size < 0) {
+					return Long.MAX_VALUE;
+				}
+			}
+			return size;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.NONNULL;
+		}
+
+		void close() {
+			closed.set(true);
+		}
+	}
+}
@@ -1,17 +1,21 @@
 package me.geso.jdbcutils;
 
-import java.util.Collections;
 import java.util.List;
 
 import lombok.ToString;
 
 /**
  * This class represents SQL query and parameters.
+ *
+ * Query is immutable. Queries that have the same SQL and parameters are
+ * equal, so a query can be used as a key of caches.
  */
-@ToString
+@ToString(of = {"sql", "params"})
 public class Query {
 	private final String sql;
 	private final List<Object> params;
+	private int hash;
+	private String fingerprint;
 
 	/**
 	 * Create new instance.
@@ -20,8 +24,32 @@ public class Query {
 	 * @param params
 	 */
 	public Query(final String sql, final List<Object> params) {
+		this(sql, params, true);
+	}
+
+	private Query(final String sql, final List<Object> params,
+			final boolean copy) {
 		this.sql = sql;
-		this.params = Collections.unmodifiableList(params);
+		if (!copy) {
+			this.params = params;
+		} else if (params instanceof ParameterList) {
+			// Keep parameter types for binding.
+			this.params = ((ParameterList)params).freeze();
+		} else {
+			this.params = ParameterList.copyOf(params);
+		}
+	}
+
+	/**
+	 * Create a query that takes over the parameters without copying them.
+	 * The caller must not modify the parameters after this.
+	 *
+	 * @param sql
+	 * @param params
+	 * @return Query
+	 */
+	static Query wrap(final String sql, final List<Object> params) {
+		return new Query(sql, params, false);
 	}
 
 	/**
@@ -41,4 +69,44 @@ public class Query {
 	public List<Object> getParameters() {
 		return params;
 	}
+
+	/**
+	 * Get the shape of the SQL, with literals replaced by {@code ?} and
+	 * lists of placeholders collapsed. e.g. {@code SELECT * FROM member WHERE id IN (...)}.
+	 * Queries that differ only in the number of IN list items have the
+	 * same fingerprint. It's computed once, on the first call.
+	 *
+	 * @return Fingerprint
+	 */
+	public String getFingerprint() {
+		String fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			fingerprint = SqlFingerprint.of(sql);
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Query)) {
+			return false;
+		}
+		final Query other = (Query)o;
+		return this.hashCode() == other.hashCode() && sql.equals(other.sql)
+			&& params.equals(other.params);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = this.hash;
+		if (hash == 0) {
+			hash = sql.hashCode() * 31 + params.hashCode();
+			this.hash = hash;
+		}
+		return hash;
+	}
 }
@@ -2,29 +2,42 @@ package me.geso.jdbcutils;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Builder class for {@code Query} class.
  *
  */
 public class QueryBuilder {
-	private final List<Object> parameters;
+	private final ParameterList parameters;
 	private final StringBuilder query;
 	private final String identifierQuoteString;
+	private boolean inListPadding;
 
 	public QueryBuilder(final String identifierQuoteString) {
-		this.parameters = new ArrayList<>();
+		this.parameters = new ParameterList();
 		this.query = new StringBuilder();
 		this.identifierQuoteString = identifierQuoteString;
 	}
 
+	/**
+	 * Create new instance with pre-sized buffers.
+	 *
+	 * @param identifierQuoteString
+	 * @param sqlCapacity expected length of SQL
+	 * @param parameterCapacity expected number of parameters
+	 */
+	public QueryBuilder(final String identifierQuoteString,
+			final int sqlCapacity, final int parameterCapacity) {
+		this.parameters = new ParameterList(parameterCapacity);
+		this.query = new StringBuilder(sqlCapacity);
+		this.identifierQuoteString = identifierQuoteString;
+	}
+
 	public QueryBuilder(final Connection connection) {
 		try {
-			this.parameters = new ArrayList<>();
+			this.parameters = new ParameterList();
 			this.query = new StringBuilder();
 			this.identifierQuoteString = connection.getMetaData()
 					.getIdentifierQuoteString();
@@ -33,13 +46,26 @@ public class QueryBuilder {
 		}
 	}
 
+	/**
+	 * Create a builder for multi-row INSERT statements, using this builder's
+	 * identifier quote string.
+	 *
+	 * @param table
+	 * @param columns
+	 * @return BulkInsertBuilder
+	 */
+	public BulkInsertBuilder bulkInsert(final String table,
+			final List<String> columns) {
+		return new BulkInsertBuilder(identifierQuoteString, table, columns);
+	}
+
 	public QueryBuilder appendQuery(final String s) {
 		this.query.append(s);
 		return this;
 	}
 
 	public QueryBuilder appendQuery(final long l) {
-		this.query.append("" + l);
+		this.query.append(l);
 		return this;
 	}
 
@@ -64,13 +90,50 @@ public class QueryBuilder {
 		return this;
 	}
 
+	public QueryBuilder addParameter(final long l) {
+		this.parameters.addLong(l);
+		return this;
+	}
+
+	public QueryBuilder addParameter(final int i) {
+		this.parameters.addInt(i);
+		return this;
+	}
+
+	public QueryBuilder addParameter(final double d) {
+		this.parameters.addDouble(d);
+		return this;
+	}
+
+	public QueryBuilder addParameter(final boolean b) {
+		this.parameters.addBoolean(b);
+		return this;
+	}
+
+	public QueryBuilder addParameter(final String s) {
+		this.parameters.addString(s);
+		return this;
+	}
+
 	public <T> QueryBuilder addParameters(final Collection<T> o) {
 		this.parameters.addAll(o);
 		return this;
 	}
 
 	public Query build() {
-		return new Query(new String(this.query), this.parameters);
+		return new Query(this.query.toString(), this.parameters);
+	}
+
+	/**
+	 * Clear the SQL and the parameters, to build another query with this
+	 * builder. Buffers are kept, and queries already built are not affected.
+	 *
+	 * @return this
+	 */
+	public QueryBuilder reset() {
+		this.query.setLength(0);
+		this.parameters.clear();
+		return this;
 	}
 
 	public List<Object> getParameters() {
@@ -91,25 +154,65 @@ public class QueryBuilder {
 		return this;
 	}
 
+	public QueryBuilder appendQueryAndParameter(String s, long l) {
+		this.appendQuery(s);
+		this.addParameter(l);
+		return this;
+	}
+
+	public QueryBuilder appendQueryAndParameter(String s, int i) {
+		this.appendQuery(s);
+		this.addParameter(i);
+		return this;
+	}
+
+	public QueryBuilder appendQueryAndParameter(String s, String value) {
+		this.appendQuery(s);
+		this.addParameter(value);
+		return this;
+	}
+
 	public QueryBuilder appendQueryAndParameters(String s, Collection<Object> o) {
 		this.appendQuery(s);
 		this.addParameters(o);
 		return this;
 	}
 
-	public QueryBuilder in(Collection<?> objects) {
-		this.appendQuery(" IN ("
-				+ objects.stream().map(it -> "?")
-						.collect(Collectors.joining(",")) + ")");
-		this.addParameters(objects);
+	/**
+	 * Pad IN lists to the power of two by repeating the last value.
+	 * e.g. {@code in(Arrays.asList(1, 2, 3))} generates {@code IN (?,?,?,?)}
+	 * with parameters {@code 1, 2, 3, 3}. This limits the number of distinct
+	 * SQL strings, for statement caches and the server's plan cache.
+	 *
+	 * @param enabled
+	 * @return this
+	 */
+	public QueryBuilder setInListPadding(final boolean enabled) {
+		this.inListPadding = enabled;
 		return this;
 	}
 
+	public QueryBuilder in(Collection<?> objects) {
+		return this.appendInList(" IN (", objects);
+	}
+
 	public QueryBuilder notIn(Collection<?> objects) {
-		this.appendQuery(" NOT IN ("
-				+ objects.stream().map(it -> "?")
-						.collect(Collectors.joining(",")) + ")");
-		this.addParameters(objects);
+		return this.appendInList(" NOT IN (", objects);
+	}
+
+	private QueryBuilder appendInList(final String prefix,
+			final Collection<?> objects) {
+		final int size = objects.size();
+		final int count = inListPadding ? Placeholders.bucket(size) : size;
+		this.query.append(prefix).append(Placeholders.of(count)).append(')');
+		Object last = null;
+		for (final Object o : objects) {
+			this.parameters.add(o);
+			last = o;
+		}
+		for (int i = size; i < count; ++i) {
+			this.parameters.add(last);
+		}
 		return this;
 	}
 }
@@ -0,0 +1,66 @@
+package me.geso.jdbcutils;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Timings and row count of an executed query.
+ *
+ * Prepare time includes binding parameters. Fetch time is the time spent
+ * reading rows from the result set, and callback time is the time spent in
+ * the row callback. When a callback receives the whole ResultSet, e.g.
+ * {@code executeQuery(connection, query, callback)}, the callback reads
+ * rows by itself, so the fetch time is included in the callback time.
+ */
+@Value
+public class QueryEvent {
+	public enum Type {
+		QUERY, UPDATE, BATCH
+	}
+
+	Type type;
+	/**
+	 * The query. Parameters are empty for batches.
+	 */
+	Query query;
+	long prepareNanos;
+	long executeNanos;
+	long fetchNanos;
+	long callbackNanos;
+	/**
+	 * Elapsed time from preparing the statement to closing it.
+	 */
+	long totalNanos;
+	/**
+	 * Number of rows read or updated, or -1 if unknown.
+	 */
+	long rows;
+	/**
+	 * The exception, or null if the query succeeded.
+	 */
+	SQLException error;
+
+	public String getSql() {
+		return query.getSQL();
+	}
+
+	/**
+	 * Parameters. Empty for batches.
+	 *
+	 * @return Parameters
+	 */
+	public List<Object> getParams() {
+		return query.getParameters();
+	}
+
+	/**
+	 * Fingerprint of the SQL. See {@link Query#getFingerprint()}.
+	 *
+	 * @return Fingerprint
+	 */
+	public String getFingerprint() {
+		return query.getFingerprint();
+	}
+}
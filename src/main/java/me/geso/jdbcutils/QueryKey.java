@@ -0,0 +1,33 @@
+package me.geso.jdbcutils;
+
+/**
+ * Key of a query result, i.e. the query and how the result set is read.
+ */
+class QueryKey {
+	private final Query query;
+	// e.g. the callback
+	private final Object reader;
+
+	QueryKey(final Query query, final Object reader) {
+		this.query = query;
+		this.reader = reader;
+	}
+
+	Query getQuery() {
+		return query;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof QueryKey)) {
+			return false;
+		}
+		final QueryKey other = (QueryKey)o;
+		return reader.equals(other.reader) && query.equals(other.query);
+	}
+
+	@Override
+	public int hashCode() {
+		return query.hashCode() * 31 + reader.hashCode();
+	}
+}
@@ -0,0 +1,12 @@
+package me.geso.jdbcutils;
+
+/**
+ * Listener, that receives an event after every query executed by
+ * JDBCUtils. Register it by {@link QueryListeners}.<br>
+ * Listeners are called on the thread that executed the query, so they
+ * should return quickly.
+ */
+@FunctionalInterface
+public interface QueryListener {
+	void onQuery(QueryEvent event);
+}
@@ -0,0 +1,133 @@
+package me.geso.jdbcutils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of {@link QueryListener}s.
+ *
+ * <pre>
+ * <code>// For all threads
+ * QueryListeners.add(new LatencyHistogramListener());
+ *
+ * // For the queries executed in this block, on this thread
+ * try (QueryListeners.Scope scope = QueryListeners.scope(event -&gt; ...)) {
+ *     JDBCUtils.executeQuery(connection, query, callback);
+ * }</code>
+ * </pre>
+ *
+ * Queries are not timed while no listener is registered.
+ */
+@Slf4j
+public final class QueryListeners {
+	private static final QueryListener[] EMPTY = new QueryListener[0];
+
+	private static volatile QueryListener[] global = EMPTY;
+	private static final ThreadLocal<QueryListener[]> scoped = new ThreadLocal<>();
+	// Number of open scopes in all threads. Avoids ThreadLocal lookups while
+	// no scope is open.
+	private static final AtomicInteger scopeCount = new AtomicInteger();
+
+	private QueryListeners() {
+	}
+
+	/**
+	 * Register the listener for queries on all threads.
+	 *
+	 * @param listener
+	 */
+	public static synchronized void add(final QueryListener listener) {
+		final QueryListener[] listeners = Arrays.copyOf(global,
+			global.length + 1);
+		listeners[global.length] = listener;
+		global = listeners;
+	}
+
+	/**
+	 * Unregister the listener registered by {@link #add(QueryListener)}.
+	 *
+	 * @param listener
+	 */
+	public static synchronized void remove(final QueryListener listener) {
+		global = Arrays.stream(global)
+			.filter(l -> l != listener)
+			.toArray(QueryListener[]::new);
+	}
+
+	/**
+	 * Register the listener for queries on the current thread, until the
+	 * scope is closed. Scopes can be nested.
+	 *
+	 * @param listener
+	 * @return Scope
+	 */
+	public static Scope scope(final QueryListener listener) {
+		final QueryListener[] previous = scoped.get();
+		final QueryListener[] listeners;
+		if (previous == null) {
+			listeners = new QueryListener[] {listener};
+		} else {
+			listeners = Arrays.copyOf(previous, previous.length + 1);
+			listeners[previous.length] = listener;
+		}
+		scoped.set(listeners);
+		scopeCount.incrementAndGet();
+		return new Scope(previous);
+	}
+
+	/**
+	 * Get the listeners for the current thread, or null if there is none.
+	 */
+	static QueryListener[] current() {
+		final QueryListener[] listeners = global;
+		if (scopeCount.get() == 0) {
+			return listeners.length == 0 ? null : listeners;
+		}
+		final QueryListener[] local = scoped.get();
+		if (local == null) {
+			return listeners.length == 0 ? null : listeners;
+		}
+		final QueryListener[] result = Arrays.copyOf(listeners,
+			listeners.length + local.length);
+		System.arraycopy(local, 0, result, listeners.length, local.length);
+		return result;
+	}
+
+	static void fire(final QueryListener[] listeners, final QueryEvent event) {
+		for (final QueryListener listener : listeners) {
+			try {
+				listener.onQuery(event);
+			} catch (final RuntimeException e) {
+				log.warn("QueryListener failed: {}", listener, e);
+			}
+		}
+	}
+
+	/**
+	 * Scope of thread local listeners.
+	 */
+	public static final class Scope implements AutoCloseable {
+		private final QueryListener[] previous;
+		private boolean closed;
+
+		private Scope(final QueryListener[] previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (previous == null) {
+				scoped.remove();
+			} else {
+				scoped.set(previous);
+			}
+			scopeCount.decrementAndGet();
+		}
+	}
+}
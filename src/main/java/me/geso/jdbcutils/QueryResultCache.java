@@ -0,0 +1,346 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache of query results, keyed by the query.
+ *
+ * <pre>
+ * <code>QueryResultCache cache = new QueryResultCache(10000, 64 * 1024 * 1024, 1, TimeUnit.MINUTES);
+ * QueryListeners.add(cache); // invalidate by updates
+ * ...
+ * List&lt;Map&lt;String, Object&gt;&gt; rows = cache.executeQueryMapList(connection, query);</code>
+ * </pre>
+ *
+ * Entries are evicted in LRU order when the number of entries or the
+ * estimated size in bytes exceeds the limit, and expire after the TTL.
+ *
+ * Entries are tagged with the tables read by the query, e.g. the tables
+ * after FROM and JOIN. If the cache is registered by
+ * {@link QueryListeners#add(QueryListener)}, INSERT, UPDATE, DELETE,
+ * REPLACE and TRUNCATE statements invalidate the entries of the tables
+ * they write, including {@code UPDATE ... RETURNING} run as a query.
+ * SELECT, SHOW, SET and transaction statements invalidate nothing, and any
+ * other statement, e.g. DDL, MERGE or {@code WITH ... UPDATE}, invalidates
+ * all entries. Updates are seen when they
+ * are executed, not when they are committed, and updates by other
+ * processes are not seen at all. The TTL bounds the staleness in these
+ * cases.
+ *
+ * Entries are keyed by the query only, not by the connection. Use one
+ * instance for each database, e.g. for each shard, so that callers on
+ * different databases don't share entries. Don't use it on a connection in
+ * a transaction that has written data, since the uncommitted data would be
+ * cached for other callers.
+ *
+ * Cached values are shared by all callers, so they must not be modified.
+ * Rows of {@link #executeQueryMapList(Connection, Query)} are unmodifiable.
+ */
+public class QueryResultCache implements QueryListener {
+	/**
+	 * Default maximum number of entries.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/**
+	 * Default maximum estimated size of entries, in bytes.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Default time to live, in milliseconds.
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+	// Reader of executeQueryMapList results, for keys.
+	private static final Object MAP_LIST = new Object();
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long ttlNanos;
+	private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(
+		16, 0.75f, true);
+	// Keys of entries by table.
+	private final Map<String, Set<QueryKey>> tagged = new HashMap<>();
+	private long bytes;
+	private long hitCount;
+	private long missCount;
+	// Incremented by every invalidation. Results loaded while an
+	// invalidation happened may be stale, and are not stored.
+	private long generation;
+
+	public QueryResultCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS,
+			TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param maxEntries Maximum number of entries
+	 * @param maxBytes Maximum estimated size of entries, in bytes
+	 * @param ttl Time to live. Zero means entries never expire.
+	 * @param unit
+	 */
+	public QueryResultCache(final int maxEntries, final long maxBytes,
+			final long ttl, final TimeUnit unit) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be positive: "
+				+ maxEntries);
+		}
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive: "
+				+ maxBytes);
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.ttlNanos = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Execute query with callback, or get the cached value. The entry is
+	 * tagged with the tables read by the query.
+	 *
+	 * The value is keyed by the query and the callback, so the callback
+	 * should be a constant, e.g. a static field or a lambda that captures
+	 * nothing. The value must be immutable.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param callback
+	 * @return Generated value from the callback
+	 * @throws RichSQLException
+	 */
+	public <R> R executeQuery(final Connection connection, final Query query,
+			final ResultSetCallback<R> callback) throws RichSQLException {
+		return this.get(new QueryKey(query, callback), null,
+			() -> JDBCUtils.executeQuery(connection, query, callback));
+	}
+
+	/**
+	 * Execute query with callback, or get the cached value. The entry is
+	 * tagged with the tables.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param callback
+	 * @param tables Tables read by the query
+	 * @return Generated value from the callback
+	 * @throws RichSQLException
+	 */
+	public <R> R executeQuery(final Connection connection, final Query query,
+			final ResultSetCallback<R> callback, final String... tables)
+			throws RichSQLException {
+		return this.get(new QueryKey(query, callback), tables,
+			() -> JDBCUtils.executeQuery(connection, query, callback));
+	}
+
+	/**
+	 * Execute query, or get the cached rows. The entry is tagged with the
+	 * tables read by the query.
+	 *
+	 * @param connection
+	 * @param query
+	 * @return Selected rows in unmodifiable list of unmodifiable maps.
+	 * @throws RichSQLException
+	 */
+	public List<Map<String, Object>> executeQueryMapList(
+			final Connection connection, final Query query)
+			throws RichSQLException {
+		return this.get(new QueryKey(query, MAP_LIST), null,
+			() -> RowMap.freezeAll(JDBCUtils.executeQueryMapList(connection,
+				query)));
+	}
+
+	/**
+	 * Execute query, or get the cached rows. The entry is tagged with the
+	 * tables.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param tables Tables read by the query
+	 * @return Selected rows in unmodifiable list of unmodifiable maps.
+	 * @throws RichSQLException
+	 */
+	public List<Map<String, Object>> executeQueryMapList(
+			final Connection connection, final Query query,
+			final String... tables) throws RichSQLException {
+		return this.get(new QueryKey(query, MAP_LIST), tables,
+			() -> RowMap.freezeAll(JDBCUtils.executeQueryMapList(connection,
+				query)));
+	}
+
+	/**
+	 * Remove the entries tagged with the table.
+	 *
+	 * @param table
+	 */
+	public synchronized void invalidateTable(final String table) {
+		++generation;
+		final Set<QueryKey> keys = tagged.remove(SqlTables.normalize(table));
+		if (keys != null) {
+			for (final QueryKey key : keys) {
+				this.remove(entries.get(key));
+			}
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public synchronized void invalidateAll() {
+		++generation;
+		entries.clear();
+		tagged.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Invalidate the entries of the tables written by the statement.
+	 */
+	@Override
+	public void onQuery(final QueryEvent event) {
+		final Set<String> tables = SqlTables.written(event.getQuery());
+		if (tables == null) {
+			this.invalidateAll();
+		} else {
+			for (final String table : tables) {
+				this.invalidateTable(table);
+			}
+		}
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Get the number of entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the estimated size of entries, in bytes.
+	 */
+	public synchronized long getEstimatedBytes() {
+		return bytes;
+	}
+
+	private <R> R get(final QueryKey key, final String[] tables,
+			final Loader<R> loader) throws RichSQLException {
+		final long loadingGeneration;
+		synchronized (this) {
+			final Entry entry = entries.get(key);
+			if (entry != null) {
+				if (ttlNanos <= 0
+					|| System.nanoTime() - entry.createdAt < ttlNanos) {
+					++hitCount;
+					@SuppressWarnings("unchecked")
+					final R value = (R)entry.value;
+					return value;
+				}
+				this.remove(entry);
+			}
+			++missCount;
+			loadingGeneration = generation;
+		}
+
+		final long createdAt = System.nanoTime();
+		final R value = loader.load();
+		final String[] tags = QueryResultCache.tags(key.getQuery(), tables);
+		final long size = Sizes.estimateDeep(value)
+			+ key.getQuery().getSQL().length() * 2L
+			+ Sizes.estimateDeep(key.getQuery().getParameters());
+		if (size > maxBytes) {
+			return value;
+		}
+
+		final Entry entry = new Entry(key, value, tags, size, createdAt);
+		synchronized (this) {
+			if (generation != loadingGeneration) {
+				return value;
+			}
+			this.remove(entries.get(key));
+			entries.put(key, entry);
+			bytes += size;
+			for (final String tag : tags) {
+				tagged.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+			}
+			final Iterator<Entry> iterator = entries.values().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes)
+				&& iterator.hasNext()) {
+				final Entry eldest = iterator.next();
+				iterator.remove();
+				this.untag(eldest);
+			}
+		}
+		return value;
+	}
+
+	private void remove(final Entry entry) {
+		if (entry != null) {
+			entries.remove(entry.key);
+			this.untag(entry);
+		}
+	}
+
+	private void untag(final Entry entry) {
+		bytes -= entry.size;
+		for (final String tag : entry.tags) {
+			final Set<QueryKey> keys = tagged.get(tag);
+			if (keys != null) {
+				keys.remove(entry.key);
+				if (keys.isEmpty()) {
+					tagged.remove(tag);
+				}
+			}
+		}
+	}
+
+	private static String[] tags(final Query query, final String[] tables) {
+		if (tables == null) {
+			return SqlTables.read(query).toArray(new String[0]);
+		}
+		final String[] tags = new String[tables.length];
+		for (int i = 0; i < tables.length; ++i) {
+			tags[i] = SqlTables.normalize(tables[i]);
+		}
+		return tags;
+	}
+
+	@FunctionalInterface
+	private interface Loader<R> {
+		R load() throws RichSQLException;
+	}
+
+	private static class Entry {
+		private final QueryKey key;
+		private final Object value;
+		private final String[] tags;
+		private final long size;
+		private final long createdAt;
+
+		Entry(final QueryKey key, final Object value, final String[] tags,
+				final long size, final long createdAt) {
+			this.key = key;
+			this.value = value;
+			this.tags = tags;
+			this.size = size;
+			this.createdAt = createdAt;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package me.geso.jdbcutils;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Measures the phases of a query, and sends the event to the listeners.
+ * {@link #NOOP} is used while no listener is registered, and does nothing.
+ *
+ * Not thread safe. A timer is used by one thread at a time.
+ */
+class QueryTimer {
+	static final QueryTimer NOOP = new QueryTimer(null, null, null);
+
+	private final QueryListener[] listeners;
+	private final QueryEvent.Type type;
+	private final Query query;
+	private final long start;
+	private long mark;
+	private long prepareNanos;
+	private long executeNanos;
+	private long fetchNanos;
+	private long callbackNanos;
+	private long rows = -1;
+	private SQLException error;
+	private boolean finished;
+
+	private QueryTimer(final QueryListener[] listeners,
+			final QueryEvent.Type type, final Query query) {
+		this.listeners = listeners;
+		this.type = type;
+		this.query = query;
+		this.start = listeners == null ? 0 : System.nanoTime();
+		this.mark = start;
+	}
+
+	static QueryTimer start(final QueryEvent.Type type, final String sql,
+			final List<Object> params) {
+		final QueryListener[] listeners = QueryListeners.current();
+		if (listeners == null) {
+			return NOOP;
+		}
+		// The query is created only while listeners are registered.
+		return new QueryTimer(listeners, type, Query.wrap(sql, params));
+	}
+
+	static QueryTimer start(final QueryEvent.Type type, final Query query) {
+		final QueryListener[] listeners = QueryListeners.current();
+		if (listeners == null) {
+			return NOOP;
+		}
+		return new QueryTimer(listeners, type, query);
+	}
+
+	/**
+	 * The statement was prepared, and the parameters were bound.
+	 */
+	void prepared() {
+		if (listeners != null) {
+			final long now = System.nanoTime();
+			prepareNanos += now - mark;
+			mark = now;
+		}
+	}
+
+	void executed() {
+		if (listeners != null) {
+			final long now = System.nanoTime();
+			executeNanos += now - mark;
+			mark = now;
+		}
+	}
+
+	void fetched() {
+		if (listeners != null) {
+			final long now = System.nanoTime();
+			fetchNanos += now - mark;
+			mark = now;
+		}
+	}
+
+	void called() {
+		if (listeners != null) {
+			final long now = System.nanoTime();
+			callbackNanos += now - mark;
+			mark = now;
+		}
+	}
+
+	/**
+	 * Skip the time since the last mark, e.g. waiting for the consumer.
+	 */
+	void idle() {
+		if (listeners != null) {
+			mark = System.nanoTime();
+		}
+	}
+
+	void addRows(final long count) {
+		if (listeners != null) {
+			rows = rows < 0 ? count : rows + count;
+		}
+	}
+
+	void failed(final SQLException e) {
+		if (listeners != null) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Send the event. The event is sent only once.
+	 */
+	void finish() {
+		if (listeners == null || finished) {
+			return;
+		}
+		finished = true;
+		QueryListeners.fire(listeners, new QueryEvent(type, query,
+			prepareNanos, executeNanos, fetchNanos, callbackNanos,
+			System.nanoTime() - start, rows, error));
+	}
+}
@@ -0,0 +1,610 @@
+package me.geso.jdbcutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+
+/**
+ * Writes rows of a result set as CSV, TSV or newline delimited JSON.
+ *
+ * <pre>
+ * <code>ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.CSV);
+ * try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+ *     exporter.export(connection, query, StreamOptions.mysqlStreaming(), channel);
+ * }</code>
+ * </pre>
+ *
+ * Rows are encoded into UTF-8 directly in a direct buffer, and the buffer
+ * is written when it's full. Integer columns are read by {@code getLong}
+ * and written without strings, and strings from the driver are encoded
+ * without intermediate byte arrays. Memory usage doesn't depend on the
+ * number of rows. Use streaming options, e.g.
+ * {@link StreamOptions#mysqlStreaming()}, to keep the driver from reading
+ * the whole result.
+ *
+ * <ul>
+ * <li>CSV: RFC 4180. Fields are quoted if needed, and lines end with CRLF.
+ * NULL is an empty field.</li>
+ * <li>TSV: Tabs, newlines and backslashes are escaped by backslashes, and
+ * NULL is {@code \N}, as MySQL's {@code LOAD DATA}.</li>
+ * <li>NDJSON: A JSON object per line. Integers, booleans and finite numbers
+ * are JSON numbers and booleans. Binary values are Base64 strings.</li>
+ * </ul>
+ *
+ * The buffer is reused by exports, so an exporter must not be used by
+ * multiple threads at the same time.
+ */
+public class ResultSetExporter {
+	public enum Format {
+		CSV, TSV, NDJSON
+	}
+
+	/**
+	 * Default size of the buffer, in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	// Maximum bytes of a char, including escapes. e.g. \u001f in JSON.
+	private static final int MAX_CHAR_BYTES = 6;
+
+	private static final byte[] HEX = "0123456789abcdef"
+		.getBytes(StandardCharsets.US_ASCII);
+
+	private enum Kind {
+		LONG, BOOLEAN, NUMBER, BYTES, STRING
+	}
+
+	private final Format format;
+	private final ByteBuffer buffer;
+	private final byte[] digits = new byte[20];
+	private boolean header = true;
+	private WritableByteChannel channel;
+
+	public ResultSetExporter(final Format format) {
+		this(format, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param format
+	 * @param bufferSize
+	 *            Size of the buffer, in bytes.
+	 */
+	public ResultSetExporter(final Format format, final int bufferSize) {
+		if (bufferSize < 1024) {
+			throw new IllegalArgumentException("bufferSize is too small: "
+				+ bufferSize);
+		}
+		this.format = format;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Write the header line of column labels, for CSV and TSV. It's enabled
+	 * by default.
+	 *
+	 * @param header
+	 * @return this
+	 */
+	public ResultSetExporter header(final boolean header) {
+		this.header = header;
+		return this;
+	}
+
+	/**
+	 * Execute query, and write the rows.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param options
+	 *            statement options, e.g. fetch size
+	 * @param channel
+	 * @return Number of rows
+	 * @throws RichSQLException
+	 * @throws IOException
+	 */
+	public long export(final Connection connection, final Query query,
+			final StreamOptions options, final WritableByteChannel channel)
+			throws RichSQLException, IOException {
+		final String sql = query.getSQL();
+		final QueryTimer timer = QueryTimer.start(QueryEvent.Type.QUERY, query);
+		try (final PreparedStatement ps = options.isDefault() ? connection
+			.prepareStatement(sql) : connection.prepareStatement(sql,
+			ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			if (!options.isDefault()) {
+				ps.setFetchSize(options.getFetchSize());
+			}
+			JDBCUtils.fillPreparedStatementParams(ps, query.getParameters());
+			timer.prepared();
+			try (final ResultSet rs = ps.executeQuery()) {
+				timer.executed();
+				final FetchSizeTuner fetchSizeTuner = options.getMemoryBudget() > 0
+					? new FetchSizeTuner(options.getMemoryBudget()) : null;
+				final long rows = this.write(rs, channel, fetchSizeTuner);
+				timer.fetched();
+				timer.addRows(rows);
+				return rows;
+			}
+		} catch (final SQLException ex) {
+			timer.failed(ex);
+			throw new RichSQLException(ex, query);
+		} catch (final IOException ex) {
+			// Listeners see the write failure as a failed query.
+			timer.failed(new SQLException("Failed to write rows: "
+				+ ex.getMessage(), ex));
+			throw ex;
+		} finally {
+			timer.finish();
+		}
+	}
+
+	/**
+	 * Write the rest of the rows of the result set.
+	 *
+	 * @param rs
+	 * @param channel
+	 * @return Number of rows
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(final ResultSet rs, final WritableByteChannel channel)
+			throws SQLException, IOException {
+		return this.write(rs, channel, null);
+	}
+
+	/**
+	 * Write the rest of the rows of the result set. The stream is not
+	 * closed.
+	 *
+	 * @param rs
+	 * @param out
+	 * @return Number of rows
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public long export(final ResultSet rs, final OutputStream out)
+			throws SQLException, IOException {
+		final long rows = this.export(rs, Channels.newChannel(out));
+		out.flush();
+		return rows;
+	}
+
+	private long write(final ResultSet rs, final WritableByteChannel channel,
+			final FetchSizeTuner fetchSizeTuner) throws SQLException,
+			IOException {
+		this.channel = channel;
+		buffer.clear();
+		try {
+			final ResultSetMetaData metaData = rs.getMetaData();
+			final int columnCount = metaData.getColumnCount();
+			final Kind[] kinds = new Kind[columnCount];
+			final byte[][] names = new byte[columnCount][];
+			for (int i = 0; i < columnCount; ++i) {
+				kinds[i] = ResultSetExporter.kindOf(metaData, i + 1);
+				names[i] = this.encodeName(metaData.getColumnLabel(i + 1));
+			}
+			if (header && format != Format.NDJSON) {
+				for (int i = 0; i < columnCount; ++i) {
+					if (i > 0) {
+						this.put(this.separator());
+					}
+					this.put(names[i]);
+				}
+				this.newLine();
+			}
+
+			long rows = 0;
+			while (rs.next()) {
+				if (fetchSizeTuner != null) {
+					fetchSizeTuner.observe(rs);
+				}
+				if (format == Format.NDJSON) {
+					this.put((byte)'{');
+				}
+				for (int i = 0; i < columnCount; ++i) {
+					if (i > 0) {
+						this.put(this.separator());
+					}
+					if (format == Format.NDJSON) {
+						this.put(names[i]);
+						this.put((byte)':');
+					}
+					this.writeValue(rs, i + 1, kinds[i]);
+				}
+				if (format == Format.NDJSON) {
+					this.put((byte)'}');
+				}
+				this.newLine();
+				++rows;
+			}
+			this.flush();
+			return rows;
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	private void writeValue(final ResultSet rs, final int column,
+			final Kind kind) throws SQLException, IOException {
+		switch (kind) {
+		case LONG: {
+			final long value = rs.getLong(column);
+			if (rs.wasNull()) {
+				this.writeNull();
+			} else {
+				this.writeLong(value);
+			}
+			break;
+		}
+		case BOOLEAN: {
+			final boolean value = rs.getBoolean(column);
+			if (rs.wasNull()) {
+				this.writeNull();
+			} else {
+				this.writeAscii(value ? "true" : "false");
+			}
+			break;
+		}
+		case NUMBER: {
+			final String value = rs.getString(column);
+			if (value == null) {
+				this.writeNull();
+			} else if (format == Format.NDJSON
+				&& !ResultSetExporter.isJsonNumber(value)) {
+				// NaN, Infinity
+				this.writeString(value);
+			} else {
+				this.writeAscii(value);
+			}
+			break;
+		}
+		case BYTES: {
+			final byte[] value = rs.getBytes(column);
+			if (value == null) {
+				this.writeNull();
+			} else {
+				final byte[] encoded = Base64.getEncoder().encode(value);
+				if (format == Format.NDJSON) {
+					this.put((byte)'"');
+					this.put(encoded);
+					this.put((byte)'"');
+				} else {
+					this.put(encoded);
+				}
+			}
+			break;
+		}
+		default: {
+			final String value = rs.getString(column);
+			if (value == null) {
+				this.writeNull();
+			} else {
+				this.writeString(value);
+			}
+			break;
+		}
+		}
+	}
+
+	private void writeNull() throws IOException {
+		switch (format) {
+		case TSV:
+			this.writeAscii("\\N");
+			break;
+		case NDJSON:
+			this.writeAscii("null");
+			break;
+		default:
+			// Empty field
+			break;
+		}
+	}
+
+	private void writeLong(final long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			this.writeAscii(Long.toString(value));
+			return;
+		}
+		long v = Math.abs(value);
+		int position = digits.length;
+		do {
+			digits[--position] = (byte)('0' + v % 10);
+			v /= 10;
+		} while (v != 0);
+		if (value < 0) {
+			digits[--position] = '-';
+		}
+		this.ensure(digits.length - position);
+		buffer.put(digits, position, digits.length - position);
+	}
+
+	private void writeAscii(final String s) throws IOException {
+		if (s.length() > buffer.capacity()) {
+			this.writeUtf8(s, 0, s.length());
+			return;
+		}
+		this.ensure(s.length());
+		for (int i = 0; i < s.length(); ++i) {
+			buffer.put((byte)s.charAt(i));
+		}
+	}
+
+	private void writeString(final String s) throws IOException {
+		switch (format) {
+		case CSV:
+			this.writeCsv(s);
+			break;
+		case TSV:
+			this.writeTsv(s);
+			break;
+		default:
+			this.writeJson(s);
+			break;
+		}
+	}
+
+	private void writeCsv(final String s) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			if (c == '"' || c == ',' || c == '\r' || c == '\n') {
+				quote = true;
+				break;
+			}
+		}
+		if (!quote) {
+			this.writeUtf8(s, 0, s.length());
+			return;
+		}
+		this.put((byte)'"');
+		int start = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			if (s.charAt(i) == '"') {
+				// Double the quote
+				this.writeUtf8(s, start, i + 1);
+				start = i;
+			}
+		}
+		this.writeUtf8(s, start, s.length());
+		this.put((byte)'"');
+	}
+
+	private void writeTsv(final String s) throws IOException {
+		int start = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			final char escaped;
+			switch (c) {
+			case '\t':
+				escaped = 't';
+				break;
+			case '\n':
+				escaped = 'n';
+				break;
+			case '\r':
+				escaped = 'r';
+				break;
+			case '\\':
+				escaped = '\\';
+				break;
+			default:
+				continue;
+			}
+			this.writeUtf8(s, start, i);
+			this.put((byte)'\\');
+			this.put((byte)escaped);
+			start = i + 1;
+		}
+		this.writeUtf8(s, start, s.length());
+	}
+
+	private void writeJson(final String s) throws IOException {
+		this.put((byte)'"');
+		int start = 0;
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\') {
+				continue;
+			}
+			this.writeUtf8(s, start, i);
+			this.ensure(MAX_CHAR_BYTES);
+			buffer.put((byte)'\\');
+			switch (c) {
+			case '"':
+			case '\\':
+				buffer.put((byte)c);
+				break;
+			case '\n':
+				buffer.put((byte)'n');
+				break;
+			case '\r':
+				buffer.put((byte)'r');
+				break;
+			case '\t':
+				buffer.put((byte)'t');
+				break;
+			default:
+				buffer.put((byte)'u').put((byte)'0').put((byte)'0')
+					.put(HEX[c >> 4]).put(HEX[c & 0xf]);
+				break;
+			}
+			start = i + 1;
+		}
+		this.writeUtf8(s, start, s.length());
+		this.put((byte)'"');
+	}
+
+	// Encode s[start, end) into the buffer.
+	private void writeUtf8(final String s, final int start, final int end)
+			throws IOException {
+		int i = start;
+		while (i < end) {
+			// Encode as many chars as the buffer surely has room for.
+			final int chunkEnd = Math.min(end, i + Math.max(1,
+				buffer.remaining() / 3 - 1));
+			if (buffer.remaining() < 4) {
+				this.flush();
+				continue;
+			}
+			while (i < chunkEnd) {
+				final char c = s.charAt(i++);
+				if (c < 0x80) {
+					buffer.put((byte)c);
+				} else if (c < 0x800) {
+					buffer.put((byte)(0xc0 | c >> 6));
+					buffer.put((byte)(0x80 | c & 0x3f));
+				} else if (Character.isHighSurrogate(c) && i < end
+					&& Character.isLowSurrogate(s.charAt(i))) {
+					final int cp = Character.toCodePoint(c, s.charAt(i++));
+					buffer.put((byte)(0xf0 | cp >> 18));
+					buffer.put((byte)(0x80 | cp >> 12 & 0x3f));
+					buffer.put((byte)(0x80 | cp >> 6 & 0x3f));
+					buffer.put((byte)(0x80 | cp & 0x3f));
+				} else if (Character.isSurrogate(c)) {
+					// Unpaired surrogate
+					buffer.put((byte)'?');
+				} else {
+					buffer.put((byte)(0xe0 | c >> 12));
+					buffer.put((byte)(0x80 | c >> 6 & 0x3f));
+					buffer.put((byte)(0x80 | c & 0x3f));
+				}
+			}
+		}
+	}
+
+	// Column label as a CSV or TSV field, or a JSON string.
+	private byte[] encodeName(final String label) {
+		final StringBuilder builder = new StringBuilder(label.length() + 2);
+		if (format == Format.TSV) {
+			for (int i = 0; i < label.length(); ++i) {
+				final char c = label.charAt(i);
+				if (c == '\\' || c == '\t' || c == '\n' || c == '\r') {
+					builder.append('\\').append(c == '\t' ? 't' : c == '\n' ? 'n'
+						: c == '\r' ? 'r' : '\\');
+				} else {
+					builder.append(c);
+				}
+			}
+		} else if (format == Format.CSV) {
+			if (label.indexOf('"') >= 0 || label.indexOf(',') >= 0
+				|| label.indexOf('\r') >= 0 || label.indexOf('\n') >= 0) {
+				builder.append('"').append(label.replace("\"", "\"\""))
+					.append('"');
+			} else {
+				builder.append(label);
+			}
+		} else {
+			builder.append('"');
+			for (int i = 0; i < label.length(); ++i) {
+				final char c = label.charAt(i);
+				if (c == '"' || c == '\\') {
+					builder.append('\\').append(c);
+				} else if (c < 0x20) {
+					builder.append(String.format("\\u%04x", (int)c));
+				} else {
+					builder.append(c);
+				}
+			}
+			builder.append('"');
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private byte separator() {
+		switch (format) {
+		case TSV:
+			return '\t';
+		default:
+			return ',';
+		}
+	}
+
+	private void newLine() throws IOException {
+		if (format == Format.CSV) {
+			this.put((byte)'\r');
+		}
+		this.put((byte)'\n');
+	}
+
+	private void put(final byte b) throws IOException {
+		this.ensure(1);
+		buffer.put(b);
+	}
+
+	private void put(final byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				this.flush();
+			}
+			final int length = Math.min(buffer.remaining(), bytes.length
+				- offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	private void ensure(final int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			this.flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static Kind kindOf(final ResultSetMetaData metaData,
+			final int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return Kind.LONG;
+		case Types.BIGINT:
+			// Unsigned BIGINT may not fit in long.
+			return metaData.isSigned(column) ? Kind.LONG : Kind.NUMBER;
+		case Types.BOOLEAN:
+			return Kind.BOOLEAN;
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+		case Types.DOUBLE:
+		case Types.FLOAT:
+		case Types.REAL:
+			return Kind.NUMBER;
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return Kind.BYTES;
+		default:
+			return Kind.STRING;
+		}
+	}
+
+	private static boolean isJsonNumber(final String s) {
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+			if (!(c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.'
+				|| c == 'e' || c == 'E')) {
+				return false;
+			}
+		}
+		return !s.isEmpty();
+	}
+}
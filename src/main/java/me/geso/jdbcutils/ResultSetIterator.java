@@ -11,15 +11,25 @@ public class ResultSetIterator<T> implements Closeable, Iterator<T> {
 	private final String query;
 	private final List<Object> params;
 	private final ResultSetCallback<T> callback;
+	private final FetchSizeTuner fetchSizeTuner;
+	private final QueryTimer timer;
 	private boolean loaded;
 	private boolean hasNext;
 
 	public ResultSetIterator(ResultSet resultSet, String query,
 			List<Object> params, ResultSetCallback<T> callback) {
+		this(resultSet, query, params, callback, null, QueryTimer.NOOP);
+	}
+
+	ResultSetIterator(ResultSet resultSet, String query,
+			List<Object> params, ResultSetCallback<T> callback,
+			FetchSizeTuner fetchSizeTuner, QueryTimer timer) {
 		this.resultSet = resultSet;
 		this.query = query;
 		this.params = params;
 		this.callback = callback;
+		this.fetchSizeTuner = fetchSizeTuner;
+		this.timer = timer;
 	}
 
 	@Override
@@ -39,9 +49,14 @@ public class ResultSetIterator<T> implements Closeable, Iterator<T> {
 			if (!this.loaded) {
 				this.hasNext = this.resultSet.next();
 				this.loaded = true;
+				if (this.hasNext && this.fetchSizeTuner != null) {
+					this.fetchSizeTuner.observe(this.resultSet);
+				}
+				this.timer.fetched();
 			}
 			return this.hasNext;
 		} catch (SQLException e) {
+			this.timer.failed(e);
 			throw new UncheckedRichSQLException(e, query, params);
 		}
 	}
@@ -51,11 +66,15 @@ public class ResultSetIterator<T> implements Closeable, Iterator<T> {
 		try {
 			if (!this.loaded) {
 				this.hasNext = this.resultSet.next();
+				this.timer.fetched();
 			}
 			T retval = callback.call(this.resultSet);
 			this.loaded = false;
+			this.timer.called();
+			this.timer.addRows(1);
 			return retval;
 		} catch (SQLException e) {
+			this.timer.failed(e);
 			throw new UncheckedRichSQLException(e, query, params);
 		}
 	}
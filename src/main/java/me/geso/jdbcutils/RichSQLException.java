@@ -4,32 +4,57 @@ import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
  * Rich SQL exception.
  *
+ * The message contains the SQL and the parameters. It's built on the first
+ * call of {@link #getMessage()}, and long SQL and parameters are truncated.
+ * The exception is logged by {@link SQLErrorLogger}.
  */
 public class RichSQLException extends Exception {
-	private static final Logger LOGGER = LoggerFactory
-		.getLogger(RichSQLException.class);
+	/**
+	 * Maximum length of SQL in the message.
+	 */
+	public static final int MAX_SQL_LENGTH = 4096;
+	/**
+	 * Maximum number of parameters in the message.
+	 */
+	public static final int MAX_PARAMS = 32;
+	/**
+	 * Maximum length of each parameter in the message.
+	 */
+	public static final int MAX_PARAM_LENGTH = 100;
 
 	private final String sql;
 	private final List<Object> params;
+	private transient volatile String message;
 
 	public RichSQLException(SQLException ex, String sql, List<Object> params) {
-		super("SQL Exception: " + ex.getMessage() + ":" + sql + "(" + params.toString() + ")", ex);
-		LOGGER.error("SQLException: {} {} {}", ex.getMessage(), sql,
-			params.toString());
-		this.sql = sql;
-		this.params = params;
+		this(ex, Query.wrap(sql, params));
+	}
+
+	public RichSQLException(final SQLException ex, final Query query) {
+		super(null, ex);
+		this.sql = query.getSQL();
+		this.params = query.getParameters();
+		SQLErrorLogger.log(ex, query);
 	}
 
 	public RichSQLException(final SQLException e) {
 		this(e, "", Collections.emptyList());
 	}
 
+	@Override
+	public String getMessage() {
+		String message = this.message;
+		if (message == null) {
+			message = "SQL Exception: " + this.getCause().getMessage() + ":"
+				+ renderSql(sql) + "(" + renderParams(params) + ")";
+			this.message = message;
+		}
+		return message;
+	}
+
 	public String getSql() {
 		return sql;
 	}
@@ -38,6 +63,43 @@ public class RichSQLException extends Exception {
 		return params;
 	}
 
+	static String renderSql(final String sql) {
+		if (sql.length() <= MAX_SQL_LENGTH) {
+			return sql;
+		}
+		return sql.substring(0, MAX_SQL_LENGTH) + "...(" + sql.length()
+			+ " chars)";
+	}
+
+	/**
+	 * Render parameters like {@code List#toString()}, but truncated.
+	 */
+	static String renderParams(final List<Object> params) {
+		final StringBuilder builder = new StringBuilder("[");
+		final int size = params.size();
+		for (int i = 0; i < size && i < MAX_PARAMS; ++i) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			final Object param = params.get(i);
+			if (param instanceof byte[]) {
+				builder.append("byte[").append(((byte[])param).length)
+					.append(']');
+				continue;
+			}
+			final String value = String.valueOf(param);
+			if (value.length() > MAX_PARAM_LENGTH) {
+				builder.append(value, 0, MAX_PARAM_LENGTH).append("...");
+			} else {
+				builder.append(value);
+			}
+		}
+		if (size > MAX_PARAMS) {
+			builder.append(", ...(").append(size).append(" params)");
+		}
+		return builder.append(']').toString();
+	}
+
 	private static final long serialVersionUID = 1L;
 
 }
@@ -0,0 +1,267 @@
+package me.geso.jdbcutils;
+
+import java.io.Serializable;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map representation of a row.
+ *
+ * All rows of a result share one {@link Schema}, which maps column labels to
+ * column indexes. A row itself only holds an array of values.
+ * Putting new keys or removing keys converts the row to a plain map
+ * internally. A frozen row can't be modified, and can be shared, e.g. by
+ * {@link QueryResultCache}.
+ */
+class RowMap extends AbstractMap<String, Object> implements Serializable {
+	private final Schema schema;
+	private final Object[] values;
+	private Map<String, Object> inflated;
+	private boolean frozen;
+
+	RowMap(final Schema schema, final Object[] values) {
+		this.schema = schema;
+		this.values = values;
+	}
+
+	/**
+	 * Make the row unmodifiable.
+	 *
+	 * @return this
+	 */
+	RowMap freeze() {
+		this.frozen = true;
+		return this;
+	}
+
+	@Override
+	public int size() {
+		if (inflated != null) {
+			return inflated.size();
+		}
+		return schema.visible.length;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		if (inflated != null) {
+			return inflated.containsKey(key);
+		}
+		return schema.indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(final Object key) {
+		if (inflated != null) {
+			return inflated.get(key);
+		}
+		final int index = schema.indexOf(key);
+		return index >= 0 ? values[index] : null;
+	}
+
+	@Override
+	public Object put(final String key, final Object value) {
+		this.checkNotFrozen();
+		if (inflated == null) {
+			final int index = schema.indexOf(key);
+			if (index >= 0) {
+				final Object old = values[index];
+				values[index] = value;
+				return old;
+			}
+		}
+		return this.inflate().put(key, value);
+	}
+
+	@Override
+	public Object remove(final Object key) {
+		this.checkNotFrozen();
+		if (inflated == null && schema.indexOf(key) < 0) {
+			return null;
+		}
+		return this.inflate().remove(key);
+	}
+
+	@Override
+	public void clear() {
+		this.checkNotFrozen();
+		this.inflate().clear();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (inflated != null) {
+			return inflated.entrySet();
+		}
+		return new EntrySet();
+	}
+
+	/**
+	 * Freeze the rows read by {@link JDBCUtils}.
+	 *
+	 * @param rows
+	 * @return Unmodifiable list of the frozen rows
+	 */
+	static List<Map<String, Object>> freezeAll(
+			final List<Map<String, Object>> rows) {
+		for (final Map<String, Object> row : rows) {
+			((RowMap)row).freeze();
+		}
+		return Collections.unmodifiableList(rows);
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException("Row is frozen");
+		}
+	}
+
+	private Map<String, Object> inflate() {
+		if (inflated == null) {
+			final Map<String, Object> map = new LinkedHashMap<>();
+			for (final int index : schema.visible) {
+				map.put(schema.labels[index], values[index]);
+			}
+			inflated = map;
+		}
+		return inflated;
+	}
+
+	private Object writeReplace() {
+		return new HashMap<>(this);
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+		@Override
+		public int size() {
+			return schema.visible.length;
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			return new Iterator<Map.Entry<String, Object>>() {
+				private int position;
+
+				@Override
+				public boolean hasNext() {
+					return position < schema.visible.length;
+				}
+
+				@Override
+				public Map.Entry<String, Object> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return new Entry(schema.visible[position++]);
+				}
+			};
+		}
+	}
+
+	private class Entry implements Map.Entry<String, Object> {
+		private final int index;
+
+		Entry(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return schema.labels[index];
+		}
+
+		@Override
+		public Object getValue() {
+			return values[index];
+		}
+
+		@Override
+		public Object setValue(final Object value) {
+			RowMap.this.checkNotFrozen();
+			final Object old = values[index];
+			values[index] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			final Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+			final Object value = this.getValue();
+			return this.getKey().equals(e.getKey())
+				&& (value == null ? e.getValue() == null : value.equals(e
+					.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			final Object value = this.getValue();
+			return this.getKey().hashCode()
+				^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return this.getKey() + "=" + this.getValue();
+		}
+	}
+
+	/**
+	 * Column labels of a result, shared by all rows.
+	 */
+	static class Schema {
+		private final String[] labels;
+		private final Map<String, Integer> indexes;
+		// Indexes of the columns visible through the map. If labels are
+		// duplicated, the last column wins, same as HashMap#put.
+		private final int[] visible;
+
+		Schema(final String[] labels) {
+			this.labels = labels;
+			this.indexes = new HashMap<>(labels.length * 2);
+			final List<String> order = new ArrayList<>(labels.length);
+			for (int i = 0; i < labels.length; ++i) {
+				if (this.indexes.put(labels[i], i) == null) {
+					order.add(labels[i]);
+				}
+			}
+			this.visible = new int[order.size()];
+			for (int i = 0; i < visible.length; ++i) {
+				this.visible[i] = this.indexes.get(order.get(i));
+			}
+		}
+
+		static Schema of(final ResultSetMetaData metaData) throws SQLException {
+			final int columnCount = metaData.getColumnCount();
+			final String[] labels = new String[columnCount];
+			for (int i = 0; i < columnCount; ++i) {
+				labels[i] = metaData.getColumnLabel(i + 1);
+			}
+			return new Schema(labels);
+		}
+
+		int getColumnCount() {
+			return labels.length;
+		}
+
+		int indexOf(final Object label) {
+			final Integer index = indexes.get(label);
+			return index != null ? index : -1;
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,164 @@
+package me.geso.jdbcutils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Base class of the row mappers generated for {@link GenerateRowMapper}.
+ *
+ * As a callback, it maps all rows of the result set. Column labels are
+ * resolved to indexes once per result set, and the generated code reads
+ * the columns by index with typed getters, without reflection.
+ *
+ * @param <T>
+ */
+public abstract class RowMapper<T> implements ResultSetCallback<List<T>> {
+	/**
+	 * Suffix of the generated class names.
+	 */
+	public static final String SUFFIX = "RowMapper";
+
+	// Generated mappers by bean class, or NONE. Entries are dropped with
+	// the bean classes.
+	private static final ClassValue<Object> GENERATED = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(final Class<?> valueClass) {
+			return RowMapper.load(valueClass);
+		}
+	};
+	private static final Object NONE = new Object();
+
+	private final String[] properties;
+	// Last shape of the result set, and its columns.
+	private volatile Binding binding;
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param properties
+	 *            Names of the properties, matched with column labels
+	 *            ignoring case.
+	 */
+	protected RowMapper(final String... properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Map all remaining rows in the result set.
+	 */
+	@Override
+	public List<T> call(final ResultSet rs) throws SQLException {
+		int[] columns = null;
+		final List<T> rows = new ArrayList<>();
+		while (rs.next()) {
+			if (columns == null) {
+				// Resolved on the first row, so an empty result doesn't need
+				// all the columns.
+				columns = this.bind(rs.getMetaData());
+			}
+			rows.add(this.map(rs, columns));
+		}
+		return rows;
+	}
+
+	/**
+	 * Map the current row.
+	 *
+	 * @param rs
+	 * @param columns
+	 *            Column indexes of the properties, in the order of the
+	 *            property names.
+	 * @return Row
+	 * @throws SQLException
+	 */
+	protected abstract T map(ResultSet rs, int[] columns) throws SQLException;
+
+	/**
+	 * Check the type of a value read by {@code getObject}.
+	 */
+	protected static <V> V cast(final Object value, final Class<V> type,
+			final String property) {
+		if (value != null && !type.isInstance(value)) {
+			throw new IllegalArgumentException("Cannot set "
+				+ value.getClass().getName() + " to the property '" + property
+				+ "' (" + type.getName() + ")");
+		}
+		return type.cast(value);
+	}
+
+	/**
+	 * Get the generated mapper of the class.
+	 *
+	 * @param valueClass
+	 * @return Mapper, or null if it's not generated.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> RowMapper<T> find(final Class<T> valueClass) {
+		final Object mapper = GENERATED.get(valueClass);
+		return mapper == NONE ? null : (RowMapper<T>)mapper;
+	}
+
+	private static Object load(final Class<?> valueClass) {
+		final String className = valueClass.getName();
+		final int dot = className.lastIndexOf('.');
+		final String name = className.substring(0, dot + 1)
+			+ className.substring(dot + 1).replace('$', '_') + SUFFIX;
+		try {
+			final Class<?> mapperClass = Class.forName(name, true,
+				valueClass.getClassLoader());
+			if (!RowMapper.class.isAssignableFrom(mapperClass)) {
+				return NONE;
+			}
+			return mapperClass.getField("INSTANCE").get(null);
+		} catch (final ReflectiveOperationException | LinkageError e) {
+			return NONE;
+		}
+	}
+
+	private int[] bind(final ResultSetMetaData metaData) throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		final String[] labels = new String[columnCount];
+		for (int i = 0; i < columnCount; ++i) {
+			labels[i] = metaData.getColumnLabel(i + 1);
+		}
+		final Binding last = this.binding;
+		if (last != null && Arrays.equals(last.labels, labels)) {
+			return last.columns;
+		}
+
+		// Column labels are case insensitive, like ResultSet#findColumn.
+		final Map<String, Integer> indexes = new HashMap<>();
+		for (int i = labels.length - 1; i >= 0; --i) {
+			indexes.put(labels[i].toLowerCase(Locale.ROOT), i + 1);
+		}
+		final int[] columns = new int[properties.length];
+		for (int i = 0; i < properties.length; ++i) {
+			final Integer column = indexes.get(properties[i]
+				.toLowerCase(Locale.ROOT));
+			if (column == null) {
+				throw new SQLException("Column '" + properties[i]
+					+ "' not found.", "S0022");
+			}
+			columns[i] = column;
+		}
+		this.binding = new Binding(labels, columns);
+		return columns;
+	}
+
+	private static class Binding {
+		private final String[] labels;
+		private final int[] columns;
+
+		Binding(final String[] labels, final int[] columns) {
+			this.labels = labels;
+			this.columns = columns;
+		}
+	}
+}
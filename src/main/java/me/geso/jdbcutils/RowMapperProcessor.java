@@ -0,0 +1,440 @@
+package me.geso.jdbcutils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor, that generates {@link RowMapper}s for the classes
+ * annotated by {@link GenerateRowMapper}.
+ *
+ * It's registered as a service, so javac runs it when this artifact is on
+ * the class path. Properties are the public setters, and the setters Lombok
+ * generates for {@code @Data} and {@code @Setter}, since they are not visible
+ * to other annotation processors. For the same reason, constructors of
+ * {@code @Value}, {@code @AllArgsConstructor}, {@code @Builder} and
+ * {@code @NoArgsConstructor} are checked by the annotations.
+ */
+@SupportedAnnotationTypes("me.geso.jdbcutils.GenerateRowMapper")
+public class RowMapperProcessor extends AbstractProcessor {
+	// Typed getters of ResultSet by type
+	private static final Map<String, String> GETTERS = new LinkedHashMap<>();
+	// Primitive types of boxed types
+	private static final Map<String, String> UNBOXED = new LinkedHashMap<>();
+
+	static {
+		GETTERS.put("long", "getLong");
+		GETTERS.put("int", "getInt");
+		GETTERS.put("short", "getShort");
+		GETTERS.put("byte", "getByte");
+		GETTERS.put("double", "getDouble");
+		GETTERS.put("float", "getFloat");
+		GETTERS.put("boolean", "getBoolean");
+		GETTERS.put("java.lang.String", "getString");
+		GETTERS.put("java.math.BigDecimal", "getBigDecimal");
+		GETTERS.put("byte[]", "getBytes");
+		GETTERS.put("java.sql.Timestamp", "getTimestamp");
+		GETTERS.put("java.sql.Date", "getDate");
+		GETTERS.put("java.sql.Time", "getTime");
+		UNBOXED.put("java.lang.Long", "long");
+		UNBOXED.put("java.lang.Integer", "int");
+		UNBOXED.put("java.lang.Short", "short");
+		UNBOXED.put("java.lang.Byte", "byte");
+		UNBOXED.put("java.lang.Double", "double");
+		UNBOXED.put("java.lang.Float", "float");
+		UNBOXED.put("java.lang.Boolean", "boolean");
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations,
+			final RoundEnvironment roundEnv) {
+		for (final Element element : roundEnv
+			.getElementsAnnotatedWith(GenerateRowMapper.class)) {
+			if (!(element instanceof TypeElement)) {
+				this.error(element, "@GenerateRowMapper must be on a class");
+				continue;
+			}
+			try {
+				this.generate((TypeElement)element);
+			} catch (final IOException e) {
+				this.error(element, "Cannot generate row mapper: " + e);
+			}
+		}
+		return true;
+	}
+
+	private void generate(final TypeElement type) throws IOException {
+		if (type.getModifiers().contains(Modifier.PRIVATE)
+			|| type.getModifiers().contains(Modifier.ABSTRACT)
+			|| !type.getTypeParameters().isEmpty()
+			|| type.getNestingKind().isNested()
+			&& !type.getModifiers().contains(Modifier.STATIC)
+			&& type.getKind() == ElementKind.CLASS) {
+			this.error(type,
+				"@GenerateRowMapper needs a non-private, non-abstract, non-generic, static class");
+			return;
+		}
+
+		final boolean record = type.getKind().name().equals("RECORD");
+		final List<Property> properties = record ? this.components(type)
+			: this.setters(type);
+		if (properties == null) {
+			return;
+		}
+
+		final PackageElement pkg = processingEnv.getElementUtils()
+			.getPackageOf(type);
+		final String packageName = pkg.isUnnamed() ? "" : pkg
+			.getQualifiedName().toString();
+		final String qualifiedName = type.getQualifiedName().toString();
+		final String simpleName = (packageName.isEmpty() ? qualifiedName
+			: qualifiedName.substring(packageName.length() + 1)).replace('.',
+			'_') + RowMapper.SUFFIX;
+
+		final StringBuilder src = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			src.append("package ").append(packageName).append(";\n\n");
+		}
+		src.append("// Generated by ").append(RowMapperProcessor.class.getName())
+			.append(". Do not edit.\n");
+		src.append("public final class ").append(simpleName)
+			.append(" extends me.geso.jdbcutils.RowMapper<")
+			.append(qualifiedName).append("> {\n");
+		src.append("\tpublic static final ").append(simpleName)
+			.append(" INSTANCE = new ").append(simpleName).append("();\n\n");
+		src.append("\tpublic ").append(simpleName).append("() {\n");
+		src.append("\t\tsuper(");
+		for (int i = 0; i < properties.size(); ++i) {
+			if (i > 0) {
+				src.append(", ");
+			}
+			src.append('"').append(properties.get(i).name).append('"');
+		}
+		src.append(");\n\t}\n\n");
+		src.append("\t@Override\n");
+		src.append("\tprotected ").append(qualifiedName).append(
+			" map(final java.sql.ResultSet rs, final int[] columns)\n");
+		src.append("\t\t\tthrows java.sql.SQLException {\n");
+		if (!record) {
+			src.append("\t\tfinal ").append(qualifiedName).append(" row = new ")
+				.append(qualifiedName).append("();\n");
+		}
+		for (int i = 0; i < properties.size(); ++i) {
+			this.read(src, properties.get(i), i, !record);
+		}
+		if (record) {
+			src.append("\t\treturn new ").append(qualifiedName).append("(");
+			for (int i = 0; i < properties.size(); ++i) {
+				if (i > 0) {
+					src.append(", ");
+				}
+				src.append('v').append(i);
+			}
+			src.append(");\n");
+		} else {
+			src.append("\t\treturn row;\n");
+		}
+		src.append("\t}\n}\n");
+
+		try (Writer writer = processingEnv.getFiler()
+			.createSourceFile(
+				packageName.isEmpty() ? simpleName : packageName + "."
+					+ simpleName, type).openWriter()) {
+			writer.write(src.toString());
+		}
+	}
+
+	// Read the column into v{i}, and call the setter if it's a bean.
+	private void read(final StringBuilder src, final Property property,
+			final int i, final boolean bean) {
+		final String type = property.type;
+		final String column = "columns[" + i + "]";
+		final String value = "v" + i;
+		final String primitive = UNBOXED.get(type);
+		final String getter = GETTERS.get(primitive != null ? primitive
+			: type);
+		final String condition;
+		if (primitive != null) {
+			// Boxed: null if the column is NULL
+			src.append("\t\tfinal ").append(primitive).append(" p").append(i)
+				.append(" = rs.").append(getter).append("(").append(column)
+				.append(");\n");
+			src.append("\t\tfinal ").append(type).append(' ').append(value)
+				.append(" = rs.wasNull() ? null : p").append(i).append(";\n");
+			condition = value + " != null";
+		} else if (getter != null) {
+			src.append("\t\tfinal ").append(type).append(' ').append(value)
+				.append(" = rs.").append(getter).append("(").append(column)
+				.append(");\n");
+			if (type.equals("boolean")) {
+				condition = value + " || !rs.wasNull()";
+			} else if (type.indexOf('.') < 0 && !type.endsWith("[]")) {
+				// Primitive
+				condition = value + " != 0 || !rs.wasNull()";
+			} else {
+				condition = value + " != null";
+			}
+		} else {
+			src.append("\t\tfinal ").append(type).append(' ').append(value)
+				.append(" = cast(rs.getObject(").append(column).append("), ")
+				.append(type).append(".class, \"").append(property.name)
+				.append("\");\n");
+			condition = value + " != null";
+		}
+		if (bean) {
+			// Like JDBCUtils#executeQueryForBean, NULL doesn't call the
+			// setter.
+			src.append("\t\tif (").append(condition).append(") {\n");
+			src.append("\t\t\trow.").append(property.accessor).append('(')
+				.append(value).append(");\n");
+			src.append("\t\t}\n");
+		}
+	}
+
+	private List<Property> setters(final TypeElement type) {
+		// Without declared constructors, the default one is implicit.
+		final List<ExecutableElement> constructors = new ArrayList<>();
+		for (final ExecutableElement constructor : ElementFilter
+			.constructorsIn(type.getEnclosedElements())) {
+			if (!this.isImplicit(constructor)) {
+				constructors.add(constructor);
+			}
+		}
+		// Constructors generated by Lombok aren't visible either.
+		final Boolean lombok = RowMapperProcessor.lombokConstructor(type,
+			!constructors.isEmpty());
+		boolean hasConstructor = constructors.isEmpty() && lombok == null
+			|| Boolean.TRUE.equals(lombok);
+		for (final ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty()
+				&& !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				hasConstructor = true;
+			}
+		}
+		if (!hasConstructor) {
+			this.error(type, lombok == null
+				? "@GenerateRowMapper needs a non-private constructor without arguments"
+				: "@GenerateRowMapper needs a non-private constructor without arguments, e.g. @NoArgsConstructor of Lombok");
+			return null;
+		}
+
+		final Map<String, Property> properties = new LinkedHashMap<>();
+		for (final ExecutableElement method : ElementFilter
+			.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			final String name = method.getSimpleName().toString();
+			if (!name.startsWith("set") || name.length() <= 3
+				|| method.getParameters().size() != 1
+				|| method.getReturnType().getKind() != TypeKind.VOID
+				|| !method.getModifiers().contains(Modifier.PUBLIC)
+				|| method.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			final VariableElement parameter = method.getParameters().get(0);
+			this.addSetter(properties, name, parameter.asType());
+		}
+
+		// Setters generated by Lombok aren't visible to other processors.
+		final Boolean classSetter = RowMapperProcessor.lombokSetter(type);
+		for (final VariableElement field : ElementFilter.fieldsIn(type
+			.getEnclosedElements())) {
+			if (field.getModifiers().contains(Modifier.STATIC)
+				|| field.getModifiers().contains(Modifier.FINAL)) {
+				continue;
+			}
+			final Boolean fieldSetter = RowMapperProcessor.lombokSetter(field);
+			if (fieldSetter != null ? fieldSetter : Boolean.TRUE
+				.equals(classSetter)) {
+				this.addSetter(properties,
+					RowMapperProcessor.lombokSetterName(field), field.asType());
+			}
+		}
+		return new ArrayList<>(properties.values());
+	}
+
+	private void addSetter(final Map<String, Property> properties,
+			final String setter, final TypeMirror type) {
+		final String property = RowMapperProcessor.decapitalize(setter
+			.substring(3));
+		if (!properties.containsKey(property)) {
+			properties.put(property, new Property(property, setter, this
+				.typeName(type)));
+		}
+	}
+
+	// Whether it's the default constructor added by the compiler.
+	private boolean isImplicit(final ExecutableElement constructor) {
+		final Elements elements = processingEnv.getElementUtils();
+		try {
+			// Java 9 and later
+			return Elements.class.getMethod("getOrigin", Element.class)
+				.invoke(elements, constructor).toString().equals("MANDATED");
+		} catch (final ReflectiveOperationException e) {
+			// javac of Java 8 flags it by GENERATEDCONSTR.
+			try {
+				final Object flags = constructor.getClass().getMethod("flags")
+					.invoke(constructor);
+				return flags instanceof Long && ((Long)flags & 1L << 36) != 0;
+			} catch (final ReflectiveOperationException | RuntimeException e2) {
+				return false;
+			}
+		}
+	}
+
+	// Whether Lombok generates public setters, or null if not annotated.
+	private static Boolean lombokSetter(final Element element) {
+		for (final AnnotationMirror annotation : element
+			.getAnnotationMirrors()) {
+			final String name = annotation.getAnnotationType().toString();
+			if (name.equals("lombok.Data")) {
+				return true;
+			} else if (name.equals("lombok.Setter")) {
+				final String access = RowMapperProcessor.annotationValue(
+					annotation, "value");
+				return access == null || access.equals("PUBLIC");
+			}
+		}
+		return null;
+	}
+
+	// Whether Lombok generates a non-private constructor without arguments,
+	// or null if it generates no constructors.
+	private static Boolean lombokConstructor(final TypeElement type,
+			final boolean declared) {
+		boolean fields = false;
+		for (final VariableElement field : ElementFilter.fieldsIn(type
+			.getEnclosedElements())) {
+			fields |= !field.getModifiers().contains(Modifier.STATIC);
+		}
+		boolean generated = false;
+		boolean noArgs = false;
+		boolean value = false;
+		for (final AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			final String name = annotation.getAnnotationType().toString();
+			if (name.equals("lombok.Value")) {
+				value = true;
+				continue;
+			} else if (name.equals("lombok.Builder")) {
+				// All arguments constructor, unless there are others.
+				if (!declared) {
+					generated = true;
+					noArgs |= !fields;
+				}
+				continue;
+			} else if (!name.equals("lombok.NoArgsConstructor")
+				&& !name.equals("lombok.AllArgsConstructor")) {
+				continue;
+			}
+			final String access = RowMapperProcessor.annotationValue(
+				annotation, "access");
+			if ("NONE".equals(access)) {
+				continue;
+			}
+			generated = true;
+			if (name.equals("lombok.NoArgsConstructor") || !fields) {
+				noArgs |= !"PRIVATE".equals(access);
+			}
+		}
+		if (value && !generated && !declared) {
+			// @Value implies @AllArgsConstructor.
+			generated = true;
+			noArgs = !fields;
+		}
+		return generated ? noArgs : null;
+	}
+
+	// Value of the annotation element, e.g. name of the enum constant, or
+	// null if it's default.
+	private static String annotationValue(final AnnotationMirror annotation,
+			final String name) {
+		for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+			.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue().toString();
+			}
+		}
+		return null;
+	}
+
+	// Same as Lombok, e.g. setFoo for "foo", and for boolean "isFoo".
+	private static String lombokSetterName(final VariableElement field) {
+		String name = field.getSimpleName().toString();
+		if (field.asType().getKind() == TypeKind.BOOLEAN
+			&& name.length() > 2 && name.startsWith("is")
+			&& Character.isUpperCase(name.charAt(2))) {
+			name = name.substring(2);
+		}
+		return "set" + Character.toUpperCase(name.charAt(0))
+			+ name.substring(1);
+	}
+
+	private List<Property> components(final TypeElement type) {
+		final List<Property> properties = new ArrayList<>();
+		for (final Element element : type.getEnclosedElements()) {
+			if (element.getKind().name().equals("RECORD_COMPONENT")) {
+				final String name = element.getSimpleName().toString();
+				properties.add(new Property(name, name, this.typeName(element
+					.asType())));
+			}
+		}
+		return properties;
+	}
+
+	private String typeName(final TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	// Same as java.beans.Introspector#decapitalize
+	static String decapitalize(final String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1))
+			&& Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	private void error(final Element element, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+			message, element);
+	}
+
+	private static class Property {
+		private final String name;
+		// Setter or accessor
+		private final String accessor;
+		private final String type;
+
+		Property(final String name, final String accessor, final String type) {
+			this.name = name;
+			this.accessor = accessor;
+			this.type = type;
+		}
+	}
+}
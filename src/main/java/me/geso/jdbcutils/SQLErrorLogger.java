@@ -0,0 +1,136 @@
+package me.geso.jdbcutils;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs {@link RichSQLException}s at the ERROR level, with the logger of
+ * RichSQLException.
+ *
+ * Errors are rate limited by the SQL shape and the SQLState. An error is logged
+ * at most once per interval, and the number of suppressed errors is logged
+ * with the next one. e.g. a burst of lock wait timeouts on the same
+ * statement is logged once.
+ *
+ * <pre>
+ * <code>SQLErrorLogger.setInterval(1, TimeUnit.MINUTES);
+ * SQLErrorLogger.setEnabled(false); // Log errors by yourself.</code>
+ * </pre>
+ */
+public final class SQLErrorLogger {
+	/**
+	 * Default interval of logging errors of the same kind, in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+	// The states are cleared when the number exceeds this.
+	private static final int MAX_KEYS = 1000;
+
+	private static final Logger LOGGER = LoggerFactory
+		.getLogger(RichSQLException.class);
+
+	private static volatile boolean enabled = true;
+	private static volatile long intervalNanos = TimeUnit.MILLISECONDS
+		.toNanos(DEFAULT_INTERVAL_MILLIS);
+	private static final ConcurrentMap<String, State> states = new ConcurrentHashMap<>();
+
+	private SQLErrorLogger() {
+	}
+
+	/**
+	 * Enable or disable logging. It's enabled by default.
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(final boolean enabled) {
+		SQLErrorLogger.enabled = enabled;
+	}
+
+	/**
+	 * Set the interval of logging errors of the same SQL shape and SQLState.
+	 * Zero logs all errors.
+	 *
+	 * @param interval
+	 * @param unit
+	 */
+	public static void setInterval(final long interval, final TimeUnit unit) {
+		SQLErrorLogger.intervalNanos = unit.toNanos(interval);
+		states.clear();
+	}
+
+	static void log(final SQLException ex, final Query query) {
+		SQLErrorLogger.log(ex, query, System.nanoTime());
+	}
+
+	/**
+	 * @return Number of errors suppressed since the last log, or -1 if the
+	 *         error is not logged.
+	 */
+	static long log(final SQLException ex, final Query query,
+			final long now) {
+		if (!enabled || !LOGGER.isErrorEnabled()) {
+			return -1;
+		}
+		long suppressed = 0;
+		final long interval = intervalNanos;
+		if (interval > 0) {
+			suppressed = SQLErrorLogger.state(query.getFingerprint(),
+				ex.getSQLState(), now).acquire(now, interval);
+			if (suppressed < 0) {
+				return -1;
+			}
+		}
+		final String sql = RichSQLException.renderSql(query.getSQL());
+		final String params = RichSQLException.renderParams(query
+			.getParameters());
+		if (suppressed > 0) {
+			LOGGER.error("SQLException: {} {} {} ({} similar errors suppressed)",
+				ex.getMessage(), sql, params, suppressed);
+		} else {
+			LOGGER.error("SQLException: {} {} {}", ex.getMessage(), sql,
+				params);
+		}
+		return suppressed;
+	}
+
+	private static State state(final String fingerprint,
+			final String sqlState, final long now) {
+		final String key = sqlState + ":" + fingerprint;
+		final State state = states.get(key);
+		if (state != null) {
+			return state;
+		}
+		if (states.size() >= MAX_KEYS) {
+			states.clear();
+		}
+		return states.computeIfAbsent(key, k -> new State(now));
+	}
+
+	private static class State {
+		private final AtomicLong next;
+		private final AtomicLong suppressed = new AtomicLong();
+
+		State(final long now) {
+			this.next = new AtomicLong(now);
+		}
+
+		/**
+		 * @return Number of errors suppressed since the last log, or -1 if
+		 *         this error should be suppressed.
+		 */
+		long acquire(final long now, final long interval) {
+			final long next = this.next.get();
+			if (now - next >= 0 && this.next.compareAndSet(next, now + interval)) {
+				return suppressed.getAndSet(0);
+			}
+			suppressed.incrementAndGet();
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,417 @@
+package me.geso.jdbcutils;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a query on all shards in parallel, and merges the results.
+ *
+ * <pre>
+ * <code>ScatterGather shards = new ScatterGather(Arrays.asList(shard1::getConnection, shard2::getConnection))
+ *     .timeout(3, TimeUnit.SECONDS);
+ *
+ * // All rows, shard by shard
+ * List&lt;Entry&gt; entries = shards.concat(query, Entry::fromRow);
+ *
+ * // SELECT ... ORDER BY created_at DESC LIMIT 20 on all shards
+ * List&lt;Entry&gt; latest = shards.top(query, Entry::fromRow,
+ *     Comparator.comparing(Entry::getCreatedAt).reversed(), 20);</code>
+ * </pre>
+ *
+ * The callback is called for every row, and must not return null. Each
+ * shard takes a connection from its supplier, runs the query by
+ * {@link AsyncJDBCUtils}, and closes the connection. {@link #concat(Query,
+ * ResultSetCallback)} runs the shards on the executor. Merges run each
+ * shard on its own thread, since a shard waits for the consumer while its
+ * buffer is full, and shards waiting in the executor queue would never
+ * start.
+ * Failures are thrown as {@link RichSQLException}, or
+ * {@link UncheckedRichSQLException} from streams, and cancel the other
+ * shards.
+ */
+public class ScatterGather {
+	/**
+	 * Default number of rows buffered per shard by
+	 * {@link #merge(Query, ResultSetCallback, Comparator)}.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 256;
+
+	// End of the rows of a shard.
+	private static final Object END = new Object();
+
+	// Runs each shard of a merge on a new thread.
+	private static final Executor MERGE_EXECUTOR = runnable -> {
+		final Thread thread = new Thread(runnable, "jdbcutils-merge");
+		thread.setDaemon(true);
+		thread.start();
+	};
+
+	private final List<ConnectionSupplier> shards;
+	private final Executor executor;
+	private long timeoutNanos;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * Create new instance, that uses
+	 * {@link AsyncJDBCUtils#getDefaultExecutor()}.
+	 *
+	 * @param shards
+	 *            Connection suppliers of the shards
+	 */
+	public ScatterGather(final Collection<? extends ConnectionSupplier> shards) {
+		this(shards, AsyncJDBCUtils.getDefaultExecutor());
+	}
+
+	/**
+	 * Create new instance.
+	 *
+	 * @param shards
+	 *            Connection suppliers of the shards
+	 * @param executor
+	 *            Runs the queries of {@link #concat(Query, ResultSetCallback)}
+	 */
+	public ScatterGather(final Collection<? extends ConnectionSupplier> shards,
+			final Executor executor) {
+		this.shards = new ArrayList<>(shards);
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the timeout of each shard. Zero means no timeout, and it's the
+	 * default.
+	 *
+	 * For {@link #concat(Query, ResultSetCallback)}, it's the time for each
+	 * shard to return all rows. For streaming merges, it's the time to wait
+	 * for each row of a shard, so a slow consumer doesn't time out.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return this
+	 */
+	public ScatterGather timeout(final long timeout, final TimeUnit unit) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative: "
+				+ timeout);
+		}
+		this.timeoutNanos = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * Set the number of rows buffered per shard while merging. A shard
+	 * stops reading rows while its buffer is full.
+	 *
+	 * @param bufferSize
+	 * @return this
+	 */
+	public ScatterGather bufferSize(final int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive: "
+				+ bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * Run the query on all shards, and concatenate the rows in the order of
+	 * the shards.
+	 *
+	 * @param query
+	 * @param callback
+	 *            Called for every row
+	 * @return Rows of all shards
+	 * @throws RichSQLException
+	 */
+	public <R> List<R> concat(final Query query,
+			final ResultSetCallback<R> callback) throws RichSQLException {
+		final long start = System.nanoTime();
+		final List<CompletableFuture<List<R>>> futures = new ArrayList<>(
+			shards.size());
+		for (final ConnectionSupplier shard : shards) {
+			futures.add(AsyncJDBCUtils.executeQueryAsync(shard, query, rs -> {
+				final List<R> rows = new ArrayList<>();
+				while (rs.next()) {
+					rows.add(Objects.requireNonNull(callback.call(rs),
+						"callback returned null"));
+				}
+				return rows;
+			}, executor));
+		}
+
+		final List<R> rows = new ArrayList<>();
+		int i = 0;
+		try {
+			for (; i < futures.size(); ++i) {
+				final CompletableFuture<List<R>> future = futures.get(i);
+				if (timeoutNanos > 0) {
+					final long remaining = timeoutNanos
+						- (System.nanoTime() - start);
+					rows.addAll(future.get(Math.max(remaining, 0),
+						TimeUnit.NANOSECONDS));
+				} else {
+					rows.addAll(future.get());
+				}
+			}
+			return rows;
+		} catch (final TimeoutException e) {
+			throw new RichSQLException(this.timedOut(i), query);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RichSQLException(new SQLException("Interrupted", e),
+				query);
+		} catch (final ExecutionException e) {
+			throw (RichSQLException)ScatterGather.unwrap(e.getCause(), query)
+				.getCause();
+		} finally {
+			for (final CompletableFuture<List<R>> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Run the query on all shards, and merge the sorted rows into a sorted
+	 * stream. The rows of each shard must be sorted by the comparator, e.g.
+	 * by ORDER BY. Rows are read while the stream is consumed, and each
+	 * shard buffers up to {@link #bufferSize(int)} rows.
+	 * <B>You must call .close() after using.</B> Closing the stream cancels
+	 * the queries.
+	 *
+	 * @param query
+	 * @param callback
+	 *            Called for every row
+	 * @param comparator
+	 *            Order of the rows
+	 * @return Stream of sorted rows. Equal rows are in the order of the
+	 *         shards.
+	 */
+	public <R> Stream<R> merge(final Query query,
+			final ResultSetCallback<R> callback,
+			final Comparator<? super R> comparator) {
+		final Merger<R> merger = new Merger<>(query, comparator);
+		merger.start(callback);
+		final Spliterator<R> spliterator = Spliterators.spliteratorUnknownSize(
+			merger, Spliterator.NONNULL | Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(merger::close);
+	}
+
+	/**
+	 * Run the query on all shards, and get the first {@code limit} rows in
+	 * the order of the comparator. It stops reading the shards when it has
+	 * enough rows, so the query should sort rows by the same order, and
+	 * should have {@code LIMIT} of the same number.
+	 *
+	 * @param query
+	 * @param callback
+	 *            Called for every row
+	 * @param comparator
+	 *            Order of the rows
+	 * @param limit
+	 *            Maximum number of rows
+	 * @return Sorted rows
+	 * @throws RichSQLException
+	 */
+	public <R> List<R> top(final Query query,
+			final ResultSetCallback<R> callback,
+			final Comparator<? super R> comparator, final int limit)
+			throws RichSQLException {
+		try (final Stream<R> stream = this.merge(query, callback, comparator)) {
+			return stream.limit(limit).collect(Collectors.toList());
+		} catch (final UncheckedRichSQLException e) {
+			throw (RichSQLException)e.getCause();
+		}
+	}
+
+	private SQLTimeoutException timedOut(final int shard) {
+		return new SQLTimeoutException("Shard " + shard + " timed out after "
+			+ TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+	}
+
+	private static UncheckedRichSQLException unwrap(final Throwable e,
+			final Query query) {
+		Throwable cause = e;
+		if (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		if (cause instanceof UncheckedRichSQLException) {
+			return (UncheckedRichSQLException)cause;
+		} else if (cause instanceof CancellationException) {
+			return new UncheckedRichSQLException(new SQLException(
+				"Query was cancelled", cause), query);
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException)cause;
+		} else {
+			throw (Error)cause;
+		}
+	}
+
+	// K-way merge of the shards.
+	private class Merger<R> implements Iterator<R> {
+		private final Query query;
+		private final List<Shard> running = new ArrayList<>(shards.size());
+		private final PriorityQueue<Head> heads;
+		private volatile boolean closed;
+		private boolean started;
+
+		Merger(final Query query, final Comparator<? super R> comparator) {
+			this.query = query;
+			final Comparator<Head> byRow = (a, b) -> comparator.compare(
+				a.row, b.row);
+			this.heads = new PriorityQueue<>(Math.max(1, shards.size()),
+				byRow.thenComparingInt(head -> head.shard.index));
+		}
+
+		void start(final ResultSetCallback<R> callback) {
+			for (int i = 0; i < shards.size(); ++i) {
+				final Shard shard = new Shard(i);
+				running.add(shard);
+				shard.future = AsyncJDBCUtils.<Void> executeQueryAsync(
+					shards.get(i),
+					query, rs -> {
+						while (!closed && rs.next()) {
+							final R row = Objects.requireNonNull(
+								callback.call(rs), "callback returned null");
+							if (!shard.offer(row)) {
+								break;
+							}
+						}
+						return null;
+					}, MERGE_EXECUTOR);
+				shard.future.whenComplete((value, e) -> shard.rows
+					.add(e == null ? END : new Failure(e)));
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!started) {
+				started = true;
+				for (final Shard shard : running) {
+					this.pull(shard);
+				}
+			}
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public R next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Head head = heads.poll();
+			this.pull(head.shard);
+			return head.row;
+		}
+
+		// Wait for the next row of the shard.
+		private void pull(final Shard shard) {
+			final Object item;
+			try {
+				item = timeoutNanos > 0 ? shard.rows.poll(timeoutNanos,
+					TimeUnit.NANOSECONDS) : shard.rows.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.close();
+				throw new UncheckedRichSQLException(new SQLException(
+					"Interrupted", e), query);
+			}
+			if (item == null) {
+				this.close();
+				throw new UncheckedRichSQLException(ScatterGather.this
+					.timedOut(shard.index), query);
+			} else if (item instanceof Failure) {
+				this.close();
+				throw ScatterGather.unwrap(((Failure)item).exception, query);
+			} else if (item != END) {
+				shard.permits.release();
+				@SuppressWarnings("unchecked")
+				final R row = (R)item;
+				heads.add(new Head(row, shard));
+			}
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (final Shard shard : running) {
+				// Wake up the reader waiting for the buffer.
+				shard.permits.release();
+				if (shard.future != null) {
+					shard.future.cancel(true);
+				}
+			}
+			heads.clear();
+		}
+
+		private class Shard {
+			private final int index;
+			private final BlockingQueue<Object> rows = new LinkedBlockingQueue<>();
+			// Free space of the buffer. Terminators don't take a permit.
+			private final Semaphore permits = new Semaphore(bufferSize);
+			private CompletableFuture<Void> future;
+
+			Shard(final int index) {
+				this.index = index;
+			}
+
+			// Returns false if the merger is closed.
+			boolean offer(final Object row) {
+				try {
+					permits.acquire();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+				if (closed) {
+					return false;
+				}
+				rows.add(row);
+				return true;
+			}
+		}
+
+		private class Head {
+			private final R row;
+			private final Shard shard;
+
+			Head(final R row, final Shard shard) {
+				this.row = row;
+				this.shard = shard;
+			}
+		}
+	}
+
+	private static class Failure {
+		private final Throwable exception;
+
+		Failure(final Throwable exception) {
+			this.exception = exception;
+		}
+	}
+}
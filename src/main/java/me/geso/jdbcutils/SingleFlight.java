@@ -0,0 +1,189 @@
+package me.geso.jdbcutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicates identical queries executed at the same time.
+ *
+ * <pre>
+ * <code>private static final SingleFlight flight = new SingleFlight();
+ * ...
+ * List&lt;Map&lt;String, Object&gt;&gt; rows = flight.executeQueryMapList(connection, query);</code>
+ * </pre>
+ *
+ * The first caller of a query executes it on its connection. Callers of an
+ * equal query, while the first is running, don't execute the query, but
+ * wait for the result of the first. Nothing is cached after the query
+ * finishes. Use {@link QueryResultCache} for that.
+ *
+ * Queries are keyed by the query only, not by the connection. Use one
+ * instance for each database, e.g. for each shard, so that callers on
+ * different databases don't share results. Don't use it on a connection
+ * in a transaction that has written data, since other callers would see
+ * the uncommitted data, and the caller would miss it if another caller
+ * leads.
+ *
+ * The result is shared by all callers, so it must not be modified. Rows of
+ * {@link #executeQueryMapList(Connection, Query)} are unmodifiable.
+ */
+public class SingleFlight {
+	// Reader of executeQueryMapList results, for keys.
+	private static final Object MAP_LIST = new Object();
+
+	private final ConcurrentMap<QueryKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+	private final LongAdder executedCount = new LongAdder();
+	private final LongAdder sharedCount = new LongAdder();
+
+	/**
+	 * Execute query with callback, or wait for the same query in flight.
+	 *
+	 * Queries are keyed by the query and the callback, so the callback
+	 * should be a constant, e.g. a static field or a lambda that captures
+	 * nothing.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param callback
+	 * @return Generated value from the callback
+	 * @throws RichSQLException
+	 */
+	public <R> R executeQuery(final Connection connection, final Query query,
+			final ResultSetCallback<R> callback) throws RichSQLException {
+		return this.executeQuery(connection, query, callback, 0,
+			TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Execute query with callback, or wait for the same query in flight.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param callback
+	 * @param timeout Maximum time to wait for the query in flight. Zero means
+	 *            no limit. It doesn't limit the query executed by this call.
+	 * @param unit
+	 * @return Generated value from the callback
+	 * @throws RichSQLException
+	 *             with {@link SQLTimeoutException} if the timeout elapsed.
+	 */
+	public <R> R executeQuery(final Connection connection, final Query query,
+			final ResultSetCallback<R> callback, final long timeout,
+			final TimeUnit unit) throws RichSQLException {
+		return this.execute(new QueryKey(query, callback), unit.toNanos(timeout),
+			() -> JDBCUtils.executeQuery(connection, query, callback));
+	}
+
+	/**
+	 * Execute query, or wait for the same query in flight.
+	 *
+	 * @param connection
+	 * @param query
+	 * @return Selected rows in unmodifiable list of unmodifiable maps.
+	 * @throws RichSQLException
+	 */
+	public List<Map<String, Object>> executeQueryMapList(
+			final Connection connection, final Query query)
+			throws RichSQLException {
+		return this.executeQueryMapList(connection, query, 0,
+			TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Execute query, or wait for the same query in flight.
+	 *
+	 * @param connection
+	 * @param query
+	 * @param timeout Maximum time to wait for the query in flight. Zero means
+	 *            no limit. It doesn't limit the query executed by this call.
+	 * @param unit
+	 * @return Selected rows in unmodifiable list of unmodifiable maps.
+	 * @throws RichSQLException
+	 *             with {@link SQLTimeoutException} if the timeout elapsed.
+	 */
+	public List<Map<String, Object>> executeQueryMapList(
+			final Connection connection, final Query query,
+			final long timeout, final TimeUnit unit) throws RichSQLException {
+		return this.execute(new QueryKey(query, MAP_LIST), unit.toNanos(timeout),
+			() -> RowMap.freezeAll(JDBCUtils.executeQueryMapList(connection,
+				query)));
+	}
+
+	/**
+	 * Get the number of queries executed.
+	 */
+	public long getExecutedCount() {
+		return executedCount.sum();
+	}
+
+	/**
+	 * Get the number of calls that shared the result of a query in flight.
+	 */
+	public long getSharedCount() {
+		return sharedCount.sum();
+	}
+
+	<R> R execute(final QueryKey key, final long timeoutNanos,
+			final Loader<R> loader) throws RichSQLException {
+		final CompletableFuture<Object> flight = new CompletableFuture<>();
+		final CompletableFuture<Object> leader = flights.putIfAbsent(key,
+			flight);
+		if (leader == null) {
+			executedCount.increment();
+			try {
+				final R value = loader.load();
+				flight.complete(value);
+				return value;
+			} catch (final RichSQLException | RuntimeException | Error e) {
+				flight.completeExceptionally(e);
+				throw e;
+			} finally {
+				flights.remove(key, flight);
+			}
+		}
+
+		sharedCount.increment();
+		final Query query = key.getQuery();
+		try {
+			@SuppressWarnings("unchecked")
+			final R value = (R)(timeoutNanos > 0 ? leader.get(timeoutNanos,
+				TimeUnit.NANOSECONDS) : leader.get());
+			return value;
+		} catch (final TimeoutException e) {
+			throw new RichSQLException(new SQLTimeoutException(
+				"Timed out waiting for the same query in flight", e),
+				query);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RichSQLException(new SQLException(
+				"Interrupted while waiting for the same query in flight", e),
+				query);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RichSQLException) {
+				// Rethrow with the stack trace of this thread.
+				throw new RichSQLException((SQLException)cause.getCause(),
+					query);
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw (Error)cause;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	interface Loader<R> {
+		R load() throws RichSQLException;
+	}
+}
@@ -0,0 +1,88 @@
+package me.geso.jdbcutils;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough size estimation for SQL parameters and column values.
+ */
+class Sizes {
+	private Sizes() {
+	}
+
+	/**
+	 * Estimate the number of bytes for the value, when it's sent as a SQL
+	 * literal.
+	 *
+	 * @param value
+	 * @return Estimated size in bytes.
+	 */
+	static long estimate(final Object value) {
+		if (value == null) {
+			return 4; // NULL
+		} else if (value instanceof CharSequence) {
+			return utf8Length((CharSequence)value) + 2; // with quotes
+		} else if (value instanceof byte[]) {
+			// Binary values may be escaped.
+			return ((byte[])value).length * 2L + 3;
+		} else if (value instanceof Number || value instanceof Boolean) {
+			return 20;
+		} else {
+			return utf8Length(value.toString()) + 2;
+		}
+	}
+
+	/**
+	 * Estimate the number of bytes of the value in memory, including the
+	 * elements of collections, maps and arrays.
+	 *
+	 * @param value
+	 * @return Estimated size in bytes.
+	 */
+	static long estimateDeep(final Object value) {
+		if (value instanceof Map) {
+			// Keys are not counted. Rows share the column labels.
+			long size = 16;
+			for (final Object v : ((Map<?, ?>)value).values()) {
+				size += 8 + Sizes.estimateDeep(v);
+			}
+			return size;
+		} else if (value instanceof Collection) {
+			long size = 16;
+			for (final Object v : (Collection<?>)value) {
+				size += 8 + Sizes.estimateDeep(v);
+			}
+			return size;
+		} else if (value instanceof Object[]) {
+			long size = 16;
+			for (final Object v : (Object[])value) {
+				size += 8 + Sizes.estimateDeep(v);
+			}
+			return size;
+		} else if (value instanceof byte[]) {
+			return 16 + ((byte[])value).length;
+		} else if (value instanceof CharSequence) {
+			return 24 + ((CharSequence)value).length() * 2L;
+		} else {
+			return 16 + Sizes.estimate(value);
+		}
+	}
+
+	static long utf8Length(final CharSequence s) {
+		long length = 0;
+		for (int i = 0, len = s.length(); i < len; ++i) {
+			final char c = s.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				length += 4;
+				++i;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,140 @@
+package me.geso.jdbcutils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SQL into its shape. e.g.
+ * {@code SELECT * FROM member WHERE id IN (1, 2, 3) AND name='foo'} becomes
+ * {@code SELECT * FROM member WHERE id IN (...) AND name=?}.
+ *
+ * Literals are replaced by {@code ?}, comments are removed, whitespace is
+ * collapsed, and lists of placeholders are collapsed into {@code (...)}.
+ */
+final class SqlFingerprint {
+	// Fingerprints of recently seen SQL. Cleared when it's full.
+	private static final int MAX_CACHE_SIZE = 4096;
+	private static final ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
+
+	private static final Pattern PLACEHOLDER_LIST = Pattern
+		.compile("\\( ?\\?(?: ?, ?\\?)* ?\\)");
+	private static final Pattern REPEATED_LIST = Pattern
+		.compile("\\(\\.\\.\\.\\)(?: ?, ?\\(\\.\\.\\.\\))+");
+
+	private SqlFingerprint() {
+	}
+
+	static String of(final String sql) {
+		String fingerprint = cache.get(sql);
+		if (fingerprint == null) {
+			fingerprint = SqlFingerprint.normalize(sql);
+			if (cache.size() >= MAX_CACHE_SIZE) {
+				cache.clear();
+			}
+			cache.put(sql, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	static String normalize(final String sql) {
+		final int length = sql.length();
+		final StringBuilder builder = new StringBuilder(length);
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				while (i < length && Character.isWhitespace(sql.charAt(i))) {
+					++i;
+				}
+				SqlFingerprint.space(builder);
+			} else if (c == '\'') {
+				i = SqlFingerprint.skipString(sql, i);
+				builder.append('?');
+			} else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				while (i < length && sql.charAt(i) != '\n') {
+					++i;
+				}
+				SqlFingerprint.space(builder);
+			} else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				final int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+				SqlFingerprint.space(builder);
+			} else if (c == '`' || c == '"') {
+				// Quoted identifier
+				final int end = sql.indexOf(c, i + 1);
+				final int next = end < 0 ? length : end + 1;
+				builder.append(sql, i, next);
+				i = next;
+			} else if (Character.isDigit(c)
+				&& !SqlFingerprint.isIdentifierPart(builder)) {
+				i = SqlFingerprint.skipNumber(sql, i);
+				builder.append('?');
+			} else {
+				builder.append(c);
+				++i;
+			}
+		}
+		final int last = builder.length() - 1;
+		if (last >= 0 && builder.charAt(last) == ' ') {
+			builder.setLength(last);
+		}
+		String result = builder.toString();
+		if (result.indexOf('(') >= 0) {
+			result = PLACEHOLDER_LIST.matcher(result).replaceAll("(...)");
+			result = REPEATED_LIST.matcher(result).replaceAll("(...)");
+		}
+		return result;
+	}
+
+	private static void space(final StringBuilder builder) {
+		final int length = builder.length();
+		if (length > 0 && builder.charAt(length - 1) != ' ') {
+			builder.append(' ');
+		}
+	}
+
+	private static boolean isIdentifierPart(final StringBuilder builder) {
+		if (builder.length() == 0) {
+			return false;
+		}
+		final char c = builder.charAt(builder.length() - 1);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	private static int skipString(final String sql, final int start) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			final char c = sql.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == '\'') {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				++i;
+			}
+		}
+		return sql.length();
+	}
+
+	private static int skipNumber(final String sql, final int start) {
+		int i = start;
+		while (i < sql.length()) {
+			final char c = sql.charAt(i);
+			if (Character.isLetterOrDigit(c) || c == '.') {
+				// Digits, decimals, exponents and hex literals.
+				++i;
+			} else if ((c == '+' || c == '-')
+				&& (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+				++i;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+}
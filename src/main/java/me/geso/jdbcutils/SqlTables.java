@@ -0,0 +1,250 @@
+package me.geso.jdbcutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables read or written by SQL, e.g. for cache invalidation.
+ *
+ * It's a rough scanner, not a parser. It may report more tables than the
+ * statement actually uses, e.g. tables in subqueries. Table names are
+ * lower cased, without quotes and schema names.
+ */
+final class SqlTables {
+	// Words that can follow a table name, so they are not aliases.
+	private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+		"where", "set", "on", "using", "join", "inner", "left", "right",
+		"outer", "cross", "natural", "straight_join", "group", "order",
+		"having", "limit", "union", "for", "lock", "values", "value",
+		"select", "partition", "force", "use", "ignore", "window", "into",
+		"procedure", "offset", "fetch", "returning", "as"));
+	// Modifiers between INSERT, UPDATE, DELETE and the table name.
+	private static final Set<String> MODIFIERS = new HashSet<>(Arrays.asList(
+		"low_priority", "delayed", "high_priority", "ignore", "quick",
+		"into", "table", "only"));
+	// Statements that write no table. Other statements that are not
+	// known writes may write any table, e.g. DDL and MERGE.
+	private static final Set<String> READ_ONLY = new HashSet<>(Arrays.asList(
+		"select", "show", "set", "begin", "start", "commit", "rollback"));
+	// Statements in WITH that write tables.
+	private static final Set<String> WRITES = new HashSet<>(Arrays.asList(
+		"insert", "replace", "update", "delete", "merge", "truncate"));
+
+	private SqlTables() {
+	}
+
+	/**
+	 * Get the tables read by the query.
+	 *
+	 * @param query
+	 * @return Table names
+	 */
+	static Set<String> read(final Query query) {
+		return SqlTables.read(SqlTables.tokenize(query.getFingerprint()));
+	}
+
+	/**
+	 * Get the tables written by the statement.
+	 *
+	 * @param query
+	 * @return Table names, or null if the statement may write any table,
+	 *         e.g. DDL, MERGE and unknown statements.
+	 */
+	static Set<String> written(final Query query) {
+		final String shape = query.getFingerprint();
+		if (READ_ONLY.contains(SqlTables.verb(shape))) {
+			// Most statements are SELECT. Skip tokenizing them.
+			return Collections.emptySet();
+		}
+		final List<String> tokens = SqlTables.tokenize(shape);
+		if (tokens.isEmpty()) {
+			return Collections.emptySet();
+		}
+		final String verb = tokens.get(0).toLowerCase(Locale.ROOT);
+		final Set<String> tables = new LinkedHashSet<>();
+		switch (verb) {
+		case "insert":
+		case "replace":
+		case "truncate": {
+			// The target only. Tables of INSERT ... SELECT are read.
+			final String target = SqlTables.tableAfter(tokens, 1);
+			if (target != null) {
+				tables.add(target);
+			}
+			break;
+		}
+		case "update": {
+			int start = 1;
+			while (start < tokens.size()
+				&& MODIFIERS.contains(tokens.get(start).toLowerCase(Locale.ROOT))) {
+				++start;
+			}
+			// UPDATE a, b SET ..., and UPDATE a JOIN b ON ... SET ...
+			SqlTables.tableList(tokens, start, tables);
+			tables.addAll(SqlTables.read(tokens));
+			break;
+		}
+		case "delete":
+			tables.addAll(SqlTables.read(tokens));
+			break;
+		case "with":
+			// WITH ... SELECT reads only. WITH ... UPDATE may write any
+			// table of the CTEs.
+			for (final String token : tokens) {
+				if (WRITES.contains(token.toLowerCase(Locale.ROOT))) {
+					return null;
+				}
+			}
+			break;
+		default:
+			return null;
+		}
+		return tables;
+	}
+
+	// The first word of the fingerprint, lower cased.
+	private static String verb(final String shape) {
+		int start = 0;
+		while (start < shape.length()
+			&& (shape.charAt(start) == ' ' || shape.charAt(start) == '(')) {
+			++start;
+		}
+		int end = start;
+		while (end < shape.length()
+			&& Character.isLetter(shape.charAt(end))) {
+			++end;
+		}
+		return shape.substring(start, end).toLowerCase(Locale.ROOT);
+	}
+
+	private static Set<String> read(final List<String> tokens) {
+		final Set<String> tables = new LinkedHashSet<>();
+		for (int i = 0; i < tokens.size(); ++i) {
+			final String token = tokens.get(i);
+			if (token.equalsIgnoreCase("from") || token.equalsIgnoreCase("join")) {
+				SqlTables.tableList(tokens, i + 1, tables);
+			}
+		}
+		return tables;
+	}
+
+	// Read a list of tables with aliases, e.g. "a AS x, b y".
+	private static void tableList(final List<String> tokens, final int start,
+			final Set<String> tables) {
+		int j = start;
+		while (j < tokens.size() && SqlTables.isIdentifier(tokens.get(j))
+			&& !KEYWORDS.contains(tokens.get(j).toLowerCase(Locale.ROOT))
+			&& !MODIFIERS.contains(tokens.get(j).toLowerCase(Locale.ROOT))) {
+			tables.add(SqlTables.normalize(tokens.get(j)));
+			++j;
+			// Alias
+			if (j < tokens.size() && tokens.get(j).equalsIgnoreCase("as")) {
+				j += 2;
+			} else if (j < tokens.size()
+				&& SqlTables.isIdentifier(tokens.get(j))
+				&& !KEYWORDS.contains(tokens.get(j).toLowerCase(
+					Locale.ROOT))) {
+				++j;
+			}
+			// FROM a, b
+			if (j < tokens.size() && tokens.get(j).equals(",")) {
+				++j;
+			} else {
+				break;
+			}
+		}
+	}
+
+	private static String tableAfter(final List<String> tokens, final int start) {
+		for (int i = start; i < tokens.size(); ++i) {
+			final String token = tokens.get(i);
+			if (!SqlTables.isIdentifier(token)) {
+				return null;
+			}
+			if (!MODIFIERS.contains(token.toLowerCase(Locale.ROOT))) {
+				return SqlTables.normalize(token);
+			}
+		}
+		return null;
+	}
+
+	// Identifiers, including quoted and qualified ones, and other
+	// characters. Literals and comments are already removed from the
+	// fingerprint.
+	static List<String> tokenize(final String shape) {
+		final List<String> tokens = new ArrayList<>();
+		final int length = shape.length();
+		int i = 0;
+		while (i < length) {
+			final char c = shape.charAt(i);
+			if (c == ' ') {
+				++i;
+			} else if (SqlTables.isIdentifierChar(c) || c == '`' || c == '"') {
+				final int start = i;
+				while (i < length) {
+					final char d = shape.charAt(i);
+					if (d == '`' || d == '"') {
+						final int end = shape.indexOf(d, i + 1);
+						i = end < 0 ? length : end + 1;
+					} else if (SqlTables.isIdentifierChar(d) || d == '.') {
+						++i;
+					} else {
+						break;
+					}
+				}
+				tokens.add(shape.substring(start, i));
+			} else {
+				tokens.add(String.valueOf(c));
+				++i;
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isIdentifier(final String token) {
+		final char c = token.charAt(0);
+		return SqlTables.isIdentifierChar(c) || c == '`' || c == '"';
+	}
+
+	private static boolean isIdentifierChar(final char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	static String normalize(final String identifier) {
+		// Drop the schema name
+		String name = identifier;
+		final int dot = SqlTables.lastDot(name);
+		if (dot >= 0) {
+			name = name.substring(dot + 1);
+		}
+		if (name.length() >= 2
+			&& (name.charAt(0) == '`' || name.charAt(0) == '"')) {
+			name = name.substring(1, name.length() - 1);
+		}
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	private static int lastDot(final String identifier) {
+		char quote = 0;
+		int dot = -1;
+		for (int i = 0; i < identifier.length(); ++i) {
+			final char c = identifier.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '`' || c == '"') {
+				quote = c;
+			} else if (c == '.') {
+				dot = i;
+			}
+		}
+		return dot;
+	}
+}
@@ -0,0 +1,87 @@
+package me.geso.jdbcutils;
+
+/**
+ * Options for {@code JDBCUtils#executeQueryStream}.
+ *
+ * <pre>
+ * <code>try (Stream&lt;Long&gt; stream = JDBCUtils.executeQueryStream(connection, query,
+ *         StreamOptions.mysqlStreaming(), rs -&gt; rs.getLong(1))) {
+ *     ...
+ * }</code>
+ * </pre>
+ */
+public class StreamOptions {
+	/**
+	 * Fetch size that makes MySQL Connector/J read rows one by one, instead of
+	 * reading the whole result into memory.
+	 */
+	public static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+	/**
+	 * Use the driver's default statement and fetch size.
+	 */
+	public static final StreamOptions DEFAULT = new StreamOptions(0, 0);
+
+	private final int fetchSize;
+	private final long memoryBudget;
+
+	private StreamOptions(final int fetchSize, final long memoryBudget) {
+		this.fetchSize = fetchSize;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Use forward-only, read-only statement with the fetch size.
+	 *
+	 * @param fetchSize
+	 * @return Options
+	 */
+	public static StreamOptions fetchSize(final int fetchSize) {
+		if (fetchSize <= 0 && fetchSize != MYSQL_STREAMING_FETCH_SIZE) {
+			throw new IllegalArgumentException("Invalid fetch size: "
+				+ fetchSize);
+		}
+		return new StreamOptions(fetchSize, 0);
+	}
+
+	/**
+	 * Use MySQL Connector/J's row-by-row streaming mode.
+	 * You can't issue other queries on the connection until the stream is
+	 * closed.
+	 *
+	 * @return Options
+	 */
+	public static StreamOptions mysqlStreaming() {
+		return new StreamOptions(MYSQL_STREAMING_FETCH_SIZE, 0);
+	}
+
+	/**
+	 * Choose the fetch size from the observed row width, so each fetch takes
+	 * about {@code memoryBudget} bytes.
+	 * MySQL Connector/J honors the fetch size only with
+	 * {@code useCursorFetch=true}.
+	 *
+	 * @param memoryBudget bytes per fetch
+	 * @return Options
+	 */
+	public static StreamOptions memoryBudget(final long memoryBudget) {
+		if (memoryBudget <= 0) {
+			throw new IllegalArgumentException("Invalid memory budget: "
+				+ memoryBudget);
+		}
+		return new StreamOptions(FetchSizeTuner.INITIAL_FETCH_SIZE,
+			memoryBudget);
+	}
+
+	int getFetchSize() {
+		return fetchSize;
+	}
+
+	long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	boolean isDefault() {
+		return fetchSize == 0 && memoryBudget == 0;
+	}
+}
@@ -3,9 +3,6 @@ package me.geso.jdbcutils;
 import java.sql.SQLException;
 import java.util.List;
 
-import lombok.extern.slf4j.Slf4j;
-
-@Slf4j
 public class UncheckedRichSQLException extends RuntimeException {
 	private final RichSQLException exception;
 
@@ -13,8 +10,13 @@ public class UncheckedRichSQLException extends RuntimeException {
 		this(new RichSQLException(ex, sql, params));
 	}
 
+	public UncheckedRichSQLException(SQLException ex, Query query) {
+		this(new RichSQLException(ex, query));
+	}
+
 	public UncheckedRichSQLException(RichSQLException e) {
-		super(e.getMessage(), e);
+		// The message is built lazily by the cause.
+		super(null, e);
 		this.exception = e;
 	}
 
@@ -22,6 +24,11 @@ public class UncheckedRichSQLException extends RuntimeException {
 		this(new RichSQLException(e));
 	}
 
+	@Override
+	public String getMessage() {
+		return this.exception.getMessage();
+	}
+
 	public String getSql() {
 		return this.exception.getSql();
 	}
@@ -0,0 +1,150 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncJDBCUtilsTest {
+
+	@Test
+	public void testConnectionFailure() {
+		CompletableFuture<Integer> future = AsyncJDBCUtils.executeUpdateAsync(
+			() -> {
+				throw new SQLException("no connection");
+			},
+			new Query("DELETE FROM x WHERE id=?", Collections.singletonList(1)));
+		try {
+			future.join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof UncheckedRichSQLException);
+			UncheckedRichSQLException cause = (UncheckedRichSQLException)e.getCause();
+			assertEquals("DELETE FROM x WHERE id=?", cause.getSql());
+			assertEquals(Collections.singletonList(1), cause.getParams());
+		}
+	}
+
+	@Test
+	public void testRejected() {
+		CompletableFuture<Integer> future = AsyncJDBCUtils.executeUpdateAsync(
+			() -> {
+				throw new SQLException("not called");
+			},
+			new Query("DELETE FROM x", Collections.emptyList()),
+			task -> {
+				throw new RejectedExecutionException("full");
+			});
+		try {
+			future.join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void testCancelBeforeStart() {
+		List<Runnable> tasks = new ArrayList<>();
+		CompletableFuture<Integer> future = AsyncJDBCUtils.executeUpdateAsync(
+			() -> {
+				throw new AssertionError("must not connect");
+			},
+			new Query("DELETE FROM x", Collections.emptyList()),
+			tasks::add);
+		assertTrue(future.cancel(true));
+		tasks.forEach(Runnable::run);
+		assertTrue(future.isCancelled());
+	}
+
+	@Test
+	public void testQuery() throws InterruptedException {
+		CountDownLatch closed = new CountDownLatch(1);
+		Connection connection = this.connection(closed, () -> null);
+		CompletableFuture<String> future = AsyncJDBCUtils.executeQueryAsync(
+			() -> connection,
+			new Query("SELECT 1", Collections.emptyList()),
+			rs -> "value");
+		assertEquals("value", future.join());
+		assertTrue(closed.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCancelRunning() throws InterruptedException {
+		CountDownLatch closed = new CountDownLatch(1);
+		CountDownLatch executing = new CountDownLatch(1);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		Connection connection = this.connection(closed, () -> {
+			// Blocks until Statement#cancel() is called.
+			executing.countDown();
+			if (!cancelled.await(10, TimeUnit.SECONDS)) {
+				throw new AssertionError("not cancelled");
+			}
+			throw new SQLException("Query execution was interrupted");
+		}, cancelled);
+		CompletableFuture<String> future = AsyncJDBCUtils.executeQueryAsync(
+			() -> connection,
+			new Query("SELECT SLEEP(10)", Collections.emptyList()),
+			rs -> "value",
+			runnable -> new Thread(runnable).start());
+		assertTrue(executing.await(10, TimeUnit.SECONDS));
+		assertTrue(future.cancel(true));
+		assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+		assertTrue(future.isCancelled());
+		assertTrue(closed.await(10, TimeUnit.SECONDS));
+	}
+
+	@FunctionalInterface
+	private interface Execution {
+		Object run() throws Exception;
+	}
+
+	private Connection connection(CountDownLatch closed, Execution execution) {
+		return this.connection(closed, execution, new CountDownLatch(1));
+	}
+
+	// Fake connection, whose statements run the execution by executeQuery
+	// and count down cancelled by cancel.
+	private Connection connection(CountDownLatch closed, Execution execution,
+			CountDownLatch cancelled) {
+		ResultSet rs = (ResultSet)Proxy.newProxyInstance(
+			getClass().getClassLoader(),
+			new Class<?>[] {ResultSet.class},
+			(proxy, method, args) -> null);
+		return (Connection)Proxy.newProxyInstance(
+			getClass().getClassLoader(),
+			new Class<?>[] {Connection.class},
+			(proxy, method, args) -> {
+				if (method.getName().equals("prepareStatement")) {
+					return Proxy.newProxyInstance(
+						getClass().getClassLoader(),
+						new Class<?>[] {PreparedStatement.class},
+						(p, m, a) -> {
+							if (m.getName().equals("executeQuery")) {
+								execution.run();
+								return rs;
+							} else if (m.getName().equals("cancel")) {
+								cancelled.countDown();
+							}
+							return null;
+						});
+				} else if (method.getName().equals("close")) {
+					closed.countDown();
+				}
+				return null;
+			});
+	}
+}
@@ -0,0 +1,76 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BeanMapperTest {
+	private Connection connection;
+
+	@Before
+	public void before() throws SQLException {
+		connection = DriverManager.getConnection("jdbc:h2:mem:");
+	}
+
+	@After
+	public void after() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testForClass() throws Exception {
+		assertSame(BeanMapper.forClass(Bean.class),
+			BeanMapper.forClass(Bean.class));
+	}
+
+	@Test
+	public void testEmptyResultWithoutColumn() throws Exception {
+		// Columns are resolved on the first row.
+		List<Bean> beans = JDBCUtils.executeQueryForBean(connection,
+			"SELECT 1 AS id FROM DUAL WHERE 1=0", Collections.emptyList(),
+			Bean.class);
+		assertTrue(beans.isEmpty());
+	}
+
+	@Test
+	public void testColumnNotFound() throws Exception {
+		try {
+			JDBCUtils.executeQueryForBean(connection, "SELECT 1 AS id",
+				Collections.emptyList(), Bean.class);
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("S0022", ((SQLException)e.getCause()).getSQLState());
+		}
+	}
+
+	@Test
+	public void testMap() throws Exception {
+		List<Bean> beans = JDBCUtils.executeQueryForBean(connection,
+			"SELECT 1 AS id, 'foo' AS name UNION ALL SELECT 2, NULL",
+			Collections.emptyList(), Bean.class);
+		assertEquals(2, beans.size());
+		assertEquals(1L, beans.get(0).getId());
+		assertEquals("foo", beans.get(0).getName());
+		assertEquals(2L, beans.get(1).getId());
+		assertEquals("default", beans.get(1).getName());
+	}
+
+	@Data
+	public static class Bean {
+		private long id;
+		private String name = "default";
+	}
+}
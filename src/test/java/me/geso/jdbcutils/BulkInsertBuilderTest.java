@@ -0,0 +1,77 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class BulkInsertBuilderTest {
+
+	@Test
+	public void test() {
+		List<Query> queries = new QueryBuilder("`")
+			.bulkInsert("member", Arrays.asList("id", "name"))
+			.build(Arrays.asList(
+				Arrays.asList(1, "a"),
+				Arrays.asList(2, "b")));
+		assertThat(queries.size(), is(1));
+		assertThat(queries.get(0).getSQL(),
+			is("INSERT INTO `member` (`id`,`name`) VALUES (?,?),(?,?)"));
+		assertThat(queries.get(0).getParameters(),
+			is(Arrays.asList(1, "a", 2, "b")));
+	}
+
+	@Test
+	public void testMaxRows() {
+		List<Query> queries = new BulkInsertBuilder("`", "member",
+			Arrays.asList("id"))
+			.maxRows(2)
+			.build(Arrays.asList(
+				Arrays.asList(1),
+				Arrays.asList(2),
+				Arrays.asList(3)));
+		assertThat(queries.size(), is(2));
+		assertThat(queries.get(0).getSQL(),
+			is("INSERT INTO `member` (`id`) VALUES (?),(?)"));
+		assertThat(queries.get(0).getParameters(), is(Arrays.asList(1, 2)));
+		assertThat(queries.get(1).getSQL(),
+			is("INSERT INTO `member` (`id`) VALUES (?)"));
+		assertThat(queries.get(1).getParameters(), is(Arrays.asList(3)));
+	}
+
+	@Test
+	public void testMaxBytes() {
+		List<Query> queries = new BulkInsertBuilder("`", "member",
+			Arrays.asList("name"))
+			.maxBytes(100)
+			.build(Arrays.asList(
+				Arrays.asList("aaaaaaaaaaaaaaaaaaaa"),
+				Arrays.asList("bbbbbbbbbbbbbbbbbbbb"),
+				Arrays.asList("cccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccccc")));
+		assertThat(queries.stream().map(q -> q.getParameters().size())
+			.collect(Collectors.toList()), is(Arrays.asList(2, 1)));
+	}
+
+	@Test
+	public void testOnDuplicateKeyUpdate() {
+		try (Stream<Query> queries = new BulkInsertBuilder("`", "member",
+			Arrays.asList("id", "name"))
+			.onDuplicateKeyUpdate("name")
+			.build(Stream.of(Arrays.asList(1, "a")))) {
+			assertThat(
+				queries.map(Query::getSQL).collect(Collectors.toList()),
+				is(Arrays.asList("INSERT INTO `member` (`id`,`name`) VALUES (?,?) ON DUPLICATE KEY UPDATE `name`=VALUES(`name`)")));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRow() {
+		new BulkInsertBuilder("`", "member", Arrays.asList("id", "name"))
+			.build(Arrays.asList(Arrays.asList(1)));
+	}
+}
@@ -0,0 +1,128 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedInQueryTest {
+	private static final String URL = "jdbc:h2:mem:ChunkedInQueryTest";
+
+	private Connection connection;
+	private Connection connection2;
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws Exception {
+		connection = DriverManager.getConnection(URL);
+		connection2 = DriverManager.getConnection(URL);
+		JDBCUtils.executeUpdate(connection, "CREATE TABLE x (id INT)");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x SELECT x FROM SYSTEM_RANGE(0, 9)");
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void after() throws Exception {
+		executor.shutdownNow();
+		JDBCUtils.executeUpdate(connection, "DROP TABLE x");
+		connection2.close();
+		connection.close();
+	}
+
+	@Test
+	public void testSplit() {
+		ChunkedInQuery<Integer> query = new ChunkedInQuery<Integer>(
+			keys -> new Query("", Collections.emptyList()))
+			.chunkSize(2);
+		assertThat(query.split(Arrays.asList(1, 2, 3, 1, 2)),
+			is(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 1), Arrays.asList(2))));
+		assertThat(query.distinct(true).split(Arrays.asList(1, 2, 3, 1, 2)),
+			is(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3))));
+	}
+
+	@Test
+	public void testTemplate() {
+		ChunkedInQuery<Integer> query = ChunkedInQuery.of(
+			new Query("SELECT * FROM member WHERE status=? AND id", Arrays.asList(1)),
+			new Query(" ORDER BY id", Collections.emptyList()));
+		Query q = query.buildQuery(Arrays.asList(5, 6));
+		assertThat(q.getSQL(),
+			is("SELECT * FROM member WHERE status=? AND id IN (?,?) ORDER BY id"));
+		assertThat(q.getParameters(), is(Arrays.asList(1, 5, 6)));
+	}
+
+	@Test
+	public void testExecuteQuery() throws Exception {
+		// Rows are sorted in each chunk, and chunks keep the key order.
+		List<Integer> expected = Arrays.asList(1, 9, 3, 5, 2, 7, 0, 8, 4, 6);
+		List<Integer> keys = Arrays.asList(9, 1, 5, 3, 7, 2, 8, 0, 6, 4);
+		assertEquals(expected, query().executeQuery(connection, keys,
+			rs -> rs.getInt(1)));
+		// 5 chunks on 2 connections
+		assertEquals(expected, query().executeQuery(
+			Arrays.asList(connection, connection2), executor, keys,
+			rs -> rs.getInt(1)));
+		try (Stream<Integer> stream = query().executeQueryStream(connection,
+			keys, rs -> rs.getInt(1))) {
+			assertEquals(expected, stream.collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testDistinct() throws Exception {
+		assertEquals(Arrays.asList(1, 9, 3, 5), query().distinct(true)
+			.executeQuery(Arrays.asList(connection, connection2), executor,
+				Arrays.asList(9, 1, 9, 5, 1, 3), rs -> rs.getInt(1)));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		ChunkedInQuery<Integer> query = new ChunkedInQuery<Integer>(
+			keys -> keys.contains(-1) ? new Query("SELECT id FROM missing",
+				Collections.emptyList()) : query().buildQuery(keys))
+			.chunkSize(2);
+		List<Integer> keys = Arrays.asList(1, 2, 3, 4, 5, -1, 6);
+		try {
+			query.executeQuery(Arrays.asList(connection, connection2),
+				executor, keys, rs -> rs.getInt(1));
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("SELECT id FROM missing", e.getSql());
+			assertEquals("42S02", ((SQLException)e.getCause()).getSQLState());
+		}
+
+		// Other exceptions are not wrapped by CompletionException.
+		try {
+			query().executeQuery(Arrays.asList(connection, connection2),
+				executor, keys, rs -> {
+					throw new IllegalStateException("callback");
+				});
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("callback", e.getMessage());
+		}
+	}
+
+	private static ChunkedInQuery<Integer> query() {
+		return ChunkedInQuery.<Integer> of(
+			new Query("SELECT id FROM x WHERE id", Collections.emptyList()),
+			new Query(" ORDER BY id", Collections.emptyList()))
+			.chunkSize(2);
+	}
+}
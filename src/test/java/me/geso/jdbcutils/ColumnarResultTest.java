@@ -0,0 +1,53 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnarResultTest {
+	private Connection connection;
+
+	@Before
+	public void before() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id INT PRIMARY KEY, name VARCHAR(255), kind VARCHAR(255))");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x SELECT x, 'name' || x, 'kind' || MOD(x, 10) FROM SYSTEM_RANGE(0, 1999)");
+	}
+
+	@After
+	public void after() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testDictionary() throws Exception {
+		ColumnarResult result = JDBCUtils.executeQueryColumnar(connection,
+			new Query("SELECT name, kind FROM x ORDER BY id",
+				Collections.emptyList()));
+		assertEquals(2000, result.getRowCount());
+
+		// Unique values stop the dictionary after the sample rows.
+		ColumnarResult.StringColumn names = (ColumnarResult.StringColumn)result
+			.getColumn(0);
+		assertFalse(names.isDictionaryEncoded());
+		assertEquals("name0", result.getString(0, 0));
+		assertEquals("name1999", result.getString(1999, 0));
+
+		ColumnarResult.StringColumn kinds = (ColumnarResult.StringColumn)result
+			.getColumn(1);
+		assertTrue(kinds.isDictionaryEncoded());
+		assertEquals(10, kinds.getDictionary().length);
+		assertEquals("kind9", result.getString(1999, 1));
+	}
+}
@@ -0,0 +1,192 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class InsertBatchReturningKeysTest {
+
+	@Test
+	public void testKeyColumn() throws Exception {
+		try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:")) {
+			// The key is not the first column.
+			JDBCUtils.executeUpdate(connection,
+				"CREATE TABLE x (name VARCHAR(10), id BIGINT AUTO_INCREMENT PRIMARY KEY)");
+			long[] keys = JDBCUtils.executeInsertBatchReturningKeys(connection,
+				"INSERT INTO x (name) VALUES (?)", rows(5), 2, "ID");
+			assertArrayEquals(new long[] {1, 2, 3, 4, 5}, keys);
+			keys = JDBCUtils.executeInsertBatchReturningKeys(connection,
+				"INSERT INTO x (name) VALUES (?)", rows(3), 2);
+			assertArrayEquals(new long[] {6, 7, 8}, keys);
+			assertEquals("name2", JDBCUtils.executeQuery(connection,
+				"SELECT name FROM x WHERE id=?", Arrays.asList(8L), rs -> {
+					assertTrue(rs.next());
+					return rs.getString(1);
+				}));
+		}
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		FakeDriver driver = new FakeDriver("testFallback");
+		long[] keys = JDBCUtils.executeInsertBatchReturningKeys(
+			driver.connection(), "INSERT INTO x (name) VALUES (?)", rows(5), 2);
+		// The first batch returned the last key only, and was rolled back.
+		assertArrayEquals(new long[] {3, 4, 5, 6, 7}, keys);
+		assertEquals(1, driver.batches);
+		assertEquals(Collections.singletonList("rollback"), driver.transactions);
+		assertEquals(5, driver.updates);
+
+		// The result is remembered for the driver.
+		keys = JDBCUtils.executeInsertBatchReturningKeys(driver.connection(),
+			"INSERT INTO x (name) VALUES (?)", rows(2), 2);
+		assertArrayEquals(new long[] {8, 9}, keys);
+		assertEquals(1, driver.batches);
+		assertEquals(7, driver.updates);
+	}
+
+	@Test
+	public void testBatchKeys() throws Exception {
+		FakeDriver driver = new FakeDriver("testBatchKeys");
+		driver.batchKeys = true;
+		long[] keys = JDBCUtils.executeInsertBatchReturningKeys(
+			driver.connection(), "INSERT INTO x (name) VALUES (?)", rows(5), 2);
+		assertArrayEquals(new long[] {1, 2, 3, 4, 5}, keys);
+		assertEquals(3, driver.batches);
+		assertEquals(0, driver.updates);
+		// Only the first batch is checked in a transaction.
+		assertEquals(Collections.singletonList("commit"), driver.transactions);
+	}
+
+	private static List<List<Object>> rows(final int count) {
+		List<List<Object>> rows = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			rows.add(Collections.singletonList("name" + i));
+		}
+		return rows;
+	}
+
+	// Driver that returns the key of the last row of a batch, unless
+	// batchKeys is set.
+	private static class FakeDriver {
+		private final String name;
+		boolean batchKeys;
+		int batches;
+		int updates;
+		final List<String> transactions = new ArrayList<>();
+		private long sequence;
+		private int batchSize;
+		private final List<Long> generated = new ArrayList<>();
+
+		FakeDriver(final String name) {
+			this.name = name;
+		}
+
+		Connection connection() {
+			DatabaseMetaData metaData = proxy(DatabaseMetaData.class,
+				(method, args) -> {
+					if (method.equals("getDriverName")) {
+						return name;
+					}
+					return method.equals("supportsSavepoints");
+				});
+			boolean[] autoCommit = {true};
+			return proxy(Connection.class, (method, args) -> {
+				switch (method) {
+				case "getMetaData":
+					return metaData;
+				case "getAutoCommit":
+					return autoCommit[0];
+				case "setAutoCommit":
+					autoCommit[0] = (Boolean)args[0];
+					return null;
+				case "commit":
+				case "rollback":
+					transactions.add(method);
+					return null;
+				case "prepareStatement":
+					return statement();
+				default:
+					return null;
+				}
+			});
+		}
+
+		private PreparedStatement statement() {
+			return proxy(PreparedStatement.class, (method, args) -> {
+				switch (method) {
+				case "addBatch":
+					++batchSize;
+					return null;
+				case "executeBatch":
+					++batches;
+					generated.clear();
+					int[] counts = new int[batchSize];
+					for (int i = 0; i < batchSize; ++i) {
+						counts[i] = 1;
+						generated.add(++sequence);
+					}
+					batchSize = 0;
+					if (!batchKeys) {
+						generated.subList(0, generated.size() - 1).clear();
+					}
+					return counts;
+				case "executeUpdate":
+					++updates;
+					generated.clear();
+					generated.add(++sequence);
+					return 1;
+				case "getGeneratedKeys":
+					return keys(new ArrayList<>(generated));
+				default:
+					return null;
+				}
+			});
+		}
+
+		private ResultSet keys(final List<Long> keys) {
+			ResultSetMetaData metaData = proxy(ResultSetMetaData.class,
+				(method, args) -> 1);
+			int[] row = {-1};
+			return proxy(ResultSet.class, (method, args) -> {
+				switch (method) {
+				case "getMetaData":
+					return metaData;
+				case "next":
+					return ++row[0] < keys.size();
+				case "getLong":
+					return keys.get(row[0]);
+				default:
+					return null;
+				}
+			});
+		}
+	}
+
+	@FunctionalInterface
+	private interface Handler {
+		Object invoke(String method, Object[] args);
+	}
+
+	private static <T> T proxy(final Class<T> type, final Handler handler) {
+		return type.cast(Proxy.newProxyInstance(
+			InsertBatchReturningKeysTest.class.getClassLoader(),
+			new Class<?>[] {type},
+			(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
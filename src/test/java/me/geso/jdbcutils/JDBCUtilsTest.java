@@ -3,15 +3,22 @@ package me.geso.jdbcutils;
 import static org.junit.Assert.*;
 
 import java.beans.IntrospectionException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.Channels;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,15 +30,18 @@ import lombok.Data;
 
 public class JDBCUtilsTest {
 	private Connection connection;
+	private String dburl;
+	private String dbuser;
+	private String dbpassword;
 
 	@Before
 	public void before() throws InstantiationException, IllegalAccessException,
 			ClassNotFoundException, SQLException {
 		Class.forName("com.mysql.jdbc.Driver").newInstance();
 
-		String dburl = System.getProperty("test.dburl");
-		String dbuser = System.getProperty("test.dbuser");
-		String dbpassword = System.getProperty("test.dbpassword");
+		dburl = System.getProperty("test.dburl");
+		dbuser = System.getProperty("test.dbuser");
+		dbpassword = System.getProperty("test.dbpassword");
 		if (dburl == null) {
 			dburl = "jdbc:mysql://localhost/test";
 			dbuser = "root";
@@ -129,6 +139,231 @@ public class JDBCUtilsTest {
 				Collections.emptyList()));
 	}
 
+	@Test
+	public void testBatch() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		List<List<Object>> rows = Arrays.asList(
+			Arrays.asList("a"),
+			Arrays.asList("b"),
+			Arrays.asList("c"));
+		int[] counts = JDBCUtils.executeBatch(connection,
+			"INSERT INTO x (name) VALUES (?)", rows, 2);
+		assertArrayEquals(new int[] {1, 1, 1}, counts);
+		assertEquals(Long.valueOf(3), JDBCUtils.executeQuery(connection,
+			"SELECT COUNT(*) FROM x", Collections.emptyList(), rs -> {
+				rs.next();
+				return rs.getLong(1);
+			}));
+
+		long[] largeCounts = JDBCUtils.executeLargeBatch(connection, Arrays.asList(
+			new Query("UPDATE x SET name=? WHERE name=?", Arrays.asList("A", "a")),
+			new Query("UPDATE x SET name=? WHERE name=?", Arrays.asList("B", "b")),
+			new Query("DELETE FROM x WHERE name=?", Arrays.asList("c"))), 10);
+		assertArrayEquals(new long[] {1, 1, 1}, largeCounts);
+
+		try {
+			JDBCUtils.executeBatch(connection,
+				"INSERT INTO x (id, name) VALUES (?, ?)",
+				Arrays.asList(Arrays.asList(100, "d"), Arrays.asList(100, "e")));
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("INSERT INTO x (id, name) VALUES (?, ?)", e.getSql());
+			assertEquals(2, e.getParams().size());
+		}
+	}
+
+	@Test
+	public void testColumnar() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS c");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE c (id bigint primary key, score double, name varchar(255))");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO c (id, score, name) VALUES (1, 0.5, 'a'), (2, NULL, 'b'), (3, 1.5, 'a'), (4, 2, NULL)");
+		ColumnarResult result = JDBCUtils.executeQueryColumnar(connection,
+			new Query("SELECT id, score, name FROM c ORDER BY id", Collections.emptyList()));
+		assertEquals(4, result.getRowCount());
+		assertArrayEquals(new long[] {1, 2, 3, 4},
+			((ColumnarResult.LongColumn)result.getColumn("id")).getValues());
+		assertTrue(result.isNull(1, 1));
+		assertEquals(1.5, result.getDouble(2, 1), 0);
+		ColumnarResult.StringColumn names = (ColumnarResult.StringColumn)result.getColumn(2);
+		assertTrue(names.isDictionaryEncoded());
+		assertEquals(2, names.getDictionary().length);
+		assertEquals("a", result.getString(2, 2));
+		assertNull(result.getString(3, 2));
+	}
+
+	@Test
+	public void testStreamOptions() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x (name) VALUES (?),(?),(?)",
+			Arrays.asList("a", "b", "c"));
+		for (StreamOptions options : Arrays.asList(
+			StreamOptions.mysqlStreaming(),
+			StreamOptions.fetchSize(2),
+			StreamOptions.memoryBudget(1024))) {
+			try (Stream<String> stream = JDBCUtils.executeQueryStream(connection,
+				new Query("SELECT name FROM x ORDER BY id", Collections.emptyList()),
+				options,
+				rs -> rs.getString(1))) {
+				assertFalse(stream.spliterator().hasCharacteristics(Spliterator.SIZED));
+			}
+			try (Stream<String> stream = JDBCUtils.executeQueryStream(connection,
+				new Query("SELECT name FROM x ORDER BY id", Collections.emptyList()),
+				options,
+				rs -> rs.getString(1))) {
+				assertEquals(Arrays.asList("a", "b", "c"),
+					stream.collect(Collectors.toList()));
+			}
+		}
+	}
+
+	@Test
+	public void testPrefetchStream() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		List<List<Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			rows.add(Arrays.asList("name" + i));
+		}
+		JDBCUtils.executeBatch(connection, "INSERT INTO x (name) VALUES (?)", rows);
+
+		try (Stream<Map<String, Object>> stream = JDBCUtils.executeQueryPrefetchStream(connection,
+			new Query("SELECT name FROM x ORDER BY id", Collections.emptyList()),
+			StreamOptions.mysqlStreaming(), 64)) {
+			List<String> names = stream.parallel()
+				.map(row -> (String)row.get("name"))
+				.collect(Collectors.toList());
+			assertEquals(1000, names.size());
+			assertEquals("name0", names.get(0));
+			assertEquals("name999", names.get(999));
+		}
+	}
+
+	@Test
+	public void testKeysetStream() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		List<List<Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 250; ++i) {
+			rows.add(Arrays.asList("name" + i));
+		}
+		JDBCUtils.executeBatch(connection, "INSERT INTO x (name) VALUES (?)", rows);
+
+		try (Stream<String> stream = JDBCUtils.executeKeysetStream(
+			() -> DriverManager.getConnection(dburl, dbuser, dbpassword),
+			new Query("SELECT id, name FROM x", Collections.emptyList()),
+			"id", 100, rs -> rs.getString("name"))) {
+			List<String> names = stream.collect(Collectors.toList());
+			assertEquals(250, names.size());
+			assertEquals("name0", names.get(0));
+			assertEquals("name249", names.get(249));
+		}
+	}
+
+	@Test
+	public void testQueryResultCache() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x (name) VALUES (?),(?)", Arrays.asList("hoge", "fuga"));
+
+		QueryResultCache cache = new QueryResultCache();
+		Query query = new Query("SELECT name FROM x ORDER BY id",
+			Collections.emptyList());
+		QueryListeners.Scope scope = QueryListeners.scope(cache);
+		try {
+			List<Map<String, Object>> rows = cache.executeQueryMapList(
+				connection, query);
+			assertEquals(2, rows.size());
+			assertSame(rows, cache.executeQueryMapList(connection, query));
+			assertEquals(1, cache.getHitCount());
+
+			JDBCUtils.executeUpdate(connection,
+				"INSERT INTO x (name) VALUES (?)", Arrays.asList("piyo"));
+			assertEquals(0, cache.size());
+			assertEquals(3, cache.executeQueryMapList(connection, query).size());
+		} finally {
+			scope.close();
+		}
+	}
+
+	@Test
+	public void testScatterGather() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x (name) VALUES (?),(?),(?)",
+			Arrays.asList("a", "b", "c"));
+
+		// Two shards on the same database
+		ConnectionSupplier shard = () -> DriverManager.getConnection(dburl,
+			dbuser, dbpassword);
+		ScatterGather shards = new ScatterGather(Arrays.asList(shard, shard))
+			.timeout(10, TimeUnit.SECONDS);
+		Query query = new Query("SELECT name FROM x ORDER BY name",
+			Collections.emptyList());
+		assertEquals(Arrays.asList("a", "b", "c", "a", "b", "c"),
+			shards.concat(query, rs -> rs.getString("name")));
+		assertEquals(Arrays.asList("a", "a", "b"), shards.top(query,
+			rs -> rs.getString("name"), Comparator.naturalOrder(), 3));
+	}
+
+	@Test
+	public void testExport() throws RichSQLException, IOException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255))");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x (name) VALUES (?),(?)", Arrays.asList("a,\"b\"", null));
+
+		Query query = new Query("SELECT id, name FROM x ORDER BY id",
+			Collections.emptyList());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long rows = new ResultSetExporter(ResultSetExporter.Format.CSV).export(
+			connection, query, StreamOptions.mysqlStreaming(),
+			Channels.newChannel(out));
+		assertEquals(2, rows);
+		assertEquals("id,name\r\n1,\"a,\"\"b\"\"\"\r\n2,\r\n", out.toString());
+
+		out.reset();
+		new ResultSetExporter(ResultSetExporter.Format.NDJSON).export(
+			connection, query, StreamOptions.DEFAULT,
+			Channels.newChannel(out));
+		assertEquals("{\"id\":1,\"name\":\"a,\\\"b\\\"\"}\n{\"id\":2,\"name\":null}\n",
+			out.toString());
+	}
+
+	@Test
+	public void testInsertBatchReturningKeys() throws RichSQLException {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE IF EXISTS x");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id integer unsigned auto_increment primary key, name varchar(255) not null)");
+		List<List<Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 25; ++i) {
+			rows.add(Arrays.asList("name" + i));
+		}
+		long[] keys = JDBCUtils.executeInsertBatchReturningKeys(connection,
+			"INSERT INTO x (name) VALUES (?)", rows, 10);
+		assertEquals(25, keys.length);
+		for (int i = 0; i < keys.length; ++i) {
+			assertEquals("name" + i, JDBCUtils.executeQuery(connection,
+				"SELECT name FROM x WHERE id=?", Arrays.asList(keys[i]), rs -> {
+					assertTrue(rs.next());
+					return rs.getString(1);
+				}));
+		}
+	}
+
 	public static class MapBuilder<K, V> {
 		private Map<K, V> map;
 
@@ -193,6 +428,14 @@ public class JDBCUtilsTest {
 		assertEquals("hoge", beans.get(0).getName());
 		assertEquals(2, beans.get(1).getId());
 		assertEquals("fuga", beans.get(1).getName());
+
+		// Column labels are resolved case insensitively, and NULL is skipped.
+		List<Bean> aliased = JDBCUtils.executeQueryForBean(connection,
+			"SELECT id AS ID, NULL AS name FROM bean ORDER BY id", Collections.emptyList(),
+			Bean.class);
+		assertEquals(2, aliased.size());
+		assertEquals(2, aliased.get(1).getId());
+		assertNull(aliased.get(1).getName());
 	}
 
 	@Data
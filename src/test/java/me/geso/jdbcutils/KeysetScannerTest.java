@@ -0,0 +1,160 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeysetScannerTest {
+	private static final String URL = "jdbc:h2:mem:KeysetScannerTest";
+
+	private final List<Connection> connections = new ArrayList<>();
+	private Connection connection;
+
+	@Before
+	public void before() throws Exception {
+		// Keeps the database while the test runs.
+		connection = DriverManager.getConnection(URL);
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id INT PRIMARY KEY, name VARCHAR(10))");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x SELECT x, 'name' || x FROM SYSTEM_RANGE(1, 10)");
+	}
+
+	@After
+	public void after() throws Exception {
+		JDBCUtils.executeUpdate(connection, "DROP TABLE x");
+		connection.close();
+	}
+
+	@Test
+	public void testBuildPageQuery() {
+		KeysetScanner scanner = new KeysetScanner(() -> null,
+			new Query("SELECT * FROM member", Collections.emptyList()), "id")
+			.pageSize(10);
+		assertThat(scanner.buildPageQuery(null).getSQL(),
+			is("SELECT * FROM member ORDER BY id LIMIT 10"));
+		Query q = scanner.buildPageQuery(5L);
+		assertThat(q.getSQL(),
+			is("SELECT * FROM member WHERE id > ? ORDER BY id LIMIT 10"));
+		assertThat(q.getParameters(), is(Arrays.asList(5L)));
+	}
+
+	@Test
+	public void testBuildPageQueryWithWhere() {
+		KeysetScanner scanner = new KeysetScanner(() -> null,
+			new Query("SELECT * FROM member m", Collections.emptyList()), "m.id")
+			.where(new Query("status=? OR status=?", Arrays.asList(1, 2)))
+			.pageSize(10);
+		Query q = scanner.buildPageQuery(5L);
+		assertThat(q.getSQL(),
+			is("SELECT * FROM member m WHERE (status=? OR status=?) AND m.id > ? ORDER BY m.id LIMIT 10"));
+		assertThat(q.getParameters(), is(Arrays.asList(1, 2, 5L)));
+	}
+
+	@Test
+	public void testToLabel() {
+		assertThat(KeysetScanner.toLabel("id"), is("id"));
+		assertThat(KeysetScanner.toLabel("m.id"), is("id"));
+		assertThat(KeysetScanner.toLabel("`m`.`id`"), is("id"));
+		assertThat(KeysetScanner.toLabel("\"id\""), is("id"));
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		// 10 rows fill 2 pages, and the third one is empty.
+		assertEquals(this.range(1, 10), this.scan(this.scanner().pageSize(5)));
+		this.assertConnections(3);
+
+		assertEquals(this.range(1, 10), this.scan(this.scanner().pageSize(3)));
+		this.assertConnections(4);
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		assertEquals(this.range(3, 7), this.scan(this.scanner().pageSize(2)
+			.after(2).upTo(7)));
+		this.assertConnections(3);
+		assertEquals(this.range(9, 10), this.scan(this.scanner().after(8)));
+		this.assertConnections(1);
+	}
+
+	@Test
+	public void testNullKey() throws Exception {
+		JDBCUtils.executeUpdate(connection, "UPDATE x SET name=NULL WHERE id=5");
+		try {
+			this.scan(new KeysetScanner(this::connect, new Query(
+				"SELECT id, name FROM x", Collections.emptyList()), "name"));
+			fail();
+		} catch (UncheckedRichSQLException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(
+				"Key column 'name' must not be NULL."));
+		}
+		this.assertConnections(1);
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		List<Integer> ids = new ArrayList<>();
+		try (Stream<Integer> stream = this.scanner().pageSize(3).stream(
+			rs -> rs.getInt("id"))) {
+			Iterator<Integer> iterator = stream.iterator();
+			for (int i = 0; i < 4; ++i) {
+				ids.add(iterator.next());
+			}
+		}
+		assertEquals(this.range(1, 4), ids);
+		// The rest of the pages are not fetched.
+		this.assertConnections(2);
+	}
+
+	private KeysetScanner scanner() {
+		return new KeysetScanner(this::connect, new Query(
+			"SELECT id, name FROM x", Collections.emptyList()), "id");
+	}
+
+	private List<Integer> scan(final KeysetScanner scanner) {
+		try (Stream<Integer> stream = scanner.stream(rs -> rs.getInt("id"))) {
+			return stream.collect(Collectors.toList());
+		}
+	}
+
+	private List<Integer> range(final int first, final int last) {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = first; i <= last; ++i) {
+			ids.add(i);
+		}
+		return ids;
+	}
+
+	private Connection connect() throws SQLException {
+		Connection connection = DriverManager.getConnection(URL);
+		connections.add(connection);
+		return connection;
+	}
+
+	// A connection was opened and closed per page.
+	private void assertConnections(final int pages) throws SQLException {
+		assertEquals(pages, connections.size());
+		for (Connection connection : connections) {
+			assertTrue(connection.isClosed());
+		}
+		connections.clear();
+	}
+}
@@ -0,0 +1,73 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramListenerTest {
+
+	@Test
+	public void testBucket() {
+		for (long micros = 0; micros < 100000; ++micros) {
+			int bucket = LatencyHistogramListener.bucketOf(micros);
+			assertTrue(micros <= LatencyHistogramListener.upperBoundOf(bucket));
+			assertTrue(bucket == 0
+				|| micros > LatencyHistogramListener.upperBoundOf(bucket - 1));
+			// 12.5% precision
+			assertTrue(LatencyHistogramListener.upperBoundOf(bucket) <= micros * 1.125 + 1);
+		}
+		assertEquals(LatencyHistogramListener.BUCKETS - 1,
+			LatencyHistogramListener.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testSnapshot() {
+		LatencyHistogramListener listener = new LatencyHistogramListener();
+		for (int i = 1; i <= 100; ++i) {
+			listener.onQuery(event("SELECT * FROM ta", TimeUnit.MILLISECONDS.toNanos(i)));
+		}
+		listener.onQuery(event("SELECT * FROM tb", 1000));
+		listener.onQuery(event("SELECT * FROM tb WHERE id IN (1, 2)", 1000));
+		listener.onQuery(event("SELECT * FROM tb WHERE id IN (3)", 1000));
+		assertEquals(2, listener.getSnapshot("SELECT * FROM tb WHERE id IN (?)")
+			.getCount());
+		assertEquals(2, listener.getSnapshot(new Query(
+			"SELECT * FROM tb WHERE id IN (?, ?, ?)", Arrays.asList(1, 2, 3)))
+			.getCount());
+
+		LatencyHistogramListener.Snapshot snapshot = listener.getSnapshot("SELECT * FROM ta");
+		assertEquals(100, snapshot.getCount());
+		assertEquals(100, snapshot.getRows());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), snapshot.getMaxNanos());
+		long p50 = snapshot.getPercentileNanos(50);
+		assertTrue(p50 >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertTrue(p50 <= TimeUnit.MILLISECONDS.toNanos(57));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100),
+			snapshot.getPercentileNanos(100));
+
+		assertEquals("SELECT * FROM ta", listener.getSnapshots().get(0).getSql());
+		assertEquals(3, listener.getSnapshots().size());
+		listener.reset();
+		assertNull(listener.getSnapshot("SELECT * FROM ta"));
+	}
+
+	@Test
+	public void testMaxShapes() {
+		LatencyHistogramListener listener = new LatencyHistogramListener(2);
+		listener.onQuery(event("SELECT * FROM ta", 1000));
+		listener.onQuery(event("SELECT * FROM tb", 1000));
+		listener.onQuery(event("SELECT * FROM tc", 1000));
+		listener.onQuery(event("SELECT * FROM td", 1000));
+		assertEquals(2, listener.getSnapshot(LatencyHistogramListener.OTHER)
+			.getCount());
+	}
+
+	private static QueryEvent event(String sql, long nanos) {
+		return new QueryEvent(QueryEvent.Type.QUERY, new Query(sql,
+			Collections.emptyList()), 0, nanos, 0, 0, nanos, 1, null);
+	}
+}
@@ -0,0 +1,187 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MultiQueryTest {
+
+	@Test
+	public void testJoin() {
+		MultiQuery multi = new MultiQuery();
+		multi.add(new Query("SELECT * FROM member WHERE id=?;", Arrays.asList(1)),
+			rs -> null);
+		multi.add(new Query("SELECT COUNT(*) FROM entry", Collections.emptyList()),
+			rs -> null);
+		multi.add(new Query(" SELECT * FROM entry WHERE member_id=? ", Arrays.asList(2)),
+			rs -> null);
+		Query joined = multi.join();
+		assertThat(joined.getSQL(),
+			is("SELECT * FROM member WHERE id=?;SELECT COUNT(*) FROM entry;SELECT * FROM entry WHERE member_id=?"));
+		assertThat(joined.getParameters(), is(Arrays.asList(1, 2)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNotExecuted() {
+		new MultiQuery().add(new Query("SELECT 1", Collections.emptyList()),
+			rs -> null).get();
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		// H2 doesn't support multiple result sets, so the queries run one by
+		// one without the joined statement.
+		String url = "jdbc:h2:mem:MultiQueryTest";
+		try (Connection connection = DriverManager.getConnection(url)) {
+			int[] calls = new int[2];
+			List<QueryEvent> events = new ArrayList<>();
+			QueryListeners.Scope scope = QueryListeners.scope(events::add);
+			try {
+				assertThat(query(calls).execute(connection),
+					is(Arrays.asList(1, 2)));
+			} finally {
+				scope.close();
+			}
+			assertThat(calls, is(new int[] {1, 1}));
+			assertEquals(2, events.size());
+			for (QueryEvent event : events) {
+				assertNull(event.getError());
+			}
+		}
+	}
+
+	@Test
+	public void testMissingResults() throws Exception {
+		// H2 runs all statements but returns the first result set only.
+		try (Connection h2 = DriverManager.getConnection("jdbc:h2:mem:")) {
+			Connection connection = proxy(Connection.class, (method, args) -> {
+				if (method.getName().equals("getMetaData")) {
+					DatabaseMetaData metaData = h2.getMetaData();
+					return proxy(DatabaseMetaData.class, (m, a) -> {
+						if (m.getName().equals("supportsMultipleResultSets")) {
+							return true;
+						} else if (m.getName().equals("getURL")) {
+							return "jdbc:h2:mem:testMissingResults";
+						}
+						return m.invoke(metaData, a);
+					});
+				}
+				return method.invoke(h2, args);
+			});
+			int[] calls = new int[3];
+			assertThat(query(calls).execute(connection),
+				is(Arrays.asList(1, 2, 3)));
+			// The first result was read from the joined statement.
+			assertThat(calls, is(new int[] {1, 1, 1}));
+		}
+	}
+
+	@Test
+	public void testRejected() throws Exception {
+		List<String> prepared = new ArrayList<>();
+		Connection connection = fakeConnection("fake:testRejected", prepared,
+			new SQLException("You have an error in your SQL syntax", "42000",
+				1064));
+		try {
+			query(new int[2]).execute(connection);
+			fail();
+		} catch (RichSQLException e) {
+			// Failed on the first query executed alone.
+			assertEquals("SELECT ?", e.getSql());
+		}
+		assertThat(prepared, is(Arrays.asList("SELECT ?;SELECT ?",
+			"SELECT ?")));
+	}
+
+	@Test
+	public void testQueryError() throws Exception {
+		// Errors of the queries are not retried one by one.
+		List<String> prepared = new ArrayList<>();
+		Connection connection = fakeConnection("fake:testQueryError",
+			prepared, new SQLException("SELECT command denied", "42000", 1142));
+		try {
+			query(new int[2]).execute(connection);
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("SELECT ?;SELECT ?", e.getSql());
+			assertEquals(1142, ((SQLException)e.getCause()).getErrorCode());
+		}
+		assertThat(prepared, is(Arrays.asList("SELECT ?;SELECT ?")));
+	}
+
+	// Connection supporting multiple result sets, whose statements fail by
+	// the exception.
+	private static Connection fakeConnection(final String url,
+			final List<String> prepared, final SQLException exception) {
+		DatabaseMetaData metaData = proxy(DatabaseMetaData.class,
+			(method, args) -> {
+				if (method.getName().equals("getURL")) {
+					return url;
+				}
+				return method.getName().equals("supportsMultipleResultSets");
+			});
+		return proxy(Connection.class, (method, args) -> {
+			switch (method.getName()) {
+			case "getMetaData":
+				return metaData;
+			case "prepareStatement":
+				prepared.add((String)args[0]);
+				return proxy(PreparedStatement.class, (m, a) -> {
+					if (m.getName().startsWith("execute")) {
+						throw exception;
+					}
+					return null;
+				});
+			default:
+				return null;
+			}
+		});
+	}
+
+	@FunctionalInterface
+	private interface Handler {
+		Object invoke(Method method, Object[] args) throws Throwable;
+	}
+
+	private static <T> T proxy(final Class<T> type, final Handler handler) {
+		return type.cast(Proxy.newProxyInstance(
+			MultiQueryTest.class.getClassLoader(), new Class<?>[] {type},
+			(proxy, method, args) -> {
+				try {
+					return handler.invoke(method, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}));
+	}
+
+	private static MultiQuery query(final int[] calls) {
+		MultiQuery multi = new MultiQuery();
+		for (int i = 0; i < calls.length; ++i) {
+			int index = i;
+			multi.add(new Query("SELECT ?", Arrays.asList(i + 1)), rs -> {
+				++calls[index];
+				rs.next();
+				return rs.getInt(1);
+			});
+		}
+		return multi;
+	}
+}
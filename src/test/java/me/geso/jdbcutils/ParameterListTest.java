@@ -0,0 +1,52 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParameterListTest {
+
+	@Test
+	public void test() {
+		Timestamp timestamp = new Timestamp(0);
+		ParameterList params = new ParameterList(1);
+		params.addLong(1L);
+		params.addInt(2);
+		params.addDouble(3.5);
+		params.addBoolean(true);
+		params.addString("s");
+		params.add((short)4);
+		params.add(new BigDecimal("5.5"));
+		params.add(timestamp);
+		params.add(null);
+		List<Object> expected = Arrays.asList(1L, 2, 3.5, true, "s",
+			(short)4, new BigDecimal("5.5"), timestamp, null);
+		assertEquals(expected, params);
+		assertEquals(expected.toString(), params.toString());
+	}
+
+	@Test
+	public void testModify() {
+		ParameterList params = new ParameterList();
+		params.addAll(Arrays.asList(1, 2, 3));
+		params.set(0, "a");
+		params.remove(1);
+		params.add(1, 2.5f);
+		assertEquals(Arrays.asList("a", 2.5f, 3), params);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFreeze() {
+		ParameterList params = new ParameterList();
+		params.addInt(1);
+		ParameterList frozen = params.freeze();
+		params.addInt(2);
+		assertEquals(Arrays.asList(1), frozen);
+		frozen.addInt(3);
+	}
+}
@@ -0,0 +1,145 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreparedStatementCacheTest {
+	private List<String> prepared;
+	private List<String> closed;
+	private List<String> closedResultSets;
+	private Connection connection;
+
+	@Before
+	public void before() {
+		prepared = new ArrayList<>();
+		closed = new ArrayList<>();
+		closedResultSets = new ArrayList<>();
+		connection = (Connection)Proxy.newProxyInstance(
+			getClass().getClassLoader(),
+			new Class<?>[] {Connection.class},
+			(proxy, method, args) -> {
+				if (method.getName().equals("prepareStatement")) {
+					String sql = (String)args[0];
+					prepared.add(sql);
+					Map<String, Object> settings = new HashMap<>();
+					return Proxy.newProxyInstance(
+						getClass().getClassLoader(),
+						new Class<?>[] {PreparedStatement.class},
+						(p, m, a) -> {
+							String name = m.getName();
+							if (name.equals("close")) {
+								closed.add(sql);
+							} else if (name.equals("executeQuery")) {
+								return Proxy.newProxyInstance(
+									getClass().getClassLoader(),
+									new Class<?>[] {ResultSet.class},
+									(r, rm, ra) -> {
+										if (rm.getName().equals("close")) {
+											closedResultSets.add(sql);
+										}
+										return null;
+									});
+							} else if (name.startsWith("set")) {
+								settings.put(name.substring(3), a[0]);
+							} else if (name.startsWith("get")
+								&& m.getReturnType() == int.class) {
+								return settings.getOrDefault(name.substring(3), 0);
+							}
+							return null;
+						});
+				}
+				return null;
+			});
+	}
+
+	@Test
+	public void testHit() throws SQLException {
+		try (PreparedStatementCache cache = new PreparedStatementCache(connection, 10)) {
+			Connection conn = cache.getConnection();
+			try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+				assertSame(conn, ps.getConnection());
+			}
+			PreparedStatement ps = conn.prepareStatement("SELECT 1");
+			assertFalse(ps.isClosed());
+			ps.close();
+			assertTrue(ps.isClosed());
+
+			assertEquals(1, prepared.size());
+			assertEquals(1, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+			assertEquals(0, closed.size());
+		}
+		assertEquals(1, closed.size());
+	}
+
+	@Test
+	public void testInUse() throws SQLException {
+		try (PreparedStatementCache cache = new PreparedStatementCache(connection, 10)) {
+			Connection conn = cache.getConnection();
+			try (PreparedStatement outer = conn.prepareStatement("SELECT 1")) {
+				try (PreparedStatement inner = conn.prepareStatement("SELECT 1")) {
+					assertNotSame(outer, inner);
+				}
+				// The uncached statement is closed.
+				assertEquals(1, closed.size());
+			}
+			assertEquals(2, prepared.size());
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	public void testEviction() throws SQLException {
+		try (PreparedStatementCache cache = new PreparedStatementCache(connection, 2)) {
+			Connection conn = cache.getConnection();
+			conn.prepareStatement("SELECT 1").close();
+			conn.prepareStatement("SELECT 2").close();
+			conn.prepareStatement("SELECT 1").close();
+			conn.prepareStatement("SELECT 3").close();
+			assertEquals(2, cache.size());
+			// Least recently used one is closed.
+			assertEquals("SELECT 2", closed.get(0));
+			conn.prepareStatement("SELECT 1").close();
+			assertEquals(2, cache.getHitCount());
+		}
+	}
+
+	@Test
+	public void testRelease() throws SQLException {
+		try (PreparedStatementCache cache = new PreparedStatementCache(connection, 10)) {
+			Connection conn = cache.getConnection();
+			try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+				ps.setMaxRows(10);
+				ps.setQueryTimeout(3);
+				ps.setFetchSize(100);
+				ps.executeQuery();
+			}
+			// The result set left open is closed.
+			assertEquals(Collections.singletonList("SELECT 1"), closedResultSets);
+
+			try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+				assertEquals(1, cache.getHitCount());
+				assertEquals(0, ps.getMaxRows());
+				assertEquals(0, ps.getQueryTimeout());
+				assertEquals(0, ps.getFetchSize());
+			}
+		}
+	}
+}
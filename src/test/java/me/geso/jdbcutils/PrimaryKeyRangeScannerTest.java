@@ -0,0 +1,138 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrimaryKeyRangeScannerTest {
+	private static final String URL = "jdbc:h2:mem:PrimaryKeyRangeScannerTest";
+
+	// Keeps the in-memory database while the test runs.
+	private Connection connection;
+
+	@Before
+	public void before() throws SQLException, RichSQLException {
+		connection = DriverManager.getConnection(URL);
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE member (id BIGINT PRIMARY KEY, name VARCHAR(255))");
+	}
+
+	@After
+	public void after() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testSplit() {
+		assertThat(PrimaryKeyRangeScanner.split(1, 10, 3).toString(),
+			is("[[1, 4], [5, 8], [9, 10]]"));
+		assertThat(PrimaryKeyRangeScanner.split(1, 2, 4).toString(),
+			is("[[1, 1], [2, 2]]"));
+		assertThat(PrimaryKeyRangeScanner.split(5, 5, 4).toString(),
+			is("[[5, 5]]"));
+	}
+
+	@Test
+	public void testSplitWideRange() {
+		assertThat(
+			PrimaryKeyRangeScanner.split(Long.MIN_VALUE, Long.MAX_VALUE, 1)
+				.toString(),
+			is("[[" + Long.MIN_VALUE + ", " + Long.MAX_VALUE + "]]"));
+		assertThat(
+			PrimaryKeyRangeScanner.split(Long.MIN_VALUE, Long.MAX_VALUE, 2)
+				.toString(),
+			is("[[" + Long.MIN_VALUE + ", -1], [0, " + Long.MAX_VALUE + "]]"));
+		assertThat(PrimaryKeyRangeScanner.split(-1, Long.MAX_VALUE, 3).size(),
+			is(3));
+	}
+
+	@Test
+	public void testBuildMinMaxQuery() {
+		Query q = new PrimaryKeyRangeScanner(() -> null, "member", "id")
+			.where(new Query("status=?", Arrays.asList(1)))
+			.buildMinMaxQuery();
+		assertThat(q.getSQL(),
+			is("SELECT MIN(id), MAX(id) FROM member WHERE status=?"));
+		assertThat(q.getParameters(), is(Arrays.asList(1)));
+	}
+
+	@Test
+	public void testStream() throws RichSQLException {
+		List<Long> ids = new ArrayList<>();
+		for (long id = 1; id <= 1000; ++id) {
+			ids.add(id * 3);
+		}
+		this.insert(ids);
+		try (Stream<Long> stream = this.scanner().ranges(4).pageSize(10)
+			.where(new Query("id<>?", Arrays.asList(3000)))
+			.stream(rs -> rs.getLong("id"))) {
+			assertThat(stream.collect(Collectors.toList()),
+				is(ids.subList(0, 999)));
+		}
+	}
+
+	@Test
+	public void testStreamWideRange() throws RichSQLException {
+		List<Long> ids = Arrays.asList(Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE);
+		this.insert(ids);
+		try (Stream<Long> stream = this.scanner().ranges(3).pageSize(1)
+			.stream(rs -> rs.getLong("id"))) {
+			assertThat(stream.collect(Collectors.toList()), is(ids));
+		}
+	}
+
+	@Test
+	public void testTrySplit() throws RichSQLException {
+		List<Long> ids = new ArrayList<>();
+		for (long id = 1; id <= 100; ++id) {
+			ids.add(id);
+		}
+		this.insert(ids);
+		try (Stream<Long> stream = this.scanner().ranges(1).pageSize(10)
+			.stream(rs -> rs.getLong("id"))) {
+			Spliterator<Long> suffix = stream.spliterator();
+			assertEquals(100, suffix.estimateSize());
+			// The only range is split in half.
+			Spliterator<Long> prefix = suffix.trySplit();
+			assertNotNull(prefix);
+			assertEquals(50, prefix.estimateSize());
+			assertEquals(50, suffix.estimateSize());
+
+			List<Long> rows = new ArrayList<>();
+			prefix.forEachRemaining(rows::add);
+			assertThat(rows, is(ids.subList(0, 50)));
+			suffix.forEachRemaining(rows::add);
+			assertThat(rows, is(ids));
+			assertNull(suffix.trySplit());
+		}
+	}
+
+	private PrimaryKeyRangeScanner scanner() {
+		return new PrimaryKeyRangeScanner(
+			() -> DriverManager.getConnection(URL), "member", "id");
+	}
+
+	private void insert(List<Long> ids) throws RichSQLException {
+		for (Long id : ids) {
+			JDBCUtils.executeUpdate(connection,
+				"INSERT INTO member (id, name) VALUES (?, ?)",
+				Arrays.asList(id, "m" + id));
+		}
+	}
+}
@@ -49,6 +49,19 @@ public class QueryBuilderTest {
 		assertThat(q.getParameters(), is(Arrays.asList(9)));
 	}
 
+	@Test
+	public void testAddTypedParameter() {
+		Query q = new QueryBuilder("`")
+			.appendQuery("SELECT * FROM member WHERE id=? AND age=? AND name=? AND score>? AND deleted=?")
+			.addParameter(9L)
+			.addParameter(20)
+			.addParameter("john")
+			.addParameter(0.5)
+			.addParameter(false)
+			.build();
+		assertThat(q.getParameters(), is(Arrays.asList(9L, 20, "john", 0.5, false)));
+	}
+
 	@Test
 	public void testAddParameters() {
 		Query q = new QueryBuilder("`")
@@ -99,4 +112,45 @@ public class QueryBuilderTest {
 		assertThat(q.getParameters(), is(Arrays.asList(1, 2, 3)));
 	}
 
+	@Test
+	public void testInListPadding() {
+		Query q = new QueryBuilder("`")
+			.setInListPadding(true)
+			.appendQuery("SELECT * FROM x WHERE id ")
+			.in(Arrays.asList(1, 2, 3))
+			.appendQuery(" AND name ")
+			.notIn(Arrays.asList("a", "b"))
+			.build();
+		assertThat(q.getSQL(), is("SELECT * FROM x WHERE id  IN (?,?,?,?) AND name  NOT IN (?,?)"));
+		assertThat(q.getParameters(), is(Arrays.asList(1, 2, 3, 3, "a", "b")));
+	}
+
+	@Test
+	public void testReset() {
+		QueryBuilder builder = new QueryBuilder("`", 64, 4);
+		Query first = builder.appendQuery("SELECT * FROM member WHERE id=")
+			.appendQueryAndParameter("?", 1)
+			.appendQuery(" LIMIT ")
+			.appendQuery(10L)
+			.build();
+		Query second = builder.reset()
+			.appendQuery("DELETE FROM member WHERE id=")
+			.appendQueryAndParameter("?", 2)
+			.build();
+		assertThat(first.getSQL(), is("SELECT * FROM member WHERE id=? LIMIT 10"));
+		assertThat(first.getParameters(), is(Arrays.asList(1)));
+		assertThat(second.getSQL(), is("DELETE FROM member WHERE id=?"));
+		assertThat(second.getParameters(), is(Arrays.asList(2)));
+	}
+
+	@Test
+	public void testBucket() {
+		assertThat(Placeholders.bucket(0), is(0));
+		assertThat(Placeholders.bucket(1), is(1));
+		assertThat(Placeholders.bucket(2), is(2));
+		assertThat(Placeholders.bucket(3), is(4));
+		assertThat(Placeholders.bucket(513), is(1024));
+		assertThat(Placeholders.of(3), is("?,?,?"));
+	}
+
 }
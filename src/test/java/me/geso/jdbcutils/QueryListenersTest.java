@@ -0,0 +1,54 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class QueryListenersTest {
+
+	@Test
+	public void testScope() {
+		assertSame(QueryTimer.NOOP, QueryTimer.start(QueryEvent.Type.QUERY,
+			"SELECT 1", Collections.emptyList()));
+
+		List<QueryEvent> events = new ArrayList<>();
+		QueryListeners.Scope scope = QueryListeners.scope(events::add);
+		try {
+			QueryTimer timer = QueryTimer.start(QueryEvent.Type.UPDATE,
+				"DELETE FROM x", Collections.emptyList());
+			timer.prepared();
+			timer.executed();
+			timer.addRows(3);
+			timer.finish();
+			timer.finish();
+		} finally {
+			scope.close();
+		}
+		assertEquals(1, events.size());
+		assertEquals(QueryEvent.Type.UPDATE, events.get(0).getType());
+		assertEquals("DELETE FROM x", events.get(0).getSql());
+		assertEquals(3, events.get(0).getRows());
+
+		assertSame(QueryTimer.NOOP, QueryTimer.start(QueryEvent.Type.QUERY,
+			"SELECT 1", Collections.emptyList()));
+	}
+
+	@Test
+	public void testGlobal() {
+		List<QueryEvent> events = new ArrayList<>();
+		QueryListener listener = events::add;
+		QueryListeners.add(listener);
+		try {
+			QueryTimer.start(QueryEvent.Type.QUERY, "SELECT 1",
+				Collections.emptyList()).finish();
+		} finally {
+			QueryListeners.remove(listener);
+		}
+		assertEquals(1, events.size());
+		assertEquals(-1, events.get(0).getRows());
+	}
+}
@@ -0,0 +1,138 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryResultCacheTest {
+	private Connection connection;
+
+	@Before
+	public void before() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:");
+		JDBCUtils.executeUpdate(connection,
+			"CREATE TABLE x (id INT PRIMARY KEY, name VARCHAR(255))");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x (id, name) VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+	}
+
+	@After
+	public void after() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testEntryEviction() throws Exception {
+		QueryResultCache cache = new QueryResultCache(2, 1024 * 1024, 0,
+			TimeUnit.MILLISECONDS);
+		cache.executeQueryMapList(connection, query(1));
+		cache.executeQueryMapList(connection, query(2));
+		cache.executeQueryMapList(connection, query(1));
+		cache.executeQueryMapList(connection, query(3));
+		assertEquals(2, cache.size());
+		// Least recently used one is evicted.
+		cache.executeQueryMapList(connection, query(1));
+		cache.executeQueryMapList(connection, query(3));
+		assertEquals(3, cache.getHitCount());
+		cache.executeQueryMapList(connection, query(2));
+		assertEquals(4, cache.getMissCount());
+	}
+
+	@Test
+	public void testByteEviction() throws Exception {
+		QueryResultCache measure = new QueryResultCache();
+		measure.executeQueryMapList(connection, query(1));
+		long bytes = measure.getEstimatedBytes();
+		assertTrue(bytes > 0);
+
+		// One entry fits, but two don't.
+		QueryResultCache cache = new QueryResultCache(100, bytes + bytes / 2,
+			0, TimeUnit.MILLISECONDS);
+		cache.executeQueryMapList(connection, query(1));
+		cache.executeQueryMapList(connection, query(2));
+		assertEquals(1, cache.size());
+		assertTrue(cache.getEstimatedBytes() <= bytes + bytes / 2);
+
+		// Larger entries are not stored.
+		cache.executeQueryMapList(connection, new Query(
+			"SELECT * FROM x", Collections.emptyList()));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		QueryResultCache cache = new QueryResultCache(100, 1024 * 1024, 1,
+			TimeUnit.NANOSECONDS);
+		cache.executeQueryMapList(connection, query(1));
+		cache.executeQueryMapList(connection, query(1));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		// Zero means entries never expire.
+		cache = new QueryResultCache(100, 1024 * 1024, 0,
+			TimeUnit.NANOSECONDS);
+		List<Map<String, Object>> rows = cache.executeQueryMapList(
+			connection, query(1));
+		assertSame(rows, cache.executeQueryMapList(connection, query(1)));
+	}
+
+	@Test
+	public void testInvalidatedWhileLoading() throws Exception {
+		QueryResultCache cache = new QueryResultCache();
+		// The table is updated after the query read it.
+		String name = cache.executeQuery(connection, query(1), rs -> {
+			cache.invalidateTable("x");
+			rs.next();
+			return rs.getString("name");
+		});
+		assertEquals("a", name);
+		// The result may be stale, so it's not stored.
+		assertEquals(0, cache.size());
+		cache.executeQueryMapList(connection, query(1));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		QueryResultCache cache = new QueryResultCache();
+		QueryListeners.Scope scope = QueryListeners.scope(cache);
+		try {
+			cache.executeQueryMapList(connection, query(1));
+			// Queries don't invalidate.
+			JDBCUtils.executeQueryMapList(connection, query(2));
+			assertEquals(1, cache.size());
+
+			JDBCUtils.executeUpdate(connection,
+				"MERGE INTO x (id, name) KEY (id) VALUES (1, 'A')");
+			assertEquals(0, cache.size());
+			assertEquals("A", cache.executeQueryMapList(connection, query(1))
+				.get(0).get("NAME"));
+
+			// Updates run as queries invalidate too.
+			cache.onQuery(new QueryEvent(QueryEvent.Type.QUERY, new Query(
+				"UPDATE x SET name='a' WHERE id=1 RETURNING id",
+				Collections.emptyList()), 0, 0, 0, 0, 0, 1, null));
+			assertEquals(0, cache.size());
+		} finally {
+			scope.close();
+		}
+	}
+
+	private static Query query(final int id) {
+		return new Query("SELECT * FROM x WHERE id=?", Arrays.asList(id));
+	}
+}
@@ -1,8 +1,12 @@
 package me.geso.jdbcutils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -18,4 +22,41 @@ public class QueryTest {
 		assertEquals(3, query.getParameters().get(2));
 	}
 
+	@Test
+	public void testEquals() {
+		List<Object> params = new ArrayList<>(Arrays.asList(1, "a"));
+		Query query = new Query("SELECT * FROM member WHERE id=? AND name=?", params);
+		params.set(0, 2);
+		assertEquals(Arrays.asList(1, "a"), query.getParameters());
+
+		Query built = new QueryBuilder("`")
+			.appendQuery("SELECT * FROM member WHERE id=")
+			.appendQueryAndParameter("?", 1)
+			.appendQuery(" AND name=")
+			.appendQueryAndParameter("?", "a")
+			.build();
+		assertEquals(query, built);
+		assertEquals(query.hashCode(), built.hashCode());
+		assertNotEquals(query, new Query(query.getSQL(), Arrays.asList(1, "b")));
+	}
+
+	@Test
+	public void testWrap() {
+		List<Object> params = Arrays.asList(1, "a");
+		Query query = Query.wrap("SELECT * FROM member WHERE id=? AND name=?", params);
+		assertSame(params, query.getParameters());
+		assertEquals(new Query(query.getSQL(), params), query);
+	}
+
+	@Test
+	public void testFingerprint() {
+		assertEquals("SELECT * FROM member WHERE id IN (...) AND name=? AND t1.x > ?",
+			new Query("SELECT *\n  FROM member WHERE id IN (1, 2, 3) AND name='it''s' AND t1.x > 1.5e-3 -- comment",
+				Arrays.asList()).getFingerprint());
+		assertEquals("INSERT INTO `t2` (a, b) VALUES (...)",
+			SqlFingerprint.normalize("INSERT INTO `t2` (a, b) VALUES (?,?),(?,?) , (?,?)"));
+		assertEquals("SELECT \"col1\" FROM x WHERE a=?",
+			SqlFingerprint.normalize("SELECT \"col1\" FROM x /* y */ WHERE a=0x1F"));
+	}
+
 }
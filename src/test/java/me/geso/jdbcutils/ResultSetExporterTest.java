@@ -0,0 +1,193 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ResultSetExporterTest {
+	// Mixes 1 to 4 bytes chars, so that chars cross the end of the buffer.
+	private static final String LONG;
+	static {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			builder.append("a\u00e9\u65e5\ud83d\ude00");
+			if (i % 7 == 0) {
+				builder.append('b');
+			}
+		}
+		LONG = builder.toString();
+	}
+
+	@Test
+	public void testUtf8() throws Exception {
+		for (final String value : new String[] {"\ud83d\ude00",
+			"\u00e9\u65e5", LONG, LONG.substring(1), LONG.substring(2)}) {
+			assertArrayEquals(value, (value + "\n")
+				.getBytes(StandardCharsets.UTF_8), export(
+				ResultSetExporter.Format.TSV, value));
+		}
+	}
+
+	@Test
+	public void testUnpairedSurrogate() throws Exception {
+		assertEquals("a?b\n", new String(export(ResultSetExporter.Format.TSV,
+			"a\ud800b"), StandardCharsets.UTF_8));
+		assertEquals("a??\n", new String(export(ResultSetExporter.Format.TSV,
+			"a\udc00\ud800"), StandardCharsets.UTF_8));
+		// Same as String#getBytes.
+		assertArrayEquals((LONG + "\ud800\n").getBytes(StandardCharsets.UTF_8),
+			export(ResultSetExporter.Format.TSV, LONG + "\ud800"));
+	}
+
+	@Test
+	public void testTsv() throws Exception {
+		assertEquals("a\\tb\\nc\\rd\\\\e\n", new String(export(
+			ResultSetExporter.Format.TSV, "a\tb\nc\rd\\e"),
+			StandardCharsets.UTF_8));
+		assertEquals("\\N\n", new String(export(ResultSetExporter.Format.TSV,
+			(String)null), StandardCharsets.UTF_8));
+		final String value = LONG.replace("b", "\t\\");
+		assertArrayEquals((value.replace("\\", "\\\\").replace("\t", "\\t")
+			+ "\n").getBytes(StandardCharsets.UTF_8), export(
+			ResultSetExporter.Format.TSV, value));
+	}
+
+	@Test
+	public void testCsv() throws Exception {
+		assertEquals("a\r\n\"a,b\"\r\n\"\"\"a\"\"\"\r\n\r\n", new String(
+			export(ResultSetExporter.Format.CSV, "a", "a,b", "\"a\"", null),
+			StandardCharsets.UTF_8));
+		final String value = LONG.replace("b", "\"");
+		assertArrayEquals(("\"" + value.replace("\"", "\"\"") + "\"\r\n")
+			.getBytes(StandardCharsets.UTF_8), export(
+			ResultSetExporter.Format.CSV, value));
+	}
+
+	@Test
+	public void testNdjson() throws Exception {
+		assertEquals("{\"s\":\"a\\\"\\\\\\n\\u0001\"}\n{\"s\":null}\n",
+			new String(export(ResultSetExporter.Format.NDJSON, "a\"\\\n\u0001",
+				null), StandardCharsets.UTF_8));
+		final String value = LONG.replace("b", "\u001f");
+		assertArrayEquals(("{\"s\":\"" + value.replace("\u001f", "\\u001f")
+			+ "\"}\n").getBytes(StandardCharsets.UTF_8), export(
+			ResultSetExporter.Format.NDJSON, value));
+	}
+
+	@Test
+	public void testHeader() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ResultSetExporter(ResultSetExporter.Format.TSV, 1024).export(
+			resultSet("a\tb", new Object[][] {{"x"}}), out);
+		assertEquals("a\\tb\nx\n", new String(out.toByteArray(),
+			StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testWriteFailure() throws Exception {
+		final List<QueryEvent> events = new ArrayList<>();
+		try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:");
+				QueryListeners.Scope scope = QueryListeners.scope(events::add)) {
+			final WritableByteChannel channel = new WritableByteChannel() {
+				@Override
+				public int write(final ByteBuffer src) throws IOException {
+					throw new IOException("Broken pipe");
+				}
+
+				@Override
+				public boolean isOpen() {
+					return true;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+			try {
+				new ResultSetExporter(ResultSetExporter.Format.CSV, 1024).export(
+					connection, new Query("SELECT 1", Collections.emptyList()),
+					StreamOptions.DEFAULT, channel);
+				fail();
+			} catch (final IOException e) {
+				assertEquals("Broken pipe", e.getMessage());
+			}
+		}
+		assertEquals(1, events.size());
+		assertTrue(events.get(0).getError().getCause() instanceof IOException);
+	}
+
+	// Export the values as rows of a VARCHAR column without the header.
+	private static byte[] export(final ResultSetExporter.Format format,
+			final String... values) throws SQLException, IOException {
+		final Object[][] rows = new Object[values.length][];
+		for (int i = 0; i < values.length; ++i) {
+			rows[i] = new Object[] {values[i]};
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ResultSetExporter(format, 1024).header(false).export(
+			resultSet("s", rows), out);
+		return out.toByteArray();
+	}
+
+	// Fake result set of a VARCHAR column.
+	private static ResultSet resultSet(final String label,
+			final Object[][] rows) {
+		final ResultSetMetaData metaData = proxy(ResultSetMetaData.class,
+			(method, args) -> {
+				switch (method) {
+				case "getColumnCount":
+					return 1;
+				case "getColumnLabel":
+					return label;
+				case "getColumnType":
+					return Types.VARCHAR;
+				default:
+					throw new UnsupportedOperationException(method);
+				}
+			});
+		final int[] row = {-1};
+		return proxy(ResultSet.class, (method, args) -> {
+			switch (method) {
+			case "getMetaData":
+				return metaData;
+			case "next":
+				return ++row[0] < rows.length;
+			case "getString":
+				return rows[row[0]][(Integer)args[0] - 1];
+			default:
+				throw new UnsupportedOperationException(method);
+			}
+		});
+	}
+
+	@FunctionalInterface
+	private interface Handler {
+		Object invoke(String method, Object[] args);
+	}
+
+	private static <T> T proxy(final Class<T> type, final Handler handler) {
+		return type.cast(Proxy.newProxyInstance(
+			ResultSetExporterTest.class.getClassLoader(),
+			new Class<?>[] {type},
+			(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
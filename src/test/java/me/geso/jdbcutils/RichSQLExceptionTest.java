@@ -2,22 +2,53 @@ package me.geso.jdbcutils;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 
-import org.junit.After;
-import org.junit.Before;
 import org.junit.Test;
 
 public class RichSQLExceptionTest {
-	private Connection connection;
 
-	@Before
-	public void before() throws InstantiationException, IllegalAccessException,
-			ClassNotFoundException, SQLException {
+	@Test
+	public void test() throws Exception {
+		String sql = "SELECT * FROM unknownTableName";
+		try (Connection connection = connect()) {
+			try (final PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+				preparedStatement.execute();
+			} catch (SQLException e) {
+				final RichSQLException richSQLException = new RichSQLException(e, sql, Collections.emptyList());
+				assertTrue("'" + richSQLException.getMessage() + "' contains query", richSQLException.getMessage().contains(sql));
+			}
+		}
+	}
+
+	@Test
+	public void testSerialize() throws Exception {
+		RichSQLException e = new RichSQLException(new SQLException("x"),
+			new Query("SELECT ?", Arrays.asList(1)));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new UncheckedRichSQLException(e));
+		}
+		try (ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(bytes.toByteArray()))) {
+			UncheckedRichSQLException copy = (UncheckedRichSQLException)in
+				.readObject();
+			assertEquals("SELECT ?", copy.getSql());
+			assertEquals(Arrays.asList(1), copy.getParams());
+			assertEquals(e.getMessage(), copy.getMessage());
+		}
+	}
+
+	private static Connection connect() throws Exception {
 		Class.forName("com.mysql.jdbc.Driver").newInstance();
 
 		String dburl = System.getProperty("test.dburl");
@@ -29,27 +60,6 @@ public class RichSQLExceptionTest {
 			dbpassword = "";
 		}
 
-		connection = DriverManager.getConnection(dburl, dbuser, dbpassword);
+		return DriverManager.getConnection(dburl, dbuser, dbpassword);
 	}
-
-	@After
-	public void after() throws SQLException {
-		if (connection != null) {
-			connection.close();
-		}
-	}
-
-	@Test
-	public void test() {
-		String sql = "SELECT * FROM unknownTableName";
-		try {
-			try (final PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-				preparedStatement.execute();
-			}
-		} catch (SQLException e) {
-			final RichSQLException richSQLException = new RichSQLException(e, sql, Collections.emptyList());
-			assertTrue("'" + richSQLException.getMessage() + "' contains query", richSQLException.getMessage().contains(sql));
-		}
-	}
-
 }
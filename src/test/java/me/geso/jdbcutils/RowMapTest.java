@@ -0,0 +1,65 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RowMapTest {
+
+	@Test
+	public void test() {
+		RowMap.Schema schema = new RowMap.Schema(new String[] {"id", "name"});
+		RowMap row = new RowMap(schema, new Object[] {1L, null});
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("id", 1L);
+		expected.put("name", null);
+		assertEquals(expected, row);
+		assertEquals(row, expected);
+		assertEquals(expected.hashCode(), row.hashCode());
+		assertEquals(2, row.size());
+		assertTrue(row.containsKey("name"));
+		assertFalse(row.containsKey("unknown"));
+		assertNull(row.get("unknown"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFreeze() {
+		RowMap.Schema schema = new RowMap.Schema(new String[] {"id"});
+		RowMap row = new RowMap(schema, new Object[] {1L}).freeze();
+		assertEquals(1L, row.get("id"));
+		row.put("id", 2L);
+	}
+
+	@Test
+	public void testDuplicatedLabels() {
+		RowMap.Schema schema = new RowMap.Schema(new String[] {"id", "id"});
+		RowMap row = new RowMap(schema, new Object[] {1L, 2L});
+		assertEquals(1, row.size());
+		assertEquals(2L, row.get("id"));
+		assertEquals(1, row.entrySet().size());
+	}
+
+	@Test
+	public void testModify() {
+		RowMap.Schema schema = new RowMap.Schema(new String[] {"id", "name"});
+		RowMap row = new RowMap(schema, new Object[] {1L, "john"});
+
+		assertEquals(1L, row.put("id", 2L));
+		assertEquals(2L, row.get("id"));
+
+		row.put("age", 3);
+		assertEquals(3, row.size());
+		assertEquals(3, row.get("age"));
+
+		assertEquals("john", row.remove("name"));
+		assertEquals(2, row.size());
+		assertFalse(row.containsKey("name"));
+	}
+}
@@ -0,0 +1,223 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import lombok.Data;
+
+import org.junit.Test;
+
+public class RowMapperTest {
+	@Test
+	public void testFind() {
+		assertSame(RowMapperTest_ItemRowMapper.INSTANCE,
+			RowMapper.find(Item.class));
+		assertNull(RowMapper.find(String.class));
+	}
+
+	@Test
+	public void testMap() throws SQLException {
+		final ResultSet rs = resultSet(new String[] {"ID", "name", "score",
+			"flag"}, new Object[][] {
+			{1L, "foo", 3, true},
+			{2L, null, null, false},
+		});
+		final List<Item> items = RowMapper.find(Item.class).call(rs);
+		assertEquals(2, items.size());
+		assertEquals(1L, items.get(0).getId());
+		assertEquals("foo", items.get(0).getName());
+		assertEquals(Integer.valueOf(3), items.get(0).getScore());
+		assertEquals(true, items.get(0).isFlag());
+		assertEquals(2L, items.get(1).getId());
+		// NULL doesn't call the setter.
+		assertEquals("default", items.get(1).getName());
+		assertNull(items.get(1).getScore());
+		assertEquals(false, items.get(1).isFlag());
+	}
+
+	@Test
+	public void testColumnNotFound() throws SQLException {
+		// Columns are resolved on the first row.
+		assertEquals(Collections.emptyList(), RowMapper.find(Item.class).call(
+			resultSet(new String[] {"id", "name"}, new Object[][] {})));
+		final ResultSet rs = resultSet(new String[] {"id", "name"},
+			new Object[][] {{1L, "foo"}});
+		try {
+			RowMapper.find(Item.class).call(rs);
+			fail();
+		} catch (final SQLException e) {
+			assertEquals("S0022", e.getSQLState());
+		}
+	}
+
+	@Test
+	public void testExecuteQueryForBean() throws Exception {
+		try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:")) {
+			// BIGINT is read by getInt for the Integer property. Reflection
+			// rejects the Long.
+			final String sql = "SELECT 1 AS id, 'foo' AS name, CAST(3 AS BIGINT) AS score, TRUE AS flag";
+			final List<Item> items = JDBCUtils.executeQueryForBean(connection,
+				sql, Collections.emptyList(), Item.class);
+			assertEquals(1, items.size());
+			assertEquals(Integer.valueOf(3), items.get(0).getScore());
+			try (Statement statement = connection.createStatement();
+					ResultSet rs = statement.executeQuery(sql)) {
+				BeanMapper.forClass(Item.class).mapAll(rs);
+				fail();
+			} catch (final IllegalArgumentException e) {
+				// Long isn't Integer.
+			}
+		}
+	}
+
+	@Test
+	public void testLombokConstructor() throws IOException {
+		for (final String annotations : new String[] {"@lombok.Value",
+			"@lombok.Data @lombok.AllArgsConstructor",
+			"@lombok.Data @lombok.NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)"}) {
+			final List<Diagnostic<? extends JavaFileObject>> errors = compile(annotations);
+			assertEquals(annotations, 1, errors.size());
+			assertTrue(annotations, errors.get(0).getMessage(null).startsWith(
+				"@GenerateRowMapper needs a non-private constructor"));
+		}
+		for (final String annotations : new String[] {"@lombok.Data",
+			"@lombok.Data @lombok.AllArgsConstructor @lombok.NoArgsConstructor",
+			"@lombok.Data @lombok.NoArgsConstructor(access = lombok.AccessLevel.PACKAGE)"}) {
+			assertEquals(annotations, Collections.emptyList(),
+				compile(annotations));
+		}
+	}
+
+	@Test
+	public void testDecapitalize() {
+		assertArrayEquals(new String[] {"name", "URL", "x"}, new String[] {
+			RowMapperProcessor.decapitalize("Name"),
+			RowMapperProcessor.decapitalize("URL"),
+			RowMapperProcessor.decapitalize("X")});
+	}
+
+	// Errors of the processor for a class with the annotations.
+	private static List<Diagnostic<? extends JavaFileObject>> compile(
+			final String annotations) throws IOException {
+		final String source = "package p;\n" + annotations
+			+ " @me.geso.jdbcutils.GenerateRowMapper\n"
+			+ "public class X { private long id; }\n";
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		final Path out = Files.createTempDirectory("RowMapperTest");
+		try {
+			compiler.getTask(null, null, diagnostics, Arrays.asList(
+				"-proc:only", "-processor", RowMapperProcessor.class.getName(),
+				"-classpath", System.getProperty("java.class.path"), "-s",
+				out.toString()), null, Collections.singletonList(
+				new SimpleJavaFileObject(URI.create("string:///p/X.java"),
+					JavaFileObject.Kind.SOURCE) {
+					@Override
+					public CharSequence getCharContent(
+							final boolean ignoreEncodingErrors) {
+						return source;
+					}
+				})).call();
+		} finally {
+			try (Stream<Path> files = Files.walk(out)) {
+				files.sorted(Comparator.reverseOrder()).forEach(
+					path -> path.toFile().delete());
+			}
+		}
+		final List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+		for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics
+			.getDiagnostics()) {
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+				errors.add(diagnostic);
+			}
+		}
+		return errors;
+	}
+
+	// Fake result set over the rows.
+	private static ResultSet resultSet(final String[] labels,
+			final Object[][] rows) {
+		final ResultSetMetaData metaData = (ResultSetMetaData)Proxy
+			.newProxyInstance(RowMapperTest.class.getClassLoader(),
+				new Class<?>[] {ResultSetMetaData.class},
+				(proxy, method, args) -> {
+					if (method.getName().equals("getColumnCount")) {
+						return labels.length;
+					} else if (method.getName().equals("getColumnLabel")) {
+						return labels[(Integer)args[0] - 1];
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		final int[] row = {-1};
+		final boolean[] wasNull = {false};
+		return (ResultSet)Proxy.newProxyInstance(
+			RowMapperTest.class.getClassLoader(),
+			new Class<?>[] {ResultSet.class},
+			(proxy, method, args) -> {
+				switch (method.getName()) {
+				case "getMetaData":
+					return metaData;
+				case "next":
+					return ++row[0] < rows.length;
+				case "wasNull":
+					return wasNull[0];
+				default:
+					if (method.getName().startsWith("get")) {
+						final Object value = rows[row[0]][(Integer)args[0] - 1];
+						wasNull[0] = value == null;
+						if (value == null) {
+							final Class<?> type = method.getReturnType();
+							if (type == boolean.class) {
+								return false;
+							} else if (type == int.class) {
+								return 0;
+							} else if (type == long.class) {
+								return 0L;
+							}
+							return null;
+						}
+						return value;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	@Data
+	@GenerateRowMapper
+	public static class Item {
+		private long id;
+		private String name = "default";
+		private Integer score;
+		private boolean flag;
+	}
+}
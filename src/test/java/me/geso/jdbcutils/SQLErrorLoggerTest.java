@@ -0,0 +1,112 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SQLErrorLoggerTest {
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@After
+	public void after() {
+		SQLErrorLogger.setEnabled(true);
+		SQLErrorLogger.setInterval(SQLErrorLogger.DEFAULT_INTERVAL_MILLIS,
+			TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public void testRenderParams() {
+		assertEquals("[]", RichSQLException.renderParams(Collections.emptyList()));
+		assertEquals("[1, null, a]",
+			RichSQLException.renderParams(Arrays.asList(1, null, "a")));
+		assertEquals("[byte[3]]",
+			RichSQLException.renderParams(Arrays.asList(new byte[3])));
+
+		char[] chars = new char[200];
+		Arrays.fill(chars, 'x');
+		String rendered = RichSQLException.renderParams(Arrays.asList(new String(chars)));
+		assertEquals(RichSQLException.MAX_PARAM_LENGTH + 5, rendered.length());
+
+		List<Object> many = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			many.add(i);
+		}
+		assertTrue(RichSQLException.renderParams(many).endsWith(
+			", 31, ...(1000 params)]"));
+	}
+
+	@Test
+	public void testLazyMessage() {
+		RichSQLException e = new RichSQLException(new SQLException("boom",
+			"HY000"), "SELECT ?", Arrays.asList(1));
+		assertEquals("SQL Exception: boom:SELECT ?([1])", e.getMessage());
+		assertSame(e.getMessage(), e.getMessage());
+		assertEquals(e.getMessage(), new UncheckedRichSQLException(e).getMessage());
+	}
+
+	@Test
+	public void testRateLimit() {
+		SQLErrorLogger.setInterval(10, TimeUnit.SECONDS);
+		SQLException ex = new SQLException("Lock wait timeout", "HY000");
+		long now = System.nanoTime();
+		assertEquals(0, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=1", Arrays.asList(1)), now));
+		// Same shape and SQLState: suppressed, and counted.
+		assertEquals(-1, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=2", Arrays.asList(2)), now + SECOND));
+		assertEquals(-1, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=3", Arrays.asList(3)), now + 9 * SECOND));
+		// Logged at the interval boundary, with the suppressed count.
+		assertEquals(2, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=4", Arrays.asList(4)), now + 10 * SECOND));
+		assertEquals(-1, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=5", Arrays.asList(5)), now + 20 * SECOND - 1));
+		assertEquals(1, SQLErrorLogger.log(ex,
+			new Query("UPDATE x SET a=? WHERE id=6", Arrays.asList(6)), now + 20 * SECOND));
+	}
+
+	@Test
+	public void testKeys() {
+		SQLErrorLogger.setInterval(10, TimeUnit.SECONDS);
+		long now = System.nanoTime();
+		assertEquals(0, SQLErrorLogger.log(new SQLException("a", "40001"),
+			new Query("DELETE FROM y WHERE id=1", Collections.emptyList()), now));
+		// Different SQLState
+		assertEquals(0, SQLErrorLogger.log(new SQLException("b", "HY000"),
+			new Query("DELETE FROM y WHERE id=1", Collections.emptyList()), now));
+		// Different shape
+		assertEquals(0, SQLErrorLogger.log(new SQLException("a", "40001"),
+			new Query("DELETE FROM z WHERE id=1", Collections.emptyList()), now));
+		assertEquals(-1, SQLErrorLogger.log(new SQLException("a", "40001"),
+			new Query("DELETE FROM y WHERE id=2", Collections.emptyList()), now));
+	}
+
+	@Test
+	public void testNoInterval() {
+		SQLErrorLogger.setInterval(0, TimeUnit.SECONDS);
+		SQLException ex = new SQLException("boom", "HY000");
+		long now = System.nanoTime();
+		assertEquals(0, SQLErrorLogger.log(ex, new Query("SELECT 1", Collections.emptyList()), now));
+		assertEquals(0, SQLErrorLogger.log(ex, new Query("SELECT 1", Collections.emptyList()), now));
+	}
+
+	@Test
+	public void testDisabled() {
+		SQLErrorLogger.setInterval(10, TimeUnit.SECONDS);
+		SQLErrorLogger.setEnabled(false);
+		SQLException ex = new SQLException("boom", "HY000");
+		long now = System.nanoTime();
+		assertEquals(-1, SQLErrorLogger.log(ex, new Query("SELECT 2", Collections.emptyList()), now));
+		SQLErrorLogger.setEnabled(true);
+		// Disabled errors are not counted.
+		assertEquals(0, SQLErrorLogger.log(ex, new Query("SELECT 2", Collections.emptyList()), now));
+	}
+}
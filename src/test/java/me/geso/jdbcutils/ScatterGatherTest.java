@@ -0,0 +1,143 @@
+package me.geso.jdbcutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScatterGatherTest {
+	private static final String URL = "jdbc:h2:mem:ScatterGatherTest";
+
+	private final Query query = new Query("SELECT id FROM x ORDER BY id",
+		Collections.emptyList());
+	private final List<Connection> connections = new CopyOnWriteArrayList<>();
+	private Connection connection;
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws Exception {
+		// Keeps the database while the test runs.
+		connection = DriverManager.getConnection(URL);
+		JDBCUtils.executeUpdate(connection, "CREATE TABLE x (id INT)");
+		JDBCUtils.executeUpdate(connection,
+			"INSERT INTO x SELECT x FROM SYSTEM_RANGE(0, 999)");
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void after() throws Exception {
+		executor.shutdownNow();
+		JDBCUtils.executeUpdate(connection, "DROP TABLE x");
+		connection.close();
+	}
+
+	@Test(timeout = 10000)
+	public void testMoreShardsThanThreads() throws Exception {
+		ScatterGather shards = new ScatterGather(Collections.nCopies(5,
+			this::connect), executor).bufferSize(2);
+		assertEquals(Arrays.asList(0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 2, 2),
+			shards.top(query, rs -> rs.getInt("id"),
+				Comparator.naturalOrder(), 12));
+		assertEquals(5000, shards.concat(query, rs -> rs.getInt("id")).size());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		ScatterGather shards = new ScatterGather(Arrays.asList(this::connect,
+			() -> {
+				throw new SQLException("Connection refused", "08001");
+			}), executor);
+		try {
+			shards.top(query, rs -> rs.getInt("id"), Comparator.naturalOrder(),
+				10);
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("08001", ((SQLException)e.getCause()).getSQLState());
+		}
+		try {
+			shards.concat(query, rs -> rs.getInt("id"));
+			fail();
+		} catch (RichSQLException e) {
+			assertEquals("08001", ((SQLException)e.getCause()).getSQLState());
+		}
+		this.awaitClosed();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		ScatterGather shards = new ScatterGather(Arrays.asList(this::connect,
+			() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new SQLException(e);
+				}
+				return this.connect();
+			}), executor).timeout(50, TimeUnit.MILLISECONDS);
+		try {
+			shards.top(query, rs -> rs.getInt("id"), Comparator.naturalOrder(),
+				10);
+			fail();
+		} catch (RichSQLException e) {
+			assertTrue(e.getCause() instanceof SQLTimeoutException);
+		} finally {
+			release.countDown();
+		}
+		this.awaitClosed();
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		ScatterGather shards = new ScatterGather(Collections.nCopies(3,
+			this::connect), executor).bufferSize(1);
+		List<Integer> rows = new ArrayList<>();
+		try (Stream<Integer> stream = shards.merge(query,
+			rs -> rs.getInt("id"), Comparator.naturalOrder())) {
+			Iterator<Integer> iterator = stream.iterator();
+			for (int i = 0; i < 4; ++i) {
+				rows.add(iterator.next());
+			}
+		}
+		assertEquals(Arrays.asList(0, 0, 0, 1), rows);
+		// Readers waiting for the buffer stop, and close the connections.
+		this.awaitClosed();
+		assertEquals(3, connections.size());
+	}
+
+	private Connection connect() throws SQLException {
+		Connection connection = DriverManager.getConnection(URL);
+		connections.add(connection);
+		return connection;
+	}
+
+	private void awaitClosed() throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		for (Connection connection : connections) {
+			while (!connection.isClosed()) {
+				assertTrue(System.nanoTime() < deadline);
+				Thread.sleep(1);
+			}
+		}
+	}
+}
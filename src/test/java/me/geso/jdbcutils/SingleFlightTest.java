@@ -0,0 +1,164 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+	private final QueryKey key = new QueryKey(new Query("SELECT 1",
+		Collections.emptyList()), "reader");
+
+	@Test
+	public void testShare() throws Exception {
+		SingleFlight flight = new SingleFlight();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return flight.execute(key, 0, () -> {
+					loads.incrementAndGet();
+					started.countDown();
+					await(release);
+					return "result";
+				});
+			} catch (RichSQLException e) {
+				throw new UncheckedRichSQLException(e);
+			}
+		});
+		started.await();
+
+		List<CompletableFuture<String>> followers = new ArrayList<>();
+		for (int i = 0; i < 4; ++i) {
+			followers.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return flight.execute(key, 0, () -> {
+						loads.incrementAndGet();
+						return "other";
+					});
+				} catch (RichSQLException e) {
+					throw new UncheckedRichSQLException(e);
+				}
+			}));
+		}
+		while (flight.getSharedCount() < 4) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		assertThat(leader.get(), is("result"));
+		for (CompletableFuture<String> follower : followers) {
+			assertThat(follower.get(), is("result"));
+		}
+		assertThat(loads.get(), is(1));
+		assertThat(flight.getExecutedCount(), is(1L));
+
+		// Not cached after the flight.
+		assertThat(flight.execute(key, 0, () -> "next"), is("next"));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		SingleFlight flight = new SingleFlight();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> {
+			try {
+				flight.execute(key, 0, () -> {
+					started.countDown();
+					await(release);
+					return "result";
+				});
+			} catch (RichSQLException e) {
+				throw new UncheckedRichSQLException(e);
+			}
+		});
+		started.await();
+		try {
+			flight.execute(key, TimeUnit.MILLISECONDS.toNanos(10), () -> "other");
+			fail();
+		} catch (RichSQLException e) {
+			assertThat(e.getCause(), instanceOf(SQLTimeoutException.class));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test(expected = RichSQLException.class)
+	public void testError() throws RichSQLException {
+		new SingleFlight().execute(key, 0, () -> {
+			throw new RichSQLException(new SQLException("error"));
+		});
+	}
+
+	@Test
+	public void testErrorShared() throws Exception {
+		SingleFlight flight = new SingleFlight();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return flight.execute(key, 0, () -> {
+					started.countDown();
+					await(release);
+					throw new RichSQLException(new SQLException("error", "HY000"));
+				});
+			} catch (RichSQLException e) {
+				throw new UncheckedRichSQLException(e);
+			}
+		});
+		started.await();
+		CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> {
+			try {
+				return flight.execute(key, 0, () -> "other");
+			} catch (RichSQLException e) {
+				throw new UncheckedRichSQLException(e);
+			}
+		});
+		while (flight.getSharedCount() < 1) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		try {
+			follower.join();
+			fail();
+		} catch (CompletionException e) {
+			// The follower gets the error of the leader.
+			UncheckedRichSQLException cause = (UncheckedRichSQLException)e.getCause();
+			assertThat(cause.getSql(), is("SELECT 1"));
+			assertThat(((SQLException)cause.getCause().getCause()).getSQLState(),
+				is("HY000"));
+		}
+		try {
+			leader.join();
+			fail();
+		} catch (CompletionException e) {
+			assertThat(e.getCause(), instanceOf(UncheckedRichSQLException.class));
+		}
+		assertThat(flight.getExecutedCount(), is(1L));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
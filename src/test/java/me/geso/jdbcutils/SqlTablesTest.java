@@ -0,0 +1,88 @@
+package me.geso.jdbcutils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SqlTablesTest {
+
+	@Test
+	public void testRead() {
+		assertThat(read("SELECT * FROM member WHERE id=1"),
+			is(set("member")));
+		assertThat(
+			read("SELECT * FROM `db`.`Member` m JOIN entry AS e ON m.id=e.member_id"),
+			is(set("member", "entry")));
+		assertThat(read("SELECT * FROM a x, b y WHERE x.id=y.id"),
+			is(set("a", "b")));
+		assertThat(
+			read("SELECT * FROM a WHERE id IN (SELECT a_id FROM b) FOR UPDATE"),
+			is(set("a", "b")));
+		assertThat(read("SELECT 'FROM x' FROM a -- FROM y"),
+			is(set("a")));
+	}
+
+	@Test
+	public void testWritten() {
+		assertThat(written("INSERT INTO member (name) VALUES (?)"),
+			is(set("member")));
+		assertThat(
+			written("INSERT IGNORE INTO member SELECT * FROM tmp"),
+			is(set("member")));
+		assertThat(written("REPLACE member SET name=?"),
+			is(set("member")));
+		assertThat(written("UPDATE LOW_PRIORITY member SET name=?"),
+			is(set("member")));
+		assertThat(
+			written("UPDATE a JOIN b ON a.id=b.id SET a.x=b.x"),
+			is(set("a", "b")));
+		assertThat(written("DELETE FROM member WHERE id=?"),
+			is(set("member")));
+		assertThat(written("TRUNCATE TABLE member"),
+			is(set("member")));
+		assertThat(written("SET NAMES utf8mb4"),
+			is(Collections.<String> emptySet()));
+		assertThat(written("DROP TABLE member"), is(nullValue()));
+		assertThat(written("UPDATE member SET name=? RETURNING id"),
+			is(set("member")));
+		assertThat(written("SELECT * FROM member FOR UPDATE"),
+			is(Collections.<String> emptySet()));
+		assertThat(written("(SELECT 1) UNION (SELECT 2)"),
+			is(Collections.<String> emptySet()));
+		assertThat(written("COMMIT"), is(Collections.<String> emptySet()));
+	}
+
+	@Test
+	public void testWrittenByAnyStatement() {
+		assertThat(written("MERGE INTO member KEY (id) VALUES (?, ?)"),
+			is(nullValue()));
+		assertThat(
+			written("WITH old AS (SELECT id FROM entry) DELETE FROM member WHERE id IN (SELECT id FROM old)"),
+			is(nullValue()));
+		assertThat(written("WITH t AS (UPDATE member SET x=1 RETURNING id) SELECT * FROM t"),
+			is(nullValue()));
+		assertThat(written("WITH t AS (SELECT 1) SELECT * FROM t"),
+			is(Collections.<String> emptySet()));
+		assertThat(written("CALL refresh_all()"), is(nullValue()));
+		assertThat(written("VACUUM member"), is(nullValue()));
+	}
+
+	private static Set<String> read(String sql) {
+		return SqlTables.read(new Query(sql, Collections.emptyList()));
+	}
+
+	private static Set<String> written(String sql) {
+		return SqlTables.written(new Query(sql, Collections.emptyList()));
+	}
+
+	private static Set<String> set(String... tables) {
+		return new HashSet<>(Arrays.asList(tables));
+	}
+}